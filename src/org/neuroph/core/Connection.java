@@ -26,7 +26,7 @@ import java.util.Objects;
  * @see Neuron
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
-public class Connection implements Serializable {
+public class Connection implements Serializable, Cloneable {
 
     /**
      * The class fingerprint that is set to indicate serialization
@@ -150,7 +150,7 @@ public class Connection implements Serializable {
      * @return weighted input received through this connection
      */
     public double getWeightedInput() {
-        return this.fromNeuron.getOutput() * weight.value;
+        return this.fromNeuron.getOutput() * weight.getValue();
     }
 
     /**
@@ -171,16 +171,33 @@ public class Connection implements Serializable {
         return toNeuron;
     }
 
+    /**
+     * Returns copy of this connection with copied weight, between the same
+     * neurons. The copy is not added to neurons' connections.
+     *
+     * @return copy of this connection
+     * @throws CloneNotSupportedException
+     */
     @Override
     public Object clone() throws CloneNotSupportedException {
         Connection cloned = (Connection)super.clone(); 
         cloned.setWeight((Weight)weight.clone());
-        cloned.toNeuron = (Neuron)toNeuron.clone();
-        cloned.fromNeuron = (Neuron)fromNeuron.clone();
         
         return cloned;
     }
 
+    /**
+     * Returns copy of this connection between copies of its neurons, with
+     * copy of its weight from specified context
+     */
+    Connection copy(CopyContext context) throws CloneNotSupportedException {
+        Connection copy = (Connection) super.clone();
+        copy.fromNeuron = context.get(fromNeuron);
+        copy.toNeuron = context.get(toNeuron);
+        copy.weight = context.getWeight(weight);
+        return copy;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Keeps track of copied network elements (layers, neurons, connections,
+ * weights...) while the network is copied with {@link NeuralNetwork#copy(boolean)}.
+ * Each element is copied only once, so elements used in several places (like
+ * shared convolution kernel weights) stay shared in the copy.
+ * <p/>
+ * Layers and neurons which keep references to other network elements use
+ * this context in copyFrom method to find copies of those elements.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class CopyContext {
+
+    /**
+     * Copy of each original element
+     */
+    private final Map<Object, Object> copies = new IdentityHashMap<>();
+
+    CopyContext() {
+    }
+
+    /**
+     * Returns copy of specified element, or null if element is not copied
+     *
+     * @param original original element
+     * @param <T>      type of element
+     * @return copy of element or null
+     */
+    @SuppressWarnings("unchecked") // put registers copy with the type of original
+    public <T> T get(T original) {
+        return (T) copies.get(original);
+    }
+
+    /**
+     * Registers copy of specified element
+     *
+     * @param original original element
+     * @param copy     copy of element
+     * @param <T>      type of element
+     */
+    public <T> void put(T original, T copy) {
+        copies.put(original, copy);
+    }
+
+    /**
+     * Returns copy of specified weight, creating it on first request
+     *
+     * @param original original weight
+     * @return copy of weight
+     */
+    public Weight getWeight(Weight original) {
+        Weight copy = (Weight) copies.get(original);
+        if (copy == null) {
+            try {
+                copy = (Weight) original.clone();
+            } catch (CloneNotSupportedException ex) {
+                throw new NeurophException("Could not copy weight!", ex);
+            }
+            copy.setTrainingData(null);
+            copies.put(original, copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns list of copies of specified elements. Elements which are not
+     * copied are skipped.
+     *
+     * @param originals original elements
+     * @param <T>       type of elements
+     * @return list of copies
+     */
+    public <T> List<T> getAll(List<T> originals) {
+        List<T> result = new ArrayList<>(originals.size());
+        for (T original : originals) {
+            T copy = get(original);
+            if (copy != null) {
+                result.add(copy);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies object using serialization. References to already copied network
+     * elements are replaced with their copies, so the copied object (like
+     * learning rule or plugin) refers to the network copy.
+     *
+     * @param object object to copy
+     * @param <T>    type of object
+     * @return copy of object
+     */
+    <T> T copySerialized(T object) {
+        final List<Object> originals = new ArrayList<>();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ReplacingOutputStream(bytes, originals)) {
+                out.writeObject(object);
+            }
+            try (ObjectInputStream in = new ResolvingInputStream(new ByteArrayInputStream(bytes.toByteArray()), originals)) {
+                @SuppressWarnings("unchecked") // deserialized copy has the class of object
+                T copy = (T) in.readObject();
+                return copy;
+            }
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new NeurophException("Could not copy " + object.getClass().getName() + "!", ex);
+        }
+    }
+
+    /**
+     * Placeholder written instead of already copied element
+     */
+    private static class CopiedElement implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+
+        CopiedElement(int index) {
+            this.index = index;
+        }
+    }
+
+    private class ReplacingOutputStream extends ObjectOutputStream {
+
+        private final List<Object> originals;
+
+        ReplacingOutputStream(OutputStream out, List<Object> originals) throws IOException {
+            super(out);
+            this.originals = originals;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (copies.containsKey(obj)) {
+                originals.add(obj);
+                return new CopiedElement(originals.size() - 1);
+            }
+            return obj;
+        }
+    }
+
+    private class ResolvingInputStream extends ObjectInputStream {
+
+        private final List<Object> originals;
+
+        ResolvingInputStream(InputStream in, List<Object> originals) throws IOException {
+            super(in);
+            this.originals = originals;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof CopiedElement) {
+                return copies.get(originals.get(((CopiedElement) obj).index));
+            }
+            return obj;
+        }
+    }
+
+}
@@ -37,7 +37,7 @@ import org.neuroph.util.NeuronProperties;
  * @see Neuron
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
-public class Layer implements Serializable {
+public class Layer implements Serializable, Cloneable {
 
 
     /**
@@ -298,6 +298,21 @@ public class Layer implements Serializable {
         for (Neuron neuron : this.neurons) {
             neuron.initializeWeights(value);
         }
+        for (Weight weight : getLayerWeights()) {
+            weight.setValue(value);
+        }
+    }
+
+    /**
+     * Returns weights which belong to this layer itself instead of neuron input
+     * connections, like kernel weights of tensor based layers. Network and
+     * learning rules handle these weights after connection weights of the
+     * layer. Layer has no such weights by default.
+     *
+     * @return weights of this layer which are not connection weights
+     */
+    public List<Weight> getLayerWeights() {
+        return Collections.emptyList();
     }
 
     /**
@@ -322,4 +337,34 @@ public class Layer implements Serializable {
         return neurons.isEmpty();
     }
 
+    /**
+     * Returns copy of this layer without neurons and parent network.
+     * To copy layers with neurons, copy the whole network with
+     * NeuralNetwork.copy
+     *
+     * @return copy of this layer
+     * @throws CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Layer cloned = (Layer) super.clone();
+        cloned.parentNetwork = null;
+        cloned.neurons = new ArrayList<>(neurons.size());
+        return cloned;
+    }
+
+    /**
+     * Sets parent network and neurons of this layer copy from the network
+     * copy. Called by NeuralNetwork.copy after all neurons and connections are
+     * copied. Subclasses which keep references to other network elements
+     * should override this method and call it first.
+     *
+     * @param original layer this layer is copied from
+     * @param context  network copy context
+     */
+    protected void copyFrom(Layer original, CopyContext context) {
+        this.parentNetwork = context.get(original.parentNetwork);
+        this.neurons = context.getAll(original.neurons);
+    }
+
 }
\ No newline at end of file
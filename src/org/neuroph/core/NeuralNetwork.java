@@ -23,6 +23,7 @@ import org.neuroph.core.exceptions.VectorSizeMismatchException;
 import org.neuroph.core.learning.IterativeLearning;
 import org.neuroph.core.learning.LearningRule;
 import org.neuroph.util.NeuralNetworkType;
+import org.neuroph.util.compiled.BinaryModelFormat;
 import org.neuroph.util.plugins.PluginBase;
 import org.neuroph.util.random.RangeRandomizer;
 import org.neuroph.util.random.WeightsRandomizer;
@@ -46,7 +47,7 @@ import java.util.*;
  * @see Layer
  * @see LearningRule
  */
-public class NeuralNetwork<L extends LearningRule> implements Serializable {
+public class NeuralNetwork<L extends LearningRule> implements Serializable, Cloneable {
 
 
     /**
@@ -109,6 +110,12 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
      * List of neural network listeners
      */
     private transient List<NeuralNetworkEventListener> listeners = new ArrayList();
+
+    /**
+     * Arena which holds values of all network weights, null if weights are
+     * kept in weight objects
+     */
+    private transient WeightArena weightArena;
     
     /**
      * Neural network logger
@@ -351,6 +358,7 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
         }
 
         learningRule.learn(trainingSet);
+        fireNetworkEvent(new NeuralNetworkEvent(this, NeuralNetworkEvent.Type.WEIGHTS_CHANGED));
     }
 
     /**
@@ -363,6 +371,7 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
     public void learn(DataSet trainingSet, L learningRule) {
         setLearningRule(learningRule);
         learningRule.learn(trainingSet);
+        fireNetworkEvent(new NeuralNetworkEvent(this, NeuralNetworkEvent.Type.WEIGHTS_CHANGED));
     }
 
 
@@ -430,6 +439,7 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
      */
     public void randomizeWeights(WeightsRandomizer randomizer) {
         randomizer.randomize(this);
+        fireNetworkEvent(new NeuralNetworkEvent(this, NeuralNetworkEvent.Type.WEIGHTS_CHANGED));
     }
 
     /**
@@ -556,6 +566,15 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
      * @return network weights as an double array
      */
     public Double[] getWeights() {
+        if (weightArena != null && !weightArena.hasSharedWeights()) {
+            double[] values = weightArena.snapshot();
+            Double[] weights = new Double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                weights[i] = values[i];
+            }
+            return weights;
+        }
+
         List<Double> weights = new ArrayList();
         for (Layer layer : layers) {
             for (Neuron neuron : layer.getNeurons()) {
@@ -563,6 +582,9 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
                     weights.add(conn.getWeight().getValue());
                 }
             }
+            for (Weight weight : layer.getLayerWeights()) {
+                weights.add(weight.getValue());
+            }
         }
 
         return weights.toArray(new Double[weights.size()]);
@@ -575,16 +597,136 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
      * @param weights array of weights to set
      */
     public void setWeights(double[] weights) {
-        int i = 0;
-        for (Layer layer : layers) {
-            for (Neuron neuron : layer.getNeurons()) {
-                for (Connection conn : neuron.getInputConnections()) {
-                    conn.getWeight().setValue(weights[i]);
+        if (weightArena != null && !weightArena.hasSharedWeights()) {
+            weightArena.copyFrom(weights);
+        } else {
+            int i = 0;
+            for (Layer layer : layers) {
+                for (Neuron neuron : layer.getNeurons()) {
+                    for (Connection conn : neuron.getInputConnections()) {
+                        conn.getWeight().setValue(weights[i]);
+                        i++;
+                    }
+                }
+                for (Weight weight : layer.getLayerWeights()) {
+                    weight.setValue(weights[i]);
                     i++;
                 }
             }
         }
+        fireNetworkEvent(new NeuralNetworkEvent(this, NeuralNetworkEvent.Type.WEIGHTS_CHANGED));
+    }
+    /**
+     * Moves values of all network weights into one contiguous array, so bulk
+     * weight reads and writes become array copies. Weight objects keep working
+     * as handles onto their slots. If arena already exists, it is created
+     * again for the current network structure.
+     *
+     * @return weight arena of this network
+     * @see WeightArena
+     */
+    public WeightArena createWeightArena() {
+        releaseWeightArena();
+        weightArena = new WeightArena(this);
+        return weightArena;
+    }
+
+    /**
+     * Returns weight arena of this network, or null if arena is not created
+     *
+     * @return weight arena or null
+     */
+    public WeightArena getWeightArena() {
+        return weightArena;
+    }
+
+    /**
+     * Moves weight values from arena back to weight objects
+     */
+    public void releaseWeightArena() {
+        if (weightArena != null) {
+            weightArena.release();
+            weightArena = null;
+        }
     }
+
+    /**
+     * Returns deep copy of this network. Layers, neurons, connections and
+     * weights are copied, weights shared by several connections stay shared
+     * in the copy. Learning rule and plugins are copied too, event listeners
+     * are not.
+     *
+     * @return copy of this network
+     */
+    @Override
+    public NeuralNetwork<L> clone() {
+        return copy(false);
+    }
+
+    /**
+     * Returns deep copy of this network (see clone). If shareWeights is true,
+     * weight values are kept in weight arena (which is created for this network
+     * if needed), and both networks use the same values array until one of
+     * them changes weights. This way replicas used only for prediction don't
+     * copy weight values.
+     *
+     * @param shareWeights true to share weight values copy-on-write
+     * @return copy of this network
+     */
+    public NeuralNetwork<L> copy(boolean shareWeights) {
+        if (shareWeights && weightArena == null) {
+            createWeightArena();
+        }
+
+        CopyContext context = new CopyContext();
+        try {
+            @SuppressWarnings("unchecked") // clone has the same class and layer type as this network
+            NeuralNetwork<L> copy = (NeuralNetwork<L>) super.clone();
+            context.put(this, copy);
+
+            List<Neuron> neurons = new ArrayList<>();
+            for (Layer layer : layers) {
+                context.put(layer, (Layer) layer.clone());
+                for (Neuron neuron : layer.getNeurons()) {
+                    context.put(neuron, (Neuron) neuron.clone());
+                    neurons.add(neuron);
+                }
+            }
+
+            for (int i = 0; i < neurons.size(); i++) {
+                for (Connection connection : neurons.get(i).getInputConnections()) {
+                    Neuron fromNeuron = connection.getFromNeuron();
+                    if (context.get(fromNeuron) == null) { // neuron which is not in any layer
+                        context.put(fromNeuron, (Neuron) fromNeuron.clone());
+                        neurons.add(fromNeuron);
+                    }
+                    context.put(connection, connection.copy(context));
+                }
+            }
+
+            // layers first, since they create copies of sub layers (like feature maps) used as parent layers of neurons
+            for (Layer layer : layers) {
+                context.get(layer).copyFrom(layer, context);
+            }
+            for (Neuron neuron : neurons) {
+                context.get(neuron).copyFrom(neuron, context);
+            }
+
+            copy.layers = context.getAll(layers);
+            copy.inputNeurons = context.getAll(inputNeurons);
+            copy.outputNeurons = context.getAll(outputNeurons);
+            copy.outputBuffer = outputBuffer != null ? new double[outputBuffer.length] : null;
+            copy.listeners = new ArrayList<>();
+            copy.weightArena = weightArena != null ? weightArena.copy(context, shareWeights) : null;
+            copy.plugins = context.copySerialized(plugins);
+            copy.learningRule = learningRule != null ? context.copySerialized(learningRule) : null;
+
+            return copy;
+        } catch (CloneNotSupportedException ex) {
+            throw new NeurophException("Could not copy neural network!", ex);
+        }
+    }
+
     /**
      * 所有层是否空
      * @return
@@ -655,6 +797,10 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
                 throw new FileNotFoundException("Cannot find file: " + filePath);
             }
 
+            if (BinaryModelFormat.isBinaryModel(file)) {
+                return BinaryModelFormat.load(filePath);
+            }
+
             oistream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)));
             NeuralNetwork nnet = (NeuralNetwork) oistream.readObject();
             return nnet;
@@ -709,7 +855,8 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
     }
 
     /**
-     * Loads and return s neural network instance from specified file
+     * Loads and return s neural network instance from specified file. File can
+     * be saved with save method or in binary model format (see BinaryModelFormat).
      *
      * @param file neural network file
      * @return neural network instance
@@ -722,6 +869,10 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
                 throw new FileNotFoundException("Cannot find file: " + file);
             }
 
+            if (BinaryModelFormat.isBinaryModel(file)) {
+                return BinaryModelFormat.load(file.getPath());
+            }
+
             oistream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
             NeuralNetwork nnet = (NeuralNetwork) oistream.readObject();
             return nnet;
@@ -510,10 +510,39 @@ public class Neuron implements Serializable, Cloneable /*, Callable<Void>*/ {
         this.label = label;
     }
 
+    /**
+     * Returns copy of this neuron without connections and parent layer.
+     * Transfer function is copied since it keeps the last output, input
+     * function is shared.
+     * To copy neurons with connections, copy the whole network with
+     * NeuralNetwork.copy
+     *
+     * @return copy of this neuron
+     * @throws CloneNotSupportedException
+     */
     @Override
     public Object clone() throws CloneNotSupportedException {
-       throw new UnsupportedOperationException("Not yer implemented");
-       // return super.clone(); //To change body of generated methods, choose Tools | Templates.
+        Neuron cloned = (Neuron) super.clone();
+        cloned.parentLayer = null;
+        cloned.inputConnections = new ArrayList<>(inputConnections.size());
+        cloned.outConnections = new ArrayList<>(outConnections.size());
+        cloned.transferFunction = (TransferFunction) transferFunction.clone();
+        return cloned;
+    }
+
+    /**
+     * Sets parent layer and connections of this neuron copy from the network
+     * copy. Called by NeuralNetwork.copy after all layers, neurons and
+     * connections are copied. Subclasses which keep references to other
+     * network elements should override this method and call it first.
+     *
+     * @param original neuron this neuron is copied from
+     * @param context  network copy context
+     */
+    protected void copyFrom(Neuron original, CopyContext context) {
+        this.parentLayer = context.get(original.parentLayer);
+        this.inputConnections = context.getAll(original.inputConnections);
+        this.outConnections = context.getAll(original.outConnections);
     }
     
     
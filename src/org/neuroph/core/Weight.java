@@ -15,6 +15,8 @@
  */
 package org.neuroph.core;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.Objects;
 import java.util.Random;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -34,7 +36,8 @@ public class Weight implements java.io.Serializable, Cloneable {
     private static final long serialVersionUID = 2L;
 
     /**
-     * Weight value
+     * Weight value. When weight is attached to {@link WeightArena} its value is
+     * kept in the arena, so use getValue and setValue instead of this field.
      */
     public double value;
 
@@ -49,6 +52,17 @@ public class Weight implements java.io.Serializable, Cloneable {
      */
     private transient Object trainingData;
 
+    /**
+     * Arena which holds the value of this weight, null if weight is not
+     * attached to arena
+     */
+    transient WeightArena arena;
+
+    /**
+     * Position of this weight value in arena
+     */
+    transient int slot;
+
     // maybe store deltaWeight and weight value history in transient fields...?
     /**
      * Creates an instance of connection weight with random weight value in
@@ -74,7 +88,11 @@ public class Weight implements java.io.Serializable, Cloneable {
      * @param amount amount to add to current weight value
      */
     public void inc(double amount) {
-        this.value += amount;
+        if (arena != null) {
+            arena.writableValues()[slot] += amount;
+        } else {
+            this.value += amount;
+        }
     }
 
     /**
@@ -83,7 +101,11 @@ public class Weight implements java.io.Serializable, Cloneable {
      * @param amount amount to subtract from the current weight value
      */
     public void dec(double amount) {
-        this.value -= amount;
+        if (arena != null) {
+            arena.writableValues()[slot] -= amount;
+        } else {
+            this.value -= amount;
+        }
     }
 
     /**
@@ -92,7 +114,11 @@ public class Weight implements java.io.Serializable, Cloneable {
      * @param value weight value to set
      */
     public void setValue(double value) {
-        this.value = value;
+        if (arena != null) {
+            arena.writableValues()[slot] = value;
+        } else {
+            this.value = value;
+        }
     }
 
     /**
@@ -101,7 +127,26 @@ public class Weight implements java.io.Serializable, Cloneable {
      * @return value of this weight
      */
     public double getValue() {
-        return this.value;
+        return arena != null ? arena.values[slot] : this.value;
+    }
+
+    /**
+     * Attaches this weight to the specified arena slot, which already holds
+     * the value of this weight
+     */
+    void attach(WeightArena arena, int slot) {
+        this.arena = arena;
+        this.slot = slot;
+    }
+
+    /**
+     * Moves the value of this weight from arena back to this object
+     */
+    void detach() {
+        if (arena != null) {
+            this.value = arena.values[slot];
+            this.arena = null;
+        }
     }
 
     /**
@@ -109,25 +154,25 @@ public class Weight implements java.io.Serializable, Cloneable {
      */
     @Override
     public String toString() {
-        return String.valueOf(value);
+        return String.valueOf(getValue());
     }
 
     /**
      * Sets random weight value
      */
     public void randomize() {
-        this.value = Math.random() - 0.5d;
+        setValue(Math.random() - 0.5d);
     }
 
     /**
      * Sets random weight value within specified interval
      */
     public void randomize(double min, double max) {
-        this.value = min + Math.random() * (max - min);
+        setValue(min + Math.random() * (max - min));
     }
 
     public void randomize(Random generator) {
-        this.value = generator.nextDouble();
+        setValue(generator.nextDouble());
     }
 
     /**
@@ -152,14 +197,25 @@ public class Weight implements java.io.Serializable, Cloneable {
     @Override
     public Object clone() throws CloneNotSupportedException {
         Weight cloned = (Weight) super.clone();
+        cloned.value = getValue(); // cloned weight does not share arena slot with this weight
+        cloned.arena = null;
         cloned.setTrainingData(new Object()); // since we cannot call Object.clone() reset training data to nulll
         return cloned;
     }
 
+    /**
+     * Copies value from arena before serialization, so serialized weight
+     * always contains its current value
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        this.value = getValue();
+        out.defaultWriteObject();
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder(7, 17).
-                append(value).
+                append(getValue()).
                 append(weightChange).
                 append(trainingData).toHashCode();
     }
@@ -176,7 +232,7 @@ public class Weight implements java.io.Serializable, Cloneable {
             return false;
         }
         final Weight other = (Weight) obj;
-        if (Double.doubleToLongBits(this.value) != Double.doubleToLongBits(other.value)) {
+        if (Double.doubleToLongBits(this.getValue()) != Double.doubleToLongBits(other.getValue())) {
             return false;
         }
         if (Double.doubleToLongBits(this.weightChange) != Double.doubleToLongBits(other.weightChange)) {
@@ -0,0 +1,266 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * Keeps values of all network weights in one contiguous double array. Each
+ * {@link Weight} of the network becomes a handle onto its slot in the array,
+ * so the object API (getValue, setValue, inc...) keeps working, while bulk
+ * reads, writes and snapshots of all weights are single array copies.
+ * <p/>
+ * Weights are indexed in the same order as {@link NeuralNetwork#getWeights()}:
+ * layer by layer, neuron by neuron, input connection by input connection,
+ * followed by the layer's own weights (see {@link Layer#getLayerWeights()}).
+ * Weight shared by several connections (like convolution kernel weights) gets
+ * only one slot, at the position of its first connection.
+ * <p/>
+ * Arena is created for the current network structure. Weights of connections
+ * added after arena is created are not kept in the arena, so create it again
+ * after changing the network structure.
+ * <p/>
+ * Copies of network created with {@link NeuralNetwork#copy(boolean)} can
+ * share the values array of this arena. Shared array is copied by the arena
+ * which writes first, so networks never see each other's changes. Copy on
+ * write is not synchronized, don't copy network while it is being trained.
+ *
+ * @see NeuralNetwork#createWeightArena()
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class WeightArena {
+
+    /**
+     * Values of all weights, read directly by weights. May be shared with
+     * arena of network copy until one of them writes.
+     */
+    double[] values;
+
+    /**
+     * True if values array is shared with another arena
+     */
+    private boolean shared;
+
+    /**
+     * Weight for each slot in values array
+     */
+    private final Weight[] weights;
+
+    /**
+     * True if some weight is used by more than one connection
+     */
+    private final boolean sharedWeights;
+
+    /**
+     * Creates arena for all weights of specified network and moves weight
+     * values into it
+     *
+     * @param network neural network
+     */
+    WeightArena(NeuralNetwork<?> network) {
+        Map<Weight, Boolean> seen = new IdentityHashMap<>();
+        List<Weight> weightList = new ArrayList<>();
+        boolean shared = false;
+        for (Layer layer : network.getLayers()) {
+            for (Neuron neuron : layer.getNeurons()) {
+                for (Connection conn : neuron.getInputConnections()) {
+                    Weight weight = conn.getWeight();
+                    if (seen.put(weight, Boolean.TRUE) == null) {
+                        weightList.add(weight);
+                    } else {
+                        shared = true;
+                    }
+                }
+            }
+            for (Weight weight : layer.getLayerWeights()) {
+                if (seen.put(weight, Boolean.TRUE) == null) {
+                    weightList.add(weight);
+                } else {
+                    shared = true;
+                }
+            }
+        }
+
+        this.weights = weightList.toArray(new Weight[weightList.size()]);
+        this.values = new double[weights.length];
+        this.sharedWeights = shared;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i].detach(); // weight may still be attached to previous arena
+            values[i] = weights[i].getValue();
+            weights[i].attach(this, i);
+        }
+    }
+
+    /**
+     * Creates arena for specified weights with specified values
+     */
+    private WeightArena(Weight[] weights, double[] values, boolean sharedWeights, boolean shared) {
+        this.weights = weights;
+        this.values = values;
+        this.sharedWeights = sharedWeights;
+        this.shared = shared;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i].attach(this, i);
+        }
+    }
+
+    /**
+     * Returns number of weights in this arena
+     *
+     * @return number of weights
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns true if some weights are used by more than one connection. In
+     * that case arena has fewer slots than the network has connections.
+     *
+     * @return true if network has shared weights
+     */
+    public boolean hasSharedWeights() {
+        return sharedWeights;
+    }
+
+    /**
+     * Returns array which holds the weight values. This is not a copy, changes
+     * in the array are changes of network weights.
+     *
+     * @return weight values array
+     */
+    public double[] getValues() {
+        return writableValues();
+    }
+
+    /**
+     * Returns true if values array is shared with arena of network copy. Shared
+     * array is copied on first write.
+     *
+     * @return true if values are shared
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Returns weight at the specified slot
+     *
+     * @param index slot index
+     * @return weight at the specified slot
+     */
+    public Weight getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Returns slot index of specified weight, or -1 if the weight is not in
+     * this arena
+     *
+     * @param weight weight to find
+     * @return slot index of weight
+     */
+    public int indexOf(Weight weight) {
+        return weight.arena == this ? weight.slot : -1;
+    }
+
+    /**
+     * Copies all weight values to specified array
+     *
+     * @param dest array to copy values to, must have size() elements
+     */
+    public void copyTo(double[] dest) {
+        checkSize(dest);
+        System.arraycopy(values, 0, dest, 0, values.length);
+    }
+
+    /**
+     * Sets all weight values from specified array
+     *
+     * @param src array of weight values, must have size() elements
+     */
+    public void copyFrom(double[] src) {
+        checkSize(src);
+        System.arraycopy(src, 0, writableValues(), 0, values.length);
+    }
+
+    /**
+     * Returns copy of all weight values, which can be restored later with
+     * copyFrom
+     *
+     * @return copy of weight values
+     */
+    public double[] snapshot() {
+        return values.clone();
+    }
+
+    /**
+     * Returns values array for writing. If the array is shared with another
+     * arena, it is copied first, so writes are not visible in the other network.
+     */
+    double[] writableValues() {
+        if (shared) {
+            values = values.clone();
+            shared = false;
+        }
+        return values;
+    }
+
+    /**
+     * Creates arena for weights of network copy. Weights of copy have the
+     * same slots as weights of this arena.
+     *
+     * @param context network copy context
+     * @param share   if true both arenas use the same values array until one
+     *                of them writes, otherwise values are copied
+     * @return arena for network copy
+     */
+    WeightArena copy(CopyContext context, boolean share) {
+        Weight[] copies = new Weight[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            copies[i] = context.getWeight(weights[i]);
+        }
+        if (share) {
+            shared = true;
+            return new WeightArena(copies, values, sharedWeights, true);
+        }
+        return new WeightArena(copies, values.clone(), sharedWeights, false);
+    }
+
+    /**
+     * Moves weight values back to weight objects. Arena should not be used
+     * after this call.
+     */
+    void release() {
+        for (Weight weight : weights) {
+            if (weight.arena == this) {
+                weight.detach();
+            }
+        }
+    }
+
+    private void checkSize(double[] array) {
+        if (array.length != values.length) {
+            throw new VectorSizeMismatchException("Array size " + array.length + " does not match number of weights " + values.length);
+        }
+    }
+
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.neuroph.core.data.MappedDataSet.DataType;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * Writes data sets in Neuroph binary data set format, which can be memory
+ * mapped with MappedDataSet. Rows are appended one by one through a buffer, so
+ * writer can be used to convert data sets which do not fit in memory.
+ * Number of rows is written to file header when writer is closed.
+ * <p/>
+ * Also provides conversion tools from csv/txt files and from data sets saved
+ * with DataSet.save (.tset files).
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ * @see MappedDataSet
+ */
+public class BinaryDataSetWriter implements Closeable {
+
+    /**
+     * Size of the write buffer in bytes
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final DataType dataType;
+
+    private final int inputSize;
+
+    private final int outputSize;
+
+    /**
+     * Number of rows written so far
+     */
+    private long rowCount;
+
+    /**
+     * Creates new writer for file at specified path. Existing file will be overwritten.
+     *
+     * @param filePath    path to file to write
+     * @param inputSize   size of the input vector
+     * @param outputSize  size of the output vector, 0 for unsupervised data sets
+     * @param dataType    type of values in file
+     * @param label       data set label, can be null
+     * @param columnNames column names, can be null
+     */
+    public BinaryDataSetWriter(String filePath, int inputSize, int outputSize, DataType dataType, String label, String[] columnNames) {
+        if (filePath == null) throw new IllegalArgumentException("File path cannot be null!");
+        if (inputSize <= 0) throw new IllegalArgumentException("Number of inputs cannot be <= 0 : " + inputSize);
+        if (outputSize < 0) throw new IllegalArgumentException("Number of outputs cannot be < 0 : " + outputSize);
+        if (dataType == null) throw new IllegalArgumentException("Data type cannot be null!");
+
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.dataType = dataType;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, (inputSize + outputSize) * dataType.getByteSize()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(new File(filePath), "rw");
+            raf.setLength(0);
+            this.channel = raf.getChannel();
+            writeHeader(label, columnNames);
+        } catch (IOException ex) {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+            throw new NeurophException("Error creating binary data set file!", ex);
+        }
+    }
+
+    /**
+     * Creates new writer for file at specified path, which will hold rows with
+     * the same sizes, label and column names as specified data set.
+     *
+     * @param filePath path to file to write
+     * @param dataSet  data set which provides input/output sizes, label and column names
+     * @param dataType type of values in file
+     */
+    public BinaryDataSetWriter(String filePath, DataSet dataSet, DataType dataType) {
+        this(filePath, dataSet.getInputSize(), dataSet.getOutputSize(), dataType, dataSet.getLabel(), dataSet.getColumnNames());
+    }
+
+    private void writeHeader(String label, String[] columnNames) throws IOException {
+        byte[] labelBytes = label != null ? label.getBytes(StandardCharsets.UTF_8) : null;
+        int namesLength = 4 + (labelBytes != null ? labelBytes.length : 0) + 4;
+
+        byte[][] columnBytes = new byte[columnNames != null ? columnNames.length : 0][];
+        for (int i = 0; i < columnBytes.length; i++) {
+            columnBytes[i] = columnNames[i] != null ? columnNames[i].getBytes(StandardCharsets.UTF_8) : null;
+            namesLength += 4 + (columnBytes[i] != null ? columnBytes[i].length : 0);
+        }
+
+        // align start of the rows to 8 bytes
+        long dataOffset = (32 + namesLength + 7) & ~7L;
+
+        ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MappedDataSet.MAGIC);
+        header.putShort(MappedDataSet.VERSION);
+        header.put(dataType.getCode());
+        header.put(outputSize > 0 ? MappedDataSet.FLAG_SUPERVISED : 0);
+        header.putInt(inputSize);
+        header.putInt(outputSize);
+        header.putLong(0); // row count is updated when writer is closed
+        header.putLong(dataOffset);
+
+        putString(header, labelBytes);
+        header.putInt(columnBytes.length);
+        for (byte[] column : columnBytes) {
+            putString(header, column);
+        }
+
+        header.rewind();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static void putString(ByteBuffer header, byte[] bytes) {
+        if (bytes == null) {
+            header.putInt(-1);
+        } else {
+            header.putInt(bytes.length);
+            header.put(bytes);
+        }
+    }
+
+    /**
+     * Appends row with specified input and output vectors
+     *
+     * @param input  input vector
+     * @param output output vector, ignored for unsupervised data sets
+     */
+    public void writeRow(double[] input, double[] output) {
+        if (input.length != inputSize) {
+            throw new VectorSizeMismatchException("Input vector size does not match data set input size!");
+        }
+        if (outputSize > 0 && (output == null || output.length != outputSize)) {
+            throw new VectorSizeMismatchException("Output vector size does not match data set output size!");
+        }
+
+        if (buffer.remaining() < (inputSize + outputSize) * dataType.getByteSize()) {
+            flush();
+        }
+
+        putValues(input, 0, inputSize);
+        if (outputSize > 0) {
+            putValues(output, 0, outputSize);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Appends specified data set row
+     *
+     * @param row data set row to write
+     */
+    public void writeRow(DataSetRow row) {
+        writeRow(row.getInput(), row.getDesiredOutput());
+    }
+
+    /**
+     * Appends rows stored one after another in flat array. Each row has
+     * (input size + output size) values.
+     *
+     * @param values flat array of row values
+     * @param offset position of the first value to write
+     * @param rows   number of rows to write
+     */
+    public void writeRows(double[] values, int offset, int rows) {
+        int rowLength = inputSize + outputSize;
+        for (int r = 0; r < rows; r++) {
+            if (buffer.remaining() < rowLength * dataType.getByteSize()) {
+                flush();
+            }
+            putValues(values, offset + r * rowLength, rowLength);
+        }
+        rowCount += rows;
+    }
+
+    private void putValues(double[] values, int from, int count) {
+        if (dataType == DataType.FLOAT32) {
+            for (int i = from; i < from + count; i++) {
+                buffer.putFloat((float) values[i]);
+            }
+        } else {
+            for (int i = from; i < from + count; i++) {
+                buffer.putDouble(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns number of rows written so far
+     *
+     * @return number of rows written
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void flush() {
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        } catch (IOException ex) {
+            throw new NeurophException("Error writing binary data set file!", ex);
+        }
+    }
+
+    /**
+     * Flushes buffered rows, writes row count to the file header and closes the file
+     */
+    @Override
+    public void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        flush();
+        try {
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            count.putLong(rowCount).flip();
+            channel.write(count, MappedDataSet.ROW_COUNT_OFFSET);
+            channel.close();
+        } catch (IOException ex) {
+            throw new NeurophException("Error writing binary data set file!", ex);
+        }
+    }
+
+    /**
+     * Writes specified data set to binary data set file
+     *
+     * @param dataSet  data set to write
+     * @param filePath path to binary file
+     * @param dataType type of values in file
+     */
+    public static void write(DataSet dataSet, String filePath, DataType dataType) {
+        try (BinaryDataSetWriter writer = new BinaryDataSetWriter(filePath, dataSet, dataType)) {
+            Iterator<DataSetRow> iterator = dataSet.iterator();
+            while (iterator.hasNext()) {
+                writer.writeRow(iterator.next());
+            }
+        }
+    }
+
+    /**
+     * Converts data set saved with DataSet.save (.tset file) to binary data set file
+     *
+     * @param tsetFilePath   path to serialized data set
+     * @param binaryFilePath path to binary file to create
+     * @param dataType       type of values in binary file
+     */
+    public static void convertSerialized(String tsetFilePath, String binaryFilePath, DataType dataType) {
+        write(DataSet.load(tsetFilePath), binaryFilePath, dataType);
+    }
+
+    /**
+     * Converts csv/txt data set file to binary data set file, without loading
+     * the whole data set in memory.
+     *
+     * @param csvFilePath     path to csv file
+     * @param binaryFilePath  path to binary file to create
+     * @param inputsCount     number of inputs
+     * @param outputsCount    number of outputs
+     * @param delimiter       delimiter of values
+     * @param loadColumnNames true if csv file contains column names in first line
+     * @param dataType        type of values in binary file
+     */
+    public static void convertCsv(String csvFilePath, String binaryFilePath, int inputsCount, int outputsCount,
+                                  String delimiter, boolean loadColumnNames, DataType dataType) {
+
+        if ((delimiter == null) || delimiter.isEmpty())
+            throw new IllegalArgumentException("Delimiter cannot be null or empty!");
+
+        if (CsvParser.supportsDelimiter(delimiter)) {
+            parseCsv(csvFilePath, binaryFilePath, inputsCount, outputsCount, delimiter, loadColumnNames, dataType);
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(csvFilePath)))) {
+            String line;
+            String[] columnNames = null;
+            int lineNumber = 0;
+
+            if (loadColumnNames) {
+                line = reader.readLine();
+                lineNumber++;
+                if (line != null) {
+                    columnNames = line.split(delimiter);
+                }
+            }
+
+            try (BinaryDataSetWriter writer = new BinaryDataSetWriter(binaryFilePath, inputsCount, outputsCount, dataType, null, columnNames)) {
+                double[] inputs = new double[inputsCount];
+                double[] outputs = new double[outputsCount];
+
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    String[] values = line.split(delimiter);
+                    if (values[0].equals("")) {
+                        continue; // skip if line was empty
+                    }
+
+                    try {
+                        for (int i = 0; i < inputsCount; i++) {
+                            inputs[i] = Double.parseDouble(values[i]);
+                        }
+                        for (int i = 0; i < outputsCount; i++) {
+                            outputs[i] = Double.parseDouble(values[inputsCount + i]);
+                        }
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                        throw new NeurophException("Bad number format in data set file at line " + lineNumber + "!", ex);
+                    }
+
+                    writer.writeRow(inputs, outputs);
+                }
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading data set file!", ex);
+        }
+    }
+
+    /**
+     * Converts csv file using parallel {@link CsvParser}, parsed chunks are
+     * written in file order as they become available.
+     */
+    private static void parseCsv(String csvFilePath, String binaryFilePath, int inputsCount, int outputsCount,
+                                 String delimiter, boolean loadColumnNames, DataType dataType) {
+        File file = new File(csvFilePath);
+        final int rowSize = inputsCount + outputsCount;
+
+        try {
+            String[] columnNames = loadColumnNames ? CsvParser.readColumnNames(file, delimiter) : null;
+
+            try (BinaryDataSetWriter writer = new BinaryDataSetWriter(binaryFilePath, inputsCount, outputsCount, dataType, null, columnNames)) {
+                CsvParser parser = new CsvParser(rowSize, delimiter);
+                parser.parse(file, loadColumnNames,
+                        (values, rows) -> rows * rowSize == values.length ? values : Arrays.copyOf(values, rows * rowSize),
+                        values -> writer.writeRows(values, 0, values.length / rowSize));
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading data set file!", ex);
+        } catch (NumberFormatException ex) {
+            throw new NeurophException("Bad number format in data set file: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Command line conversion tool.
+     * <pre>
+     * BinaryDataSetWriter tset  input.tset output.nds [float32|float64]
+     * BinaryDataSetWriter csv   input.csv  output.nds inputs outputs delimiter [header] [float32|float64]
+     * </pre>
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length >= 3 && args[0].equals("tset")) {
+            DataType type = args.length > 3 ? DataType.valueOf(args[3].toUpperCase()) : DataType.FLOAT64;
+            convertSerialized(args[1], args[2], type);
+        } else if (args.length >= 6 && args[0].equals("csv")) {
+            boolean header = args.length > 6 && args[6].equals("header");
+            String typeArg = args.length > 7 ? args[7] : (args.length > 6 && !header ? args[6] : null);
+            DataType type = typeArg != null ? DataType.valueOf(typeArg.toUpperCase()) : DataType.FLOAT64;
+            convertCsv(args[1], args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]), args[5], header, type);
+        } else {
+            System.err.println("Usage: BinaryDataSetWriter tset <in.tset> <out> [float32|float64]");
+            System.err.println("       BinaryDataSetWriter csv <in.csv> <out> <inputs> <outputs> <delimiter> [header] [float32|float64]");
+        }
+    }
+}
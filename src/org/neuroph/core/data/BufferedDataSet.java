@@ -15,227 +15,524 @@
  */
 package org.neuroph.core.data;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.neuroph.core.exceptions.NeurophException;
 
 /**
  * This class can be used for large training sets, which are partialy read from
- * file during the training. It loads bufferSize rows from file into DataSet,
- * and when it iterates all of them, it takes next bufferSize rows. It can be
- * used everywhere where DataSet class is used since it extends it. The rows
- * should be iterated with iterator() interface.
+ * file during the training. Rows are read in chunks of bufferSize rows on a
+ * background thread, so next chunk is loaded while the current one is used for
+ * training (double buffering). It can be used everywhere where DataSet class is
+ * used since it extends it. The rows should be iterated with iterator()
+ * interface, and each call to iterator() starts a new pass through the file, so
+ * it can be used for any number of training epochs.
  *
  * @author Zoran Sevarac
  */
 public class BufferedDataSet extends DataSet implements Iterator<DataSetRow> {
 
+    private static final long serialVersionUID = 2L;
+
     /**
-     * Buffer size determines how many data rows will be loaded from file at once
-     */
-    private int bufferSize = 1000;
-    
-    /**
-     * File with data set rows
+     * Marks the end of file in queue of loaded chunks
      */
-    private File file;
-    
+    private static final List<DataSetRow> END_OF_FILE = Collections.emptyList();
+
     /**
-     * Number of lines in the file
+     * Size of byte buffer used to read the file
      */
-    private long fileLinesNumber;
-    
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
     /**
-     * Current line number that we're reading
+     * Buffer size determines how many data rows will be loaded from file at once
      */
-    private long currentFileLineNumber;    
-    
+    private int bufferSize = 1000;
+
     /**
-     * Number of rows loaded
+     * File with data set rows
      */
-    private int rowsLoaded;
-    
+    private File file;
+
     /**
      * Delimiter character for values in line
      */
     private String delimiter;
-    
+
     /**
-     * File reader used to read from file
+     * Parser for values in line, null if delimiter is regex not supported by parser
      */
-    FileReader fileReader = null;
-    
+    private transient CsvParser parser;
+
     /**
-     * Buffered reader used to read from file
+     * Number of rows read in the last complete pass through the file
      */
-    BufferedReader bufferedReader;
-    
+    private volatile int rowCount;
+
     /**
-     * A reference to the buffered rows (a List collection in superclass)
+     * True when rowCount is set by complete pass or by counting rows
      */
-    List<DataSetRow> bufferedRows;
-    
+    private transient volatile boolean rowCountKnown;
+
     /**
-     * Iterator for buffered rowa
+     * Iterator returned by the last call to iterator()
      */
-    Iterator<DataSetRow> bufferIterator;
+    private transient PrefetchIterator activeIterator;
 
+    /**
+     * Iterator used by hasNext() and next() methods of this class
+     */
+    private transient PrefetchIterator sharedIterator;
 
+    /**
+     * Creates new unsupervised buffered data set with specified file and input size.
+     *
+     * @param file data set file
+     * @param inputSize size of input vector
+     * @param delimiter delimiter for vector values
+     */
     public BufferedDataSet(File file, int inputSize, String delimiter) {
         super(inputSize);
+        this.file = file;
+        this.delimiter = delimiter;
     }
 
     /**
      * Creates new buffered data set with specified file, input and output size.
      * Data set file is assumed to be txt value with data set rows in a single line,
      * with input and output vector values delimited by delimiter.
-     * 
-     * @param file datas et file
+     *
+     * @param file data set file
      * @param inputSize size of input vector
      * @param outputSize size of outut vector
      * @param delimiter delimiter for vector values
-     * @throws FileNotFoundException 
+     * @throws FileNotFoundException if specified file does not exist
      */
     public BufferedDataSet(File file, int inputSize, int outputSize, String delimiter) throws FileNotFoundException {
         super(inputSize, outputSize);
 
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+
         this.delimiter = delimiter;
         this.file = file;
-        this.fileReader = new FileReader(file);
-        this.bufferedReader = new BufferedReader(fileReader);
-        fileLinesNumber = countFileLines();
-        
-        // load first chunk of data into buffer
-        loadNextBuffer();
     }
 
     /**
-     * Counts and returns number of lines in a file
-     * @return number of lines in a file
-     * @throws FileNotFoundException 
+     * Returns number of rows loaded from file at once
+     *
+     * @return buffer size
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets number of rows loaded from file at once. Takes effect with the next
+     * call to iterator().
+     *
+     * @param bufferSize buffer size
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size cannot be <= 0 : " + bufferSize);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns number of rows read in the last complete pass through the file.
+     * Before the first complete pass, rows are counted by scanning the file
+     * for lines which are not blank, without parsing values.
+     *
+     * @return number of rows in data set file
+     */
+    @Override
+    public int size() {
+        if (!rowCountKnown) {
+            rowCount = countRows();
+            rowCountKnown = true;
+        }
+        return rowCount;
+    }
+
+    /**
+     * Returns true if data set file has no rows
+     *
+     * @return true if data set has no rows, false otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Counts lines of data set file which are not blank
      */
-    private long countFileLines() throws FileNotFoundException {
-        LineNumberReader lnr = new LineNumberReader(new FileReader(file));
-        try {
-          //  lnr.skip(Long.MAX_VALUE);
-           while(lnr.skip(Long.MAX_VALUE) > 0) {}; 
+    private int countRows() {
+        int rows = 0;
+        try (LineReader reader = new LineReader(new FileInputStream(file))) {
+            while (reader.nextLine()) {
+                for (int i = reader.lineStart; i < reader.lineEnd; i++) {
+                    if (reader.buffer[i] > ' ') {
+                        rows++;
+                        break;
+                    }
+                }
+            }
         } catch (IOException ex) {
-            Logger.getLogger(BufferedDataSet.class.getName()).log(Level.SEVERE, null, ex);
+            throw new NeurophException("Error reading data set file!", ex);
         }
-        return lnr.getLineNumber() + 1;
+        return rows;
     }
 
     /**
-     * Returns iterator for buffered data set
-     * @return 
+     * Returns iterator for buffered data set, which reads the file from the
+     * beginning. Only one pass can be active at a time, so any previously
+     * returned iterator is closed.
+     *
+     * @return iterator which reads data set rows from file
      */
     @Override
     public Iterator<DataSetRow> iterator() {
-        return this;
+        synchronized (this) {
+            if (activeIterator != null) {
+                activeIterator.close();
+            }
+            activeIterator = new PrefetchIterator();
+            return activeIterator;
+        }
+    }
+
+    /**
+     * Stops background loading for active iterators and closes data set file.
+     */
+    public synchronized void close() {
+        if (activeIterator != null) {
+            activeIterator.close();
+            activeIterator = null;
+        }
+        if (sharedIterator != null) {
+            sharedIterator.close();
+            sharedIterator = null;
+        }
+    }
+
+    private synchronized PrefetchIterator getSharedIterator() {
+        if (sharedIterator == null) {
+            sharedIterator = new PrefetchIterator();
+        }
+        return sharedIterator;
     }
 
     /**
-     * Returns true if there are more rows, false otherwise
+     * Returns true if there are more rows, false otherwise. This method makes
+     * a single pass through the file, use iterator() for multiple passes.
+     *
      * @return true if there are more rows, false otherwise
      */
     @Override
     public boolean hasNext() {
-        if (currentFileLineNumber < fileLinesNumber) {
-            return true;
-        }
-
-        return false;
+        return getSharedIterator().hasNext();
     }
 
     /**
-     * Returns next data set row. Note that if there are no more buffered rows, 
-     * this mthod will load next bufferSize rows into buffer.
+     * Returns next data set row. This method makes a single pass through the
+     * file, use iterator() for multiple passes.
+     *
      * @return next data set row
      */
     @Override
     public DataSetRow next() {
-        // if we have reached the end of buffered data
-        if (!bufferIterator.hasNext()) {
-            this.loadNextBuffer(); // load next chunk from file into buffer
-        }
-        
-        currentFileLineNumber++; // increase line counter
-        return bufferIterator.next(); // and return next data row
+        return getSharedIterator().next();
     }
 
     @Override
-    public void remove() { // what should be done here?
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void remove() {
+        throw new UnsupportedOperationException("Rows cannot be removed from buffered data set!");
+    }
+
+    @Override
+    public void addRow(DataSetRow row) {
+        throw new UnsupportedOperationException("Rows cannot be added to buffered data set!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("Rows cannot be removed from buffered data set!");
+    }
+
+    private CsvParser getParser() {
+        if (parser == null && CsvParser.supportsDelimiter(delimiter)) {
+            parser = new CsvParser(getInputSize() + getOutputSize(), delimiter);
+        }
+        return parser;
     }
 
     /**
-     * Loads next bufferSize rows from file into buffer
+     * Iterates one pass through the data set file. Chunks of rows are read by
+     * a background thread, which stays one chunk ahead of the iteration.
      */
-    private void loadNextBuffer() {
-        try {
-            String line = "";
-            this.clear();    // data set buffer
+    private final class PrefetchIterator implements Iterator<DataSetRow>, Closeable {
+
+        /**
+         * Loaded chunks waiting to be iterated
+         */
+        private final BlockingQueue<List<DataSetRow>> loadedChunks = new ArrayBlockingQueue<>(1);
+
+        private final Thread loader;
 
-            rowsLoaded = 0;
-            while (rowsLoaded < bufferSize) { // 
+        private volatile Throwable error;
 
-                line = bufferedReader.readLine();
-                if (line == null) {
-                    break;
+        private List<DataSetRow> currentChunk = Collections.emptyList();
+
+        private int position;
+
+        private boolean finished;
+
+        PrefetchIterator() {
+            loader = new Thread(this::loadChunks, "BufferedDataSet loader: " + file.getName());
+            loader.setDaemon(true);
+            loader.start();
+        }
+
+        /**
+         * Reads the file chunk by chunk, runs on loader thread
+         */
+        private void loadChunks() {
+            int rowsRead = 0;
+            boolean completed = false;
+
+            try (LineReader reader = new LineReader(new FileInputStream(file))) {
+                List<DataSetRow> chunk;
+                while (!(chunk = readChunk(reader)).isEmpty()) {
+                    rowsRead += chunk.size();
+                    loadedChunks.put(chunk);
+                }
+                completed = true;
+            } catch (InterruptedException ex) {
+                return; // iterator was closed
+            } catch (Throwable ex) {
+                error = ex;
+            }
+
+            if (completed) {
+                rowCount = rowsRead;
+                rowCountKnown = true;
+            }
+
+            try {
+                loadedChunks.put(END_OF_FILE);
+            } catch (InterruptedException ex) {
+                // iterator was closed
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < currentChunk.size()) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+
+            try {
+                currentChunk = loadedChunks.take();
+                position = 0;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new NeurophException("Interrupted while waiting for data set rows!", ex);
+            }
+
+            if (currentChunk == END_OF_FILE) {
+                finished = true;
+                if (error instanceof NumberFormatException) {
+                    throw new NeurophException("Bad number format in data set file: " + error.getMessage(), error);
+                } else if (error != null) {
+                    throw new NeurophException("Error reading data set file!", error);
                 }
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public DataSetRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentChunk.get(position++);
+        }
+
+        @Override
+        public void close() {
+            finished = true;
+            currentChunk = Collections.emptyList();
+            loader.interrupt();
+        }
+    }
+
+    /**
+     * Reads next bufferSize rows from file
+     */
+    private List<DataSetRow> readChunk(LineReader reader) throws IOException {
+        List<DataSetRow> rows = new ArrayList<>(bufferSize);
+        CsvParser lineParser = getParser();
+
+        while (rows.size() < bufferSize && reader.nextLine()) {
+            DataSetRow row;
+            try {
+                row = lineParser != null ? parseRow(lineParser, reader) : splitRow(reader);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                NumberFormatException nfe = new NumberFormatException(ex.getMessage() + " at line " + reader.lineNumber);
+                nfe.initCause(ex);
+                throw nfe;
+            }
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+
+        return rows;
+    }
 
-                rowsLoaded++;
-                double[] inputs = new double[getInputSize()];
-                double[] outputs = new double[getOutputSize()];
-                String[] values = line.split(delimiter);
+    private DataSetRow parseRow(CsvParser lineParser, LineReader reader) {
+        double[] values = new double[lineParser.getColumnCount()];
+        int count = lineParser.parseLine(reader.buffer, reader.lineStart, reader.lineEnd, values, 0);
+        if (count == 0) {
+            return null; // skip if line was empty
+        }
+        if (count < values.length) {
+            throw new NumberFormatException("Expected " + values.length + " values but found " + count);
+        }
+
+        double[] inputs = Arrays.copyOf(values, getInputSize());
+        if (getOutputSize() > 0) {
+            return new DataSetRow(inputs, Arrays.copyOfRange(values, getInputSize(), values.length));
+        }
+        return new DataSetRow(inputs);
+    }
+
+    private DataSetRow splitRow(LineReader reader) {
+        int end = reader.lineEnd;
+        if (end > reader.lineStart && reader.buffer[end - 1] == '\r') {
+            end--;
+        }
+        String line = new String(reader.buffer, reader.lineStart, end - reader.lineStart, StandardCharsets.UTF_8);
+        String[] values = line.split(delimiter);
+
+        if (values[0].equals("")) {
+            return null; // skip if line was empty
+        }
+
+        double[] inputs = new double[getInputSize()];
+        double[] outputs = new double[getOutputSize()];
+
+        for (int i = 0; i < getInputSize(); i++) {
+            inputs[i] = Double.parseDouble(values[i]);
+        }
+
+        for (int i = 0; i < getOutputSize(); i++) {
+            outputs[i] = Double.parseDouble(values[getInputSize() + i]);
+        }
+
+        if (getOutputSize() > 0) {
+            return new DataSetRow(inputs, outputs);
+        }
+        return new DataSetRow(inputs);
+    }
+
+    /**
+     * Reads lines from stream as byte ranges in internal buffer
+     */
+    private static final class LineReader implements Closeable {
+
+        private final InputStream in;
+
+        private byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+        /**
+         * Start of unread data, end of valid data and position to continue newline search from
+         */
+        private int start, limit, scanPosition;
+
+        private boolean endOfStream;
 
-                if (values[0].equals("")) {
-                    continue; // skip if line was empty
+        /**
+         * Current line range in buffer
+         */
+        private int lineStart, lineEnd;
+
+        private long lineNumber;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Moves to the next line
+         *
+         * @return true if next line was read, false at the end of stream
+         */
+        boolean nextLine() throws IOException {
+            while (true) {
+                for (int i = scanPosition; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        return setLine(i, i + 1);
+                    }
                 }
-                for (int i = 0; i < getInputSize(); i++) {
-                    inputs[i] = Double.parseDouble(values[i]);
+                scanPosition = limit;
+
+                if (endOfStream) {
+                    return start < limit && setLine(limit, limit);
                 }
 
-                for (int i = 0; i < getOutputSize(); i++) {
-                    outputs[i] = Double.parseDouble(values[getInputSize() + i]);
+                // move unread data to the beginning, and grow buffer for very long lines
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, limit - start);
+                    limit -= start;
+                    scanPosition -= start;
+                    start = 0;
+                }
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
                 }
 
-                if (getOutputSize() > 0) {
-                    this.addRow(new DataSetRow(inputs, outputs));
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfStream = true;
                 } else {
-                    this.addRow(new DataSetRow(inputs));
+                    limit += read;
                 }
             }
+        }
 
-            bufferedRows = this.getRows();
-            bufferIterator = bufferedRows.iterator();
+        private boolean setLine(int end, int next) {
+            lineStart = start;
+            lineEnd = end;
+            start = next;
+            scanPosition = next;
+            lineNumber++;
+            return true;
+        }
 
-        } catch (FileNotFoundException ex) {
-            ex.printStackTrace();
-        } catch (IOException ex) {
-            if (fileReader != null) {
-                try {
-                    fileReader.close();
-                } catch (IOException ex1) {
-                }
-            }
-            ex.printStackTrace();
-        } catch (NumberFormatException ex) {
-            if (fileReader != null) {
-                try {
-                    fileReader.close();
-                } catch (IOException ex1) {
-                }
-            }
-            ex.printStackTrace();
-            throw ex;
+        @Override
+        public void close() throws IOException {
+            in.close();
         }
     }
 }
@@ -0,0 +1,559 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Fast parser for numeric csv and whitespace delimited data set files.
+ * It works directly on bytes: file is split into newline aligned chunks which
+ * are parsed in parallel, and values are written straight into primitive
+ * arrays, without creating intermediate strings. Chunks are always delivered
+ * to the caller in file order, and errors are reported with line numbers.
+ * <p/>
+ * Supported delimiters are single characters (like "," or ";"), escaped single
+ * characters (like "\\t" or "\\|") and whitespace (" ", "\t" or "\\s+") where
+ * any run of spaces and tabs separates values.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class CsvParser {
+
+    /**
+     * Default size of the chunk in bytes
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Delimiter value used to mark whitespace delimited files
+     */
+    private static final int WHITESPACE = -1;
+
+    /**
+     * Exact powers of ten which can be represented as double
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Number of values in each row
+     */
+    private final int columnCount;
+
+    /**
+     * Delimiter byte or WHITESPACE
+     */
+    private final int delimiter;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Handles rows parsed from one chunk. Called from worker threads, so chunk
+     * post processing (like creating data set rows) is also done in parallel.
+     *
+     * @param <T> type of chunk processing result
+     */
+    public static interface ChunkHandler<T> {
+
+        /**
+         * Processes values parsed from single chunk
+         *
+         * @param values flat array of parsed values, row after row
+         * @param rows   number of rows parsed
+         * @return chunk processing result which is passed to ChunkConsumer
+         */
+        T handle(double[] values, int rows);
+    }
+
+    /**
+     * Receives chunk processing results, in file order, on the calling thread.
+     *
+     * @param <T> type of chunk processing result
+     */
+    public static interface ChunkConsumer<T> {
+
+        void accept(T result);
+    }
+
+    /**
+     * Creates parser for rows with specified number of values and delimiter
+     *
+     * @param columnCount number of values to read from each row, extra values are ignored
+     * @param delimiter   delimiter of values
+     */
+    public CsvParser(int columnCount, String delimiter) {
+        if (columnCount <= 0) throw new IllegalArgumentException("Number of columns cannot be <= 0 : " + columnCount);
+        if (!supportsDelimiter(delimiter)) throw new IllegalArgumentException("Unsupported delimiter: " + delimiter);
+
+        this.columnCount = columnCount;
+        this.delimiter = delimiterByte(delimiter);
+    }
+
+    /**
+     * Returns true if specified delimiter can be handled by this parser
+     *
+     * @param delimiter delimiter of values
+     * @return true if delimiter is supported, false otherwise
+     */
+    public static boolean supportsDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            return false;
+        }
+        try {
+            delimiterByte(delimiter);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static int delimiterByte(String delimiter) {
+        if (delimiter.trim().isEmpty() || delimiter.equals("\\s+") || delimiter.equals("\\s") || delimiter.equals("\\t")) {
+            return WHITESPACE;
+        }
+
+        char c;
+        if (delimiter.length() == 1) {
+            c = delimiter.charAt(0);
+            // regex meta characters have different meaning in String.split, so leave them to regex
+            if ("\\[](){}^$*+?.|".indexOf(c) >= 0) {
+                throw new IllegalArgumentException();
+            }
+        } else if (delimiter.length() == 2 && delimiter.charAt(0) == '\\') {
+            c = delimiter.charAt(1); // escaped character, like "\\|"
+            if (Character.isLetterOrDigit(c)) {
+                throw new IllegalArgumentException();
+            }
+        } else {
+            throw new IllegalArgumentException();
+        }
+
+        // delimiter must be ASCII and cannot be part of a number
+        if (c > 127 || c == '\n' || c == '\r' || c == '-' || c == '+' || c == '.' || Character.isLetterOrDigit(c)) {
+            throw new IllegalArgumentException();
+        }
+
+        return c;
+    }
+
+    /**
+     * Returns number of values read from each row
+     *
+     * @return number of values in each row
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Sets size of the chunks (in bytes) in which file is split for parallel parsing
+     *
+     * @param chunkSize chunk size in bytes
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1024) throw new IllegalArgumentException("Chunk size cannot be less than 1024 bytes!");
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets pool used to parse chunks in parallel
+     *
+     * @param pool fork join pool to use
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads first line of the file and splits it into column names
+     *
+     * @param file          file to read
+     * @param delimiterText delimiter used to split column names
+     * @return column names
+     * @throws IOException if file could not be read
+     */
+    public static String[] readColumnNames(File file, String delimiterText) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            String line = raf.readLine();
+            if (line == null) {
+                return null;
+            }
+            line = new String(line.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+            return line.split(delimiterText);
+        }
+    }
+
+    /**
+     * Parses specified file. Chunks are parsed in parallel by handler, and
+     * results are passed to consumer on calling thread in file order. Only a
+     * bounded number of chunks is in flight at any time, so files larger than
+     * memory can be processed.
+     *
+     * @param file       file to parse
+     * @param skipHeader true if first line contains column names and should be skipped
+     * @param handler    handles values parsed from single chunk (on worker thread)
+     * @param consumer   receives chunk results in file order (on calling thread)
+     * @param <T>        type of chunk processing result
+     * @return number of rows parsed
+     * @throws IOException if file could not be read
+     * @throws NumberFormatException if file contains bad value, message contains line number
+     */
+    public <T> long parse(File file, boolean skipHeader, final ChunkHandler<T> handler, ChunkConsumer<T> consumer) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            long fileSize = channel.size();
+            long position = skipHeader ? nextLineStart(channel, 0, fileSize) : 0;
+            long lineNumber = skipHeader ? 2 : 1; // line number of the first line in current chunk
+            long rows = 0;
+
+            int window = Math.max(2, pool.getParallelism() * 2);
+            Deque<ForkJoinTask<ChunkResult<T>>> inFlight = new ArrayDeque<>();
+
+            try {
+                while (position < fileSize || !inFlight.isEmpty()) {
+                    // keep window of chunks parsing in parallel
+                    while (position < fileSize && inFlight.size() < window) {
+                        long end = Math.min(fileSize, position + chunkSize);
+                        if (end < fileSize) {
+                            end = nextLineStart(channel, end, fileSize);
+                        }
+                        final long chunkStart = position;
+                        final int chunkLength = (int) (end - position);
+                        inFlight.add(pool.submit(() -> parseChunk(channel, chunkStart, chunkLength, handler)));
+                        position = end;
+                    }
+
+                    ChunkResult<T> result = join(inFlight.poll());
+                    if (result.errorLine >= 0) {
+                        NumberFormatException ex = new NumberFormatException(result.errorMessage + " at line " + (lineNumber + result.errorLine));
+                        if (result.error != null) {
+                            ex.initCause(result.error);
+                        }
+                        throw ex;
+                    }
+
+                    lineNumber += result.lines;
+                    rows += result.rows;
+                    consumer.accept(result.value);
+                }
+            } catch (Throwable ex) {
+                // any failure (bad value, worker or consumer error) stops chunks still in flight
+                for (ForkJoinTask<ChunkResult<T>> task : inFlight) {
+                    task.cancel(true);
+                }
+                throw ex;
+            }
+
+            return rows;
+        }
+    }
+
+    private static <T> ChunkResult<T> join(ForkJoinTask<ChunkResult<T>> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrupted!", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Returns position of the first byte after the next newline at or after specified position
+     */
+    private static long nextLineStart(FileChannel channel, long from, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Result of parsing one chunk
+     */
+    private static class ChunkResult<T> {
+        T value;
+        int rows;
+        int lines;
+        int errorLine = -1; // line within chunk (0 based) where error occured
+        String errorMessage;
+        Throwable error;
+    }
+
+    private <T> ChunkResult<T> parseChunk(FileChannel channel, long start, int length, ChunkHandler<T> handler) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        ChunkResult<T> result = new ChunkResult<>();
+        // estimate number of values from chunk size, grow if needed
+        double[] values = new double[Math.max(columnCount, length / 4)];
+        int rows = 0;
+        int line = 0;
+        int pos = 0;
+
+        while (pos < length) {
+            int lineEnd = pos;
+            while (lineEnd < length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+
+            if ((rows + 1) * columnCount > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, (rows + 1) * columnCount));
+            }
+
+            int parsed;
+            try {
+                parsed = parseLine(bytes, pos, lineEnd, values, rows * columnCount);
+            } catch (NumberFormatException ex) {
+                result.errorLine = line;
+                result.errorMessage = "Invalid value (" + ex.getMessage() + ")";
+                result.error = ex;
+                return result;
+            }
+
+            if (parsed == columnCount) {
+                rows++;
+            } else if (parsed > 0) {
+                result.errorLine = line;
+                result.errorMessage = "Expected " + columnCount + " values but found " + parsed;
+                return result;
+            } // empty lines are skipped
+
+            line++;
+            pos = lineEnd + 1;
+        }
+
+        result.rows = rows;
+        result.lines = line;
+        result.value = handler.handle(values, rows);
+        return result;
+    }
+
+    /**
+     * Parses values from a single line into specified array
+     *
+     * @param bytes  line bytes
+     * @param from   position of the first byte in line
+     * @param to     position after the last byte in line
+     * @param values array to fill
+     * @param offset position of the first value in array
+     * @return number of values parsed, 0 for empty lines
+     */
+    public int parseLine(byte[] bytes, int from, int to, double[] values, int offset) {
+        // ignore trailing carriage return
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+
+        int count = 0;
+        int pos = from;
+
+        while (pos < to && count < columnCount) {
+            // skip blanks before value
+            while (pos < to && (bytes[pos] == ' ' || bytes[pos] == '\t') && bytes[pos] != delimiter) {
+                pos++;
+            }
+            if (pos == to && delimiter == WHITESPACE) {
+                break;
+            }
+
+            int valueEnd = pos;
+            if (delimiter == WHITESPACE) {
+                while (valueEnd < to && bytes[valueEnd] != ' ' && bytes[valueEnd] != '\t') {
+                    valueEnd++;
+                }
+            } else {
+                while (valueEnd < to && bytes[valueEnd] != delimiter) {
+                    valueEnd++;
+                }
+            }
+
+            // trim blanks after value
+            int end = valueEnd;
+            while (end > pos && (bytes[end - 1] == ' ' || bytes[end - 1] == '\t')) {
+                end--;
+            }
+
+            if (end == pos) {
+                if (count == 0 && valueEnd == to) {
+                    return 0; // empty line
+                }
+                throw new NumberFormatException("Empty value");
+            }
+
+            values[offset + count++] = parseDouble(bytes, pos, end);
+            pos = valueEnd + 1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Parses values from a single line into specified array
+     *
+     * @param line   line to parse
+     * @param values array to fill
+     * @return number of values parsed, 0 for empty lines
+     */
+    public int parseLine(String line, double[] values) {
+        byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+        return parseLine(bytes, 0, bytes.length, values, 0);
+    }
+
+    /**
+     * Parses double value from ASCII bytes. Common decimal values with up to
+     * 15 significant digits are converted exactly without creating strings,
+     * other values fall back to Double.parseDouble, so result is always the
+     * same as with Double.parseDouble.
+     *
+     * @param bytes byte array with value
+     * @param from  position of the first byte of value
+     * @param to    position after the last byte of value
+     * @return parsed value
+     * @throws NumberFormatException if bytes do not contain valid number
+     */
+    public static double parseDouble(byte[] bytes, int from, int to) {
+        int pos = from;
+        boolean negative = false;
+
+        if (pos < to && (bytes[pos] == '-' || bytes[pos] == '+')) {
+            negative = bytes[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;      // significant digits in mantissa
+        int exponent = 0;
+        boolean anyDigits = false;
+
+        // integer part
+        while (pos < to && bytes[pos] >= '0' && bytes[pos] <= '9') {
+            anyDigits = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (bytes[pos] - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++; // digit does not fit, it is dropped
+                if (bytes[pos] != '0') digits = 19;
+            }
+            pos++;
+        }
+
+        // fraction part
+        if (pos < to && bytes[pos] == '.') {
+            pos++;
+            while (pos < to && bytes[pos] >= '0' && bytes[pos] <= '9') {
+                anyDigits = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (bytes[pos] - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                } else if (bytes[pos] != '0') {
+                    digits = 19;
+                }
+                pos++;
+            }
+        }
+
+        if (!anyDigits) {
+            return slowParse(bytes, from, to);
+        }
+
+        // exponent part
+        if (pos < to && (bytes[pos] == 'e' || bytes[pos] == 'E')) {
+            pos++;
+            boolean negativeExp = false;
+            if (pos < to && (bytes[pos] == '-' || bytes[pos] == '+')) {
+                negativeExp = bytes[pos] == '-';
+                pos++;
+            }
+            if (pos == to) {
+                return slowParse(bytes, from, to);
+            }
+            int exp = 0;
+            while (pos < to && bytes[pos] >= '0' && bytes[pos] <= '9') {
+                if (exp < 100000) exp = exp * 10 + (bytes[pos] - '0');
+                pos++;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        if (pos != to) {
+            return slowParse(bytes, from, to);
+        }
+
+        // fast path is exact only if both mantissa and power of ten are exactly representable
+        if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = (double) mantissa;
+            if (exponent < 0) {
+                value = value / POWERS_OF_TEN[-exponent];
+            } else {
+                value = value * POWERS_OF_TEN[exponent];
+            }
+            return negative ? -value : value;
+        }
+
+        return slowParse(bytes, from, to);
+    }
+
+    private static double slowParse(byte[] bytes, int from, int to) {
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+}
@@ -17,6 +17,7 @@ package org.neuroph.core.data;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -302,7 +303,7 @@ public class DataSet implements Serializable {
             sb.append(System.lineSeparator());
         }
 
-        for (DataSetRow row : rows) {
+        for (DataSetRow row : getRows()) {
             sb.append(row).append(System.lineSeparator());
         }
 
@@ -326,7 +327,7 @@ public class DataSet implements Serializable {
         }
 
         // promeniti
-        for (DataSetRow row : rows) {
+        for (DataSetRow row : getRows()) {
             sb.append(row.toCSV()); // nije dobro jer lepi input i desired output; treba bez toga mozda dodati u toCSV
             sb.append(System.lineSeparator());
         }
@@ -389,7 +390,7 @@ public class DataSet implements Serializable {
                 out.println();
             }
 
-            for (DataSetRow row : this.rows) {
+            for (DataSetRow row : getRows()) {
                 double[] input = row.getInput();
                 for (int i = 0; i < input.length; i++) {
                     out.print(input[i]);
@@ -450,7 +451,9 @@ public class DataSet implements Serializable {
     }
 
     /**
-     * Creates and returns data set from specified csv file
+     * Creates and returns data set from specified csv file.
+     * File is parsed in parallel chunks by {@link CsvParser} for all common
+     * delimiters, other (regex) delimiters are handled line by line.
      *
      * @param filePath        path to csv dataset file to import
      * @param inputsCount     number of inputs
@@ -458,47 +461,101 @@ public class DataSet implements Serializable {
      * @param delimiter       delimiter of values
      * @param loadColumnNames true if csv file contains column names in first line, false otherwise
      * @return instance of dataset with values from specified file
-     * 
-     * TODO: try with resources, provide information on exact line of error if format is not good in NumberFormatException
      */
     public static DataSet createFromFile(String filePath, int inputsCount, int outputsCount, String delimiter, boolean loadColumnNames) {
-        BufferedReader reader = null;
-
         if (filePath == null) throw new IllegalArgumentException("File name cannot be null!");
         if (inputsCount <= 0) throw new IllegalArgumentException("Number of inputs cannot be <= 0 : "+inputsCount);
         if (outputsCount < 0) throw new IllegalArgumentException("Number of outputs cannot be < 0 : "+outputsCount);
         if ((delimiter == null) || delimiter.isEmpty())
             throw new IllegalArgumentException("Delimiter cannot be null or empty!");
 
+        File file = new File(filePath);
+        if (!file.exists()) {
+            throw new NeurophException("Could not find data set file!", new FileNotFoundException(filePath));
+        }
+
+        DataSet dataSet = new DataSet(inputsCount, outputsCount);
+        dataSet.setFilePath(filePath);
+
         try {
-            DataSet dataSet = new DataSet(inputsCount, outputsCount);
-            dataSet.setFilePath(filePath);            
-            reader = new BufferedReader(new FileReader(new File(filePath)));
+            if (!CsvParser.supportsDelimiter(delimiter)) {
+                readLines(file, dataSet, delimiter, loadColumnNames);
+                return dataSet;
+            }
+
+            if (loadColumnNames) {
+                dataSet.setColumnNames(CsvParser.readColumnNames(file, delimiter));
+            }
+
+            final int rowSize = inputsCount + outputsCount;
+            CsvParser parser = new CsvParser(rowSize, delimiter);
+            // rows are created on parser threads, and added in file order
+            parser.parse(file, loadColumnNames, (values, count) -> {
+                List<DataSetRow> chunkRows = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int offset = i * rowSize;
+                    double[] inputs = Arrays.copyOfRange(values, offset, offset + inputsCount);
+                    if (outputsCount > 0) {
+                        chunkRows.add(new DataSetRow(inputs, Arrays.copyOfRange(values, offset + inputsCount, offset + rowSize)));
+                    } else {
+                        chunkRows.add(new DataSetRow(inputs));
+                    }
+                }
+                return chunkRows;
+            }, dataSet.rows::addAll);
+
+            return dataSet;
+
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading data set file!", ex);
+        } catch (NumberFormatException ex) {
+            throw new NeurophException("Bad number format in data set file: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads data set file line by line, splitting lines with regex delimiter
+     */
+    private static void readLines(File file, DataSet dataSet, String delimiter, boolean loadColumnNames) throws IOException {
+        int inputsCount = dataSet.getInputSize();
+        int outputsCount = dataSet.getOutputSize();
 
-            String line = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
 
             if (loadColumnNames) {
                 // get column names from the first line
                 line = reader.readLine();
-                String[] colNames = line.split(delimiter);
-                dataSet.setColumnNames(colNames);
+                lineNumber++;
+                if (line != null) {
+                    dataSet.setColumnNames(line.split(delimiter));
+                }
             }
 
             while ((line = reader.readLine()) != null) {
+                lineNumber++;
                 String[] values = line.split(delimiter);
 
-                double[] inputs = new double[inputsCount];
-                double[] outputs = new double[outputsCount];
-
                 if (values[0].equals("")) {
                     continue; // skip if line was empty
                 }
-                for (int i = 0; i < inputsCount; i++) {
-                    inputs[i] = Double.parseDouble(values[i]);
-                }
 
-                for (int i = 0; i < outputsCount; i++) {
-                    outputs[i] = Double.parseDouble(values[inputsCount + i]);
+                double[] inputs = new double[inputsCount];
+                double[] outputs = new double[outputsCount];
+
+                try {
+                    for (int i = 0; i < inputsCount; i++) {
+                        inputs[i] = Double.parseDouble(values[i]);
+                    }
+
+                    for (int i = 0; i < outputsCount; i++) {
+                        outputs[i] = Double.parseDouble(values[inputsCount + i]);
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                    NumberFormatException nfe = new NumberFormatException(ex.getMessage() + " at line " + lineNumber);
+                    nfe.initCause(ex);
+                    throw nfe;
                 }
 
                 if (outputsCount > 0) {
@@ -507,32 +564,7 @@ public class DataSet implements Serializable {
                     dataSet.addRow(new DataSetRow(inputs));
                 }
             }
-
-            reader.close();
-            
-            return dataSet;
-
-        } catch (FileNotFoundException ex) {
-            throw new NeurophException("Could not find data set file!", ex);
-        } catch (IOException ex) {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException ex1) {
-                }
-            }
-            throw new NeurophException("Error reading data set file!", ex);
-        } catch (NumberFormatException ex) {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException ex1) {
-                }
-            }
-            ex.printStackTrace();
-            throw new NeurophException("Bad number format in data set file!", ex);
         }
-
     }
 
     /**
@@ -553,7 +585,8 @@ public class DataSet implements Serializable {
     // http://java.about.com/od/javautil/a/uniquerandomnum.htm
 
     /**
-     * Returns training and test subsets in the specified percent ratio
+     * Returns training and test subsets in the specified percent ratio.
+     * Subsets are views of this data set, which is not changed.
      * @param trainSetPercent
      * @param testSetPercent
      * @return
@@ -565,6 +598,23 @@ public class DataSet implements Serializable {
         return trainAndTestSet;
     }
 
+    /**
+     * Returns training and test subsets in the specified percent ratio, which
+     * are always the same for the same seed.
+     * Subsets are views of this data set, which is not changed.
+     * @param trainSetPercent
+     * @param testSetPercent
+     * @param seed random seed
+     * @return
+     */
+    public DataSet[] createTrainingAndTestSubsets(int trainSetPercent, int testSetPercent, long seed) {
+        SubSampling sampling = new SubSampling(trainSetPercent, testSetPercent);
+        sampling.setSeed(seed);
+        DataSet[] trainAndTestSet =  new DataSet[2];
+        sampling.sample(this).toArray(trainAndTestSet);
+        return trainAndTestSet;
+    }
+
 
     public List<DataSet> sample(Sampling sampling) {
         return sampling.sample(this);
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.util.Random;
+
+/**
+ * Read only view of selected rows of another data set. View keeps only indices
+ * of the rows, and rows themselves are shared with the source data set, so
+ * creating subsets (for training, test or cross validation) does not copy any
+ * data and does not change the source. The same row can appear in view more
+ * than once (bootstrap samples).
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class DataSetView extends IndexedDataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Data set which holds the rows
+     */
+    private final DataSet source;
+
+    /**
+     * Indices of rows in source data set
+     */
+    private final int[] indices;
+
+    /**
+     * Creates view of specified rows of source data set
+     *
+     * @param source  source data set
+     * @param indices indices of rows in source data set, array is not copied
+     */
+    public DataSetView(DataSet source, int[] indices) {
+        super(source.getInputSize(), source.getOutputSize());
+
+        for (int idx : indices) {
+            if (idx < 0 || idx >= source.size()) {
+                throw new IndexOutOfBoundsException("Row index " + idx + " out of data set bounds: " + source.size());
+            }
+        }
+
+        this.source = source;
+        this.indices = indices;
+        setLabel(source.getLabel());
+        setColumnNames(source.getColumnNames());
+    }
+
+    /**
+     * Returns data set which holds the rows of this view
+     *
+     * @return source data set
+     */
+    public DataSet getSource() {
+        return source;
+    }
+
+    /**
+     * Returns index of view row in source data set
+     *
+     * @param idx index of row in this view
+     * @return index of row in source data set
+     */
+    public int getSourceIndex(int idx) {
+        return indices[idx];
+    }
+
+    /**
+     * Returns copy of row indices in source data set
+     *
+     * @return row indices
+     */
+    public int[] getSourceIndices() {
+        return indices.clone();
+    }
+
+    /**
+     * Creates new data set with copies of the rows in this view
+     *
+     * @return data set with copied rows
+     */
+    public DataSet toDataSet() {
+        DataSet dataSet = isSupervised() ? new DataSet(getInputSize(), getOutputSize()) : new DataSet(getInputSize());
+        dataSet.setLabel(getLabel());
+        dataSet.setColumnNames(getColumnNames());
+        for (int idx : indices) {
+            DataSetRow row = source.getRowAt(idx);
+            DataSetRow copy = isSupervised()
+                    ? new DataSetRow(row.getInput().clone(), row.getDesiredOutput().clone())
+                    : new DataSetRow(row.getInput().clone());
+            copy.setLabel(row.getLabel());
+            dataSet.addRow(copy);
+        }
+        return dataSet;
+    }
+
+    /**
+     * View is serialized as a plain data set with its own rows, so saved
+     * subsets do not contain the whole source data set.
+     */
+    private Object writeReplace() {
+        return toDataSet();
+    }
+
+    @Override
+    public boolean isSupervised() {
+        return source.isSupervised();
+    }
+
+    @Override
+    public DataSetRow getRowAt(int idx) {
+        return source.getRowAt(indices[idx]);
+    }
+
+    @Override
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Shuffles order of rows in this view using specified random generator,
+     * source data set is not changed
+     *
+     * @param random random generator
+     */
+    @Override
+    public void shuffle(Random random) {
+        permute(indices, random);
+    }
+
+    @Override
+    public void addRow(DataSetRow row) {
+        throw new UnsupportedOperationException("Rows cannot be added to data set view!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("Rows cannot be removed from data set view!");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Rows cannot be removed from data set view!");
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Data set backed by memory mapped IDX files (MNIST format): a file with
+ * images (or any other items) and optional file with labels. Rows are decoded
+ * when they are accessed, with values scaled to [0, 1] by default, images
+ * optionally padded with background border, and labels encoded as one hot
+ * vectors. Opening the data set does not read images in memory.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class IdxDataSet extends IndexedDataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String imageFilePath;
+
+    private final String labelFilePath;
+
+    /**
+     * Number of background pixels added on each side of the image
+     */
+    private final int padding;
+
+    /**
+     * Decoded value is value * scale + offset
+     */
+    private double scale = 1.0 / 255, offset = 0;
+
+    private transient IdxFile images;
+
+    private transient IdxFile labels;
+
+    /**
+     * Image rows and columns, for items which are not two dimensional width is item size and height 1
+     */
+    private transient int height, width;
+
+    /**
+     * Creates data set from specified image and label files
+     *
+     * @param imageFilePath path to IDX file with images
+     * @param labelFilePath path to IDX file with labels, or null for unsupervised data set
+     */
+    public IdxDataSet(String imageFilePath, String labelFilePath) {
+        this(imageFilePath, labelFilePath, 0);
+    }
+
+    /**
+     * Creates data set from specified image and label files, with images
+     * padded with background border of specified size
+     *
+     * @param imageFilePath path to IDX file with images
+     * @param labelFilePath path to IDX file with labels, or null for unsupervised data set
+     * @param padding       number of background pixels added on each side of the image
+     */
+    public IdxDataSet(String imageFilePath, String labelFilePath, int padding) {
+        this(IdxFile.open(imageFilePath), labelFilePath != null ? IdxFile.open(labelFilePath) : null, padding);
+    }
+
+    private IdxDataSet(IdxFile images, IdxFile labels, int padding) {
+        super(paddedSize(images, padding), labels != null ? countClasses(labels) : 0);
+
+        if (padding < 0) throw new IllegalArgumentException("Padding cannot be < 0 : " + padding);
+        if (labels != null && labels.getItemCount() != images.getItemCount()) {
+            throw new NeurophException("The number of labels and images do not match!");
+        }
+
+        this.imageFilePath = images.getFilePath();
+        this.labelFilePath = labels != null ? labels.getFilePath() : null;
+        this.padding = padding;
+        setFilePath(imageFilePath);
+        open(images, labels);
+    }
+
+    private void open(IdxFile images, IdxFile labels) {
+        this.images = images;
+        this.labels = labels;
+
+        int[] dimensions = images.getDimensions();
+        if (dimensions.length == 3) {
+            height = dimensions[1];
+            width = dimensions[2];
+        } else {
+            height = 1;
+            width = images.getItemSize();
+        }
+    }
+
+    private static int paddedSize(IdxFile images, int padding) {
+        int[] dimensions = images.getDimensions();
+        if (padding > 0 && dimensions.length != 3) {
+            throw new IllegalArgumentException("Padding is supported only for two dimensional images!");
+        }
+        if (dimensions.length != 3) {
+            return images.getItemSize();
+        }
+        return (dimensions[1] + 2 * padding) * (dimensions[2] + 2 * padding);
+    }
+
+    /**
+     * Returns number of classes, which is max label + 1
+     */
+    private static int countClasses(IdxFile labels) {
+        if (labels.getItemSize() != 1) {
+            throw new NeurophException("Label file must contain single value per item!");
+        }
+        int max = 0;
+        for (int i = 0; i < labels.getItemCount(); i++) {
+            max = Math.max(max, (int) labels.getValue(i, 0));
+        }
+        return max + 1;
+    }
+
+    /**
+     * Sets linear transformation of decoded values: value * scale + offset.
+     * Default scale is 1/255 which maps byte pixels to [0, 1].
+     *
+     * @param scale  value scale
+     * @param offset value offset
+     */
+    public void setScale(double scale, double offset) {
+        this.scale = scale;
+        this.offset = offset;
+    }
+
+    public int getPadding() {
+        return padding;
+    }
+
+    /**
+     * Returns width of (padded) image
+     */
+    public int getImageWidth() {
+        return width + 2 * padding;
+    }
+
+    /**
+     * Returns height of (padded) image
+     */
+    public int getImageHeight() {
+        return height + 2 * padding;
+    }
+
+    /**
+     * Returns label of the specified image
+     *
+     * @param idx row index
+     * @return image label
+     */
+    public int getLabelAt(int idx) {
+        if (labels == null) {
+            throw new IllegalStateException("Data set has no labels!");
+        }
+        return (int) labels.getValue(rowIndex(idx), 0);
+    }
+
+    /**
+     * Decodes row at specified index into given arrays, without creating new objects
+     *
+     * @param idx    row index
+     * @param input  array for input values (size of input vector)
+     * @param output array for one hot label (size of output vector), may be null
+     */
+    public void readRow(int idx, double[] input, double[] output) {
+        int item = rowIndex(idx);
+
+        if (padding == 0) {
+            images.readItem(item, scale, offset, input, 0);
+        } else {
+            int paddedWidth = width + 2 * padding;
+            Arrays.fill(input, offset); // background
+            images.readItem(item, scale, offset, input, padding * paddedWidth + padding, width, paddedWidth);
+        }
+
+        if (output != null && labels != null) {
+            Arrays.fill(output, 0);
+            output[(int) labels.getValue(item, 0)] = 1;
+        }
+    }
+
+    /**
+     * Decodes image at specified index into float array, without padding
+     *
+     * @param idx   row index
+     * @param input array for image values
+     */
+    public void readImage(int idx, float[] input) {
+        images.readItem(rowIndex(idx), (float) scale, (float) offset, input, 0);
+    }
+
+    @Override
+    public DataSetRow getRowAt(int idx) {
+        double[] input = new double[getInputSize()];
+        if (labels == null) {
+            readRow(idx, input, null);
+            return new DataSetRow(input);
+        }
+        double[] output = new double[getOutputSize()];
+        readRow(idx, input, output);
+        return new DataSetRow(input, output);
+    }
+
+    @Override
+    public boolean isSupervised() {
+        return labels != null;
+    }
+
+    @Override
+    public int size() {
+        return images.getItemCount();
+    }
+
+    @Override
+    public void addRow(DataSetRow row) {
+        throw new UnsupportedOperationException("IDX data set is read only!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("IDX data set is read only!");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("IDX data set is read only!");
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        setFilePath(imageFilePath);
+        open(IdxFile.open(imageFilePath), labelFilePath != null ? IdxFile.open(labelFilePath) : null);
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Memory mapped reader for files in IDX format (used by MNIST and similar data
+ * sets). IDX file contains a multidimensional array of numbers; first dimension
+ * is the number of items (images, labels...), and remaining dimensions give
+ * the shape of each item. Values are decoded from mapped file on demand, so
+ * opening a file does not read or copy its data.
+ * <p/>
+ * Format: two zero bytes, data type code, number of dimensions, size of each
+ * dimension as big endian 32 bit integer, followed by values in big endian
+ * order. See http://yann.lecun.com/exdb/mnist/
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class IdxFile {
+
+    /**
+     * Types of values in IDX file
+     */
+    public static enum DataType {
+        UNSIGNED_BYTE(0x08, 1), BYTE(0x09, 1), SHORT(0x0B, 2), INT(0x0C, 4), FLOAT(0x0D, 4), DOUBLE(0x0E, 8);
+
+        private final int code;
+        private final int byteSize;
+
+        private DataType(int code, int byteSize) {
+            this.code = code;
+            this.byteSize = byteSize;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public int getByteSize() {
+            return byteSize;
+        }
+
+        public static DataType fromCode(int code) {
+            for (DataType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new NeurophException("Unknown IDX data type: 0x" + Integer.toHexString(code));
+        }
+    }
+
+    private final String filePath;
+
+    private final DataType dataType;
+
+    /**
+     * Size of each dimension, first dimension is number of items
+     */
+    private final int[] dimensions;
+
+    /**
+     * Number of values in single item
+     */
+    private final int itemSize;
+
+    private final int itemBytes;
+
+    private final int itemsPerSegment;
+
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens and maps IDX file at specified path
+     *
+     * @param filePath path to IDX file
+     */
+    public IdxFile(String filePath) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            throw new NeurophException("Cannot find file: " + file, new FileNotFoundException(filePath));
+        }
+        this.filePath = filePath;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            readFully(channel, magic, 0);
+            if (magic.get(0) != 0 || magic.get(1) != 0) {
+                throw new NeurophException("Not an IDX file: " + file);
+            }
+            dataType = DataType.fromCode(magic.get(2) & 0xff);
+            int dimensionCount = magic.get(3) & 0xff;
+            if (dimensionCount == 0) {
+                throw new NeurophException("IDX file has no dimensions: " + file);
+            }
+
+            ByteBuffer sizes = ByteBuffer.allocate(4 * dimensionCount).order(ByteOrder.BIG_ENDIAN);
+            readFully(channel, sizes, 4);
+            dimensions = new int[dimensionCount];
+            long size = 1;
+            for (int i = 0; i < dimensionCount; i++) {
+                dimensions[i] = sizes.getInt(4 * i);
+                if (i > 0) {
+                    size *= dimensions[i];
+                }
+            }
+
+            if (size * dataType.getByteSize() > Integer.MAX_VALUE) {
+                throw new NeurophException("IDX file items are too large: " + file);
+            }
+            itemSize = (int) size;
+            itemBytes = itemSize * dataType.getByteSize();
+
+            long dataOffset = 4 + 4L * dimensionCount;
+            long itemCount = dimensions[0];
+            if (channel.size() < dataOffset + itemCount * itemBytes) {
+                throw new NeurophException("IDX file is truncated: " + file);
+            }
+
+            // map in segments of whole items, since single buffer is limited to 2GB
+            itemsPerSegment = itemBytes == 0 ? Integer.MAX_VALUE : Integer.MAX_VALUE / itemBytes;
+            int segmentCount = itemCount == 0 ? 0 : (int) ((itemCount - 1) / itemsPerSegment + 1);
+            segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long firstItem = (long) s * itemsPerSegment;
+                long items = Math.min(itemsPerSegment, itemCount - firstItem);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + firstItem * itemBytes, items * itemBytes);
+                segments[s].order(ByteOrder.BIG_ENDIAN);
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading IDX file: " + file, ex);
+        }
+    }
+
+    /**
+     * Opens and maps IDX file at specified path
+     *
+     * @param filePath path to IDX file
+     * @return mapped IDX file
+     */
+    public static IdxFile open(String filePath) {
+        return new IdxFile(filePath);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of IDX file!");
+            }
+        }
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public DataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Returns size of each dimension, first dimension is number of items
+     *
+     * @return dimension sizes
+     */
+    public int[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    /**
+     * Returns number of items (first dimension)
+     *
+     * @return number of items
+     */
+    public int getItemCount() {
+        return dimensions[0];
+    }
+
+    /**
+     * Returns number of values in single item (product of all dimensions except first)
+     *
+     * @return number of values in item
+     */
+    public int getItemSize() {
+        return itemSize;
+    }
+
+    /**
+     * Returns value at specified position in item
+     *
+     * @param item  item index
+     * @param index value index within item
+     * @return decoded value
+     */
+    public double getValue(int item, int index) {
+        if (item < 0 || item >= dimensions[0]) {
+            throw new IndexOutOfBoundsException("Item index " + item + " out of bounds: " + dimensions[0]);
+        }
+        if (index < 0 || index >= itemSize) {
+            throw new IndexOutOfBoundsException("Value index " + index + " out of bounds: " + itemSize);
+        }
+        MappedByteBuffer segment = segments[item / itemsPerSegment];
+        int position = (item % itemsPerSegment) * itemBytes + index * dataType.getByteSize();
+        return decode(segment, position);
+    }
+
+    /**
+     * Reads values of specified item, transformed as value * scale + offset
+     *
+     * @param item   item index
+     * @param scale  value scale
+     * @param offset value offset
+     * @param dest   array to fill
+     * @param destOffset position of the first value in array
+     */
+    public void readItem(int item, double scale, double offset, double[] dest, int destOffset) {
+        readItem(item, scale, offset, dest, destOffset, Math.max(1, itemSize), Math.max(1, itemSize));
+    }
+
+    /**
+     * Reads values of specified item as rows of rowLength values, transformed
+     * as value * scale + offset. Each row is written rowStride positions after
+     * the previous one, so images can be padded on the fly (positions between
+     * rows are not changed).
+     *
+     * @param item       item index
+     * @param scale      value scale
+     * @param offset     value offset
+     * @param dest       array to fill
+     * @param destOffset position of the first value in array
+     * @param rowLength  number of values in a row
+     * @param rowStride  distance between starts of consecutive rows in array
+     * @throws IllegalArgumentException if rowLength is not positive, rowStride
+     * is smaller than rowLength, or rows don't fit in the array
+     */
+    public void readItem(int item, double scale, double offset, double[] dest, int destOffset, int rowLength, int rowStride) {
+        if (item < 0 || item >= dimensions[0]) {
+            throw new IndexOutOfBoundsException("Item index " + item + " out of bounds: " + dimensions[0]);
+        }
+        if (rowLength < 1) {
+            throw new IllegalArgumentException("Row length must be positive: " + rowLength);
+        }
+        if (rowStride < rowLength) {
+            throw new IllegalArgumentException("Row stride " + rowStride + " is smaller than row length " + rowLength);
+        }
+        int rows = (itemSize + rowLength - 1) / rowLength;
+        long end = rows == 0 ? destOffset : destOffset + (long) (rows - 1) * rowStride + (itemSize - (long) (rows - 1) * rowLength);
+        if (destOffset < 0 || end > dest.length) {
+            throw new IllegalArgumentException("Array of length " + dest.length + " is too short for item rows from position " + destOffset + " to " + end);
+        }
+        MappedByteBuffer segment = segments[item / itemsPerSegment];
+        int position = (item % itemsPerSegment) * itemBytes;
+        int byteSize = dataType.getByteSize();
+
+        int rowStart = destOffset;
+        for (int i = 0; i < itemSize; i += rowLength) {
+            int rowEnd = rowStart + Math.min(rowLength, itemSize - i);
+            for (int d = rowStart; d < rowEnd; d++) {
+                dest[d] = decode(segment, position) * scale + offset;
+                position += byteSize;
+            }
+            rowStart += rowStride;
+        }
+    }
+
+    /**
+     * Reads values of specified item into float array, transformed as value * scale + offset
+     *
+     * @param item       item index
+     * @param scale      value scale
+     * @param offset     value offset
+     * @param dest       array to fill
+     * @param destOffset position of the first value in array
+     */
+    public void readItem(int item, float scale, float offset, float[] dest, int destOffset) {
+        if (item < 0 || item >= dimensions[0]) {
+            throw new IndexOutOfBoundsException("Item index " + item + " out of bounds: " + dimensions[0]);
+        }
+        MappedByteBuffer segment = segments[item / itemsPerSegment];
+        int position = (item % itemsPerSegment) * itemBytes;
+        int byteSize = dataType.getByteSize();
+
+        for (int i = 0; i < itemSize; i++) {
+            dest[destOffset + i] = (float) decode(segment, position) * scale + offset;
+            position += byteSize;
+        }
+    }
+
+    private double decode(ByteBuffer buffer, int position) {
+        switch (dataType) {
+            case UNSIGNED_BYTE:
+                return buffer.get(position) & 0xff;
+            case BYTE:
+                return buffer.get(position);
+            case SHORT:
+                return buffer.getShort(position);
+            case INT:
+                return buffer.getInt(position);
+            case FLOAT:
+                return buffer.getFloat(position);
+            default:
+                return buffer.getDouble(position);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * Base class for read only data sets which do not keep row objects, but
+ * create rows on access from their index (rows decoded from mapped files, or
+ * views of rows of another data set). Rows are listed and iterated through
+ * {@link #getRowAt(int)} and {@link #size()}, and shuffling permutes only an
+ * index of row positions.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+abstract class IndexedDataSet extends DataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Row order set by shuffle, null means natural order
+     */
+    private transient int[] order;
+
+    IndexedDataSet(int inputSize, int outputSize) {
+        super(inputSize, outputSize);
+    }
+
+    @Override
+    public abstract DataSetRow getRowAt(int idx);
+
+    @Override
+    public abstract int size();
+
+    /**
+     * Returns position of the row at specified index in shuffled order
+     *
+     * @param idx index of the row in shuffled order
+     * @return position of the row in natural order
+     */
+    int rowIndex(int idx) {
+        return order != null ? order[idx] : idx;
+    }
+
+    /**
+     * Returns read only list view of the rows in this data set. Rows are
+     * created when they are accessed.
+     *
+     * @return list view of data set rows
+     */
+    @Override
+    public List<DataSetRow> getRows() {
+        return new RowListView();
+    }
+
+    @Override
+    public Iterator<DataSetRow> iterator() {
+        return new Iterator<DataSetRow>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public DataSetRow next() {
+                if (next >= size()) {
+                    throw new NoSuchElementException();
+                }
+                return getRowAt(next++);
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Shuffles the order in which rows are returned. Only the index of row
+     * positions is permuted, rows themselves are not changed.
+     */
+    @Override
+    public void shuffle() {
+        shuffle(new Random());
+    }
+
+    /**
+     * Shuffles the order in which rows are returned using specified random generator
+     *
+     * @param random random generator used for shuffling
+     */
+    public void shuffle(Random random) {
+        if (order == null) {
+            order = new int[size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+        }
+        permute(order, random);
+    }
+
+    /**
+     * Randomly permutes specified array of row indices (Fisher-Yates shuffle)
+     *
+     * @param indices row indices to permute
+     * @param random  random generator
+     */
+    static void permute(int[] indices, Random random) {
+        for (int i = indices.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = tmp;
+        }
+    }
+
+    /**
+     * Read only list view which creates rows on access
+     */
+    private class RowListView extends AbstractList<DataSetRow> implements RandomAccess {
+
+        @Override
+        public DataSetRow get(int index) {
+            return getRowAt(index);
+        }
+
+        @Override
+        public int size() {
+            return IndexedDataSet.this.size();
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Read only data set backed by a memory mapped file in Neuroph binary data set
+ * format. Rows are decoded on demand straight from the mapped file, so there is
+ * no parsing when data set is opened, rows can be accessed randomly (which
+ * makes shuffling cheap) and data set can be larger than available heap.
+ * <p/>
+ * File format (all values are little endian):
+ * <pre>
+ * int    magic number (NDS1)
+ * short  format version
+ * byte   value type code (see DataType)
+ * byte   flags (bit 0 set if data set is supervised)
+ * int    input size
+ * int    output size
+ * long   number of rows
+ * long   offset of the first row, aligned to 8 bytes
+ * string data set label
+ * int    number of column names, followed by column names as strings
+ * ...    rows, each row is (input size + output size) values of value type
+ * </pre>
+ * Strings are stored as int length followed by UTF-8 bytes, length -1 is null.
+ * Files in this format are created with BinaryDataSetWriter.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ * @see BinaryDataSetWriter
+ */
+public class MappedDataSet extends IndexedDataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Magic number which identifies binary data set files ("NDS1")
+     */
+    static final int MAGIC = 0x4E445331;
+
+    /**
+     * Current version of the binary data set format
+     */
+    static final short VERSION = 1;
+
+    /**
+     * Position of the row count in header, used by writer to update it when closed
+     */
+    static final long ROW_COUNT_OFFSET = 16;
+
+    /**
+     * Flag which marks supervised data sets
+     */
+    static final byte FLAG_SUPERVISED = 1;
+
+    /**
+     * Type of the values stored in binary data set file
+     */
+    public static enum DataType {
+        FLOAT32(1, 4),
+        FLOAT64(2, 8);
+
+        private final byte code;
+        private final int byteSize;
+
+        private DataType(int code, int byteSize) {
+            this.code = (byte) code;
+            this.byteSize = byteSize;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        /**
+         * Returns number of bytes used to store single value of this type
+         *
+         * @return number of bytes for single value
+         */
+        public int getByteSize() {
+            return byteSize;
+        }
+
+        static DataType fromCode(byte code) {
+            for (DataType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new NeurophException("Unknown value type in binary data set file: " + code);
+        }
+    }
+
+    /**
+     * Path of the mapped file. It is the only state which gets serialized,
+     * the file is mapped again when data set is deserialized.
+     */
+    private final String mappedFilePath;
+
+    private transient DataType dataType;
+
+    /**
+     * Supervised flag from file header
+     */
+    private transient boolean supervised;
+
+    private transient int rowCount;
+
+    /**
+     * Size of single row in bytes
+     */
+    private transient int rowBytes;
+
+    /**
+     * Number of rows in each mapped segment (files larger than 2GB are mapped in several segments)
+     */
+    private transient int rowsPerSegment;
+
+    private transient MappedByteBuffer[] segments;
+
+    /**
+     * Opens and maps binary data set file at specified path
+     *
+     * @param filePath path to binary data set file
+     */
+    public MappedDataSet(String filePath) {
+        this(new File(filePath));
+    }
+
+    /**
+     * Opens and maps specified binary data set file
+     *
+     * @param file binary data set file
+     */
+    public MappedDataSet(File file) {
+        this(file, readHeader(file));
+    }
+
+    private MappedDataSet(File file, Header header) {
+        super(header.inputSize, header.outputSize);
+        this.mappedFilePath = file.getPath();
+        setFilePath(mappedFilePath);
+        setLabel(header.label);
+        if (header.columnNames != null) {
+            setColumnNames(header.columnNames);
+        }
+        map(file, header);
+    }
+
+    /**
+     * Opens and maps binary data set file at specified path
+     *
+     * @param filePath path to binary data set file
+     * @return memory mapped data set
+     */
+    public static MappedDataSet open(String filePath) {
+        return new MappedDataSet(filePath);
+    }
+
+    private void map(File file, Header header) {
+        this.dataType = header.dataType;
+        this.supervised = header.supervised;
+        this.rowBytes = (header.inputSize + header.outputSize) * dataType.getByteSize();
+
+        if (header.rowCount > Integer.MAX_VALUE) {
+            throw new NeurophException("Binary data set has too many rows: " + header.rowCount);
+        }
+        this.rowCount = (int) header.rowCount;
+        this.rowsPerSegment = rowBytes == 0 ? Integer.MAX_VALUE : Integer.MAX_VALUE / rowBytes;
+
+        int segmentCount = rowCount == 0 ? 0 : (rowCount - 1) / rowsPerSegment + 1;
+        segments = new MappedByteBuffer[segmentCount];
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            long expectedSize = header.dataOffset + (long) rowCount * rowBytes;
+            if (channel.size() < expectedSize) {
+                throw new NeurophException("Binary data set file is truncated: " + file);
+            }
+
+            for (int s = 0; s < segmentCount; s++) {
+                long firstRow = (long) s * rowsPerSegment;
+                long rows = Math.min(rowsPerSegment, rowCount - firstRow);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+                        header.dataOffset + firstRow * rowBytes, rows * rowBytes);
+                segment.order(ByteOrder.LITTLE_ENDIAN);
+                segments[s] = segment;
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error mapping binary data set file!", ex);
+        }
+    }
+
+    /**
+     * Reads header of the binary data set file
+     */
+    private static Header readHeader(File file) {
+        if (!file.exists()) {
+            throw new NeurophException("Cannot find file: " + file, new FileNotFoundException(file.getPath()));
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            ByteBuffer fixed = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, fixed, 0);
+            fixed.flip();
+
+            if (fixed.getInt() != MAGIC) {
+                throw new NeurophException("Not a binary data set file: " + file);
+            }
+            short version = fixed.getShort();
+            if (version > VERSION) {
+                throw new NeurophException("Unsupported binary data set format version: " + version);
+            }
+
+            Header header = new Header();
+            header.dataType = DataType.fromCode(fixed.get());
+            header.supervised = (fixed.get() & FLAG_SUPERVISED) != 0;
+            header.inputSize = fixed.getInt();
+            header.outputSize = fixed.getInt();
+            header.rowCount = fixed.getLong();
+            header.dataOffset = fixed.getLong();
+
+            // label and column names are between fixed header part and data
+            ByteBuffer names = ByteBuffer.allocate((int) (header.dataOffset - 32)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, names, 32);
+            names.flip();
+
+            header.label = readString(names);
+            int columnCount = names.getInt();
+            if (columnCount > 0) {
+                header.columnNames = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    header.columnNames[i] = readString(names);
+                }
+            }
+
+            return header;
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading binary data set file!", ex);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of binary data set file!");
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Header values of binary data set file
+     */
+    private static class Header {
+        DataType dataType;
+        boolean supervised;
+        int inputSize;
+        int outputSize;
+        long rowCount;
+        long dataOffset;
+        String label;
+        String[] columnNames;
+    }
+
+    /**
+     * Returns type of values stored in mapped file
+     *
+     * @return type of values stored in mapped file
+     */
+    public DataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Returns true if file header marks data set as supervised
+     *
+     * @return true if data set is supervised
+     */
+    @Override
+    public boolean isSupervised() {
+        return supervised;
+    }
+
+    /**
+     * Reads row at specified position in file into given arrays.
+     * This allows iterating data set without any allocation.
+     *
+     * @param idx    row position in file
+     * @param input  array to fill with input vector
+     * @param output array to fill with output vector, can be null for unsupervised data sets
+     */
+    public void readRow(int idx, double[] input, double[] output) {
+        if (idx < 0 || idx >= rowCount) {
+            throw new IndexOutOfBoundsException("Row index: " + idx + ", size: " + rowCount);
+        }
+
+        ByteBuffer segment = segments[idx / rowsPerSegment];
+        int pos = (idx % rowsPerSegment) * rowBytes;
+        int inputSize = getInputSize();
+        int outputSize = getOutputSize();
+
+        if (dataType == DataType.FLOAT32) {
+            for (int i = 0; i < inputSize; i++, pos += 4) {
+                input[i] = segment.getFloat(pos);
+            }
+            if (output != null) {
+                for (int i = 0; i < outputSize; i++, pos += 4) {
+                    output[i] = segment.getFloat(pos);
+                }
+            }
+        } else {
+            for (int i = 0; i < inputSize; i++, pos += 8) {
+                input[i] = segment.getDouble(pos);
+            }
+            if (output != null) {
+                for (int i = 0; i < outputSize; i++, pos += 8) {
+                    output[i] = segment.getDouble(pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes and returns row at specified position in file
+     */
+    private DataSetRow decodeRow(int idx) {
+        double[] input = new double[getInputSize()];
+        if (supervised) {
+            double[] output = new double[getOutputSize()];
+            readRow(idx, input, output);
+            return new DataSetRow(input, output);
+        }
+
+        readRow(idx, input, null);
+        return new DataSetRow(input);
+    }
+
+    /**
+     * Returns training row at specified index position. If data set is shuffled
+     * index refers to position in shuffled order.
+     *
+     * @param idx index position of training row to return
+     * @return training row at specified index position
+     */
+    @Override
+    public DataSetRow getRowAt(int idx) {
+        return decodeRow(rowIndex(idx));
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    @Override
+    public void addRow(DataSetRow row) {
+        throw new UnsupportedOperationException("Memory mapped data set is read only!");
+    }
+
+    @Override
+    public void addRow(double[] input) {
+        throw new UnsupportedOperationException("Memory mapped data set is read only!");
+    }
+
+    @Override
+    public void addRow(double[] input, double[] output) {
+        throw new UnsupportedOperationException("Memory mapped data set is read only!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("Memory mapped data set is read only!");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Memory mapped data set is read only!");
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        File file = new File(mappedFilePath);
+        setFilePath(mappedFilePath);
+        map(file, readHeader(file));
+    }
+}
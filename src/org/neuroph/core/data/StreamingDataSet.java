@@ -0,0 +1,374 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.neuroph.core.data.MappedDataSet.DataType;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Base class for data sets which read rows from external source during the
+ * iteration, instead of keeping them in memory. Each call to iterator() opens
+ * the source again, so learning rules can use it epoch by epoch like any other
+ * data set.
+ * <p/>
+ * Optionally, rows from the first complete pass can be spooled to a binary
+ * cache file, and all later passes are read from memory mapped cache instead
+ * of the source. Rows are spooled to a temporary file next to the cache file,
+ * which replaces the cache file only when the pass completes, so the file is
+ * never truncated while an earlier cache is still mapped.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public abstract class StreamingDataSet extends DataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Source of data set rows for a single pass
+     */
+    public static interface RowSource extends AutoCloseable {
+
+        /**
+         * Reads next row from source
+         *
+         * @return next row, or null if there are no more rows
+         */
+        DataSetRow nextRow();
+
+        /**
+         * Closes source and frees resources
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Number of rows read in the last complete pass
+     */
+    private volatile int rowCount;
+
+    /**
+     * Path of the cache file, null if caching is disabled
+     */
+    private String cacheFilePath;
+
+    private DataType cacheDataType = DataType.FLOAT64;
+
+    /**
+     * Cache created after first complete pass
+     */
+    private transient MappedDataSet cache;
+
+    /**
+     * Pass returned by the last call to iterator()
+     */
+    private transient SourceIterator activeIterator;
+
+    /**
+     * Creates new unsupervised streaming data set
+     *
+     * @param inputSize size of input vector
+     */
+    public StreamingDataSet(int inputSize) {
+        super(inputSize);
+    }
+
+    /**
+     * Creates new supervised streaming data set
+     *
+     * @param inputSize  size of input vector
+     * @param outputSize size of output vector
+     */
+    public StreamingDataSet(int inputSize, int outputSize) {
+        super(inputSize, outputSize);
+    }
+
+    /**
+     * Opens source for a new pass through the data
+     *
+     * @return source of rows
+     */
+    protected abstract RowSource openSource();
+
+    /**
+     * Enables spooling of rows to specified binary file during the first
+     * complete pass. Later passes are read from the file using MappedDataSet.
+     *
+     * @param cacheFilePath path of the cache file
+     * @param dataType      type used to store values in cache file
+     */
+    public synchronized void setCacheFile(String cacheFilePath, DataType dataType) {
+        this.cacheFilePath = cacheFilePath;
+        this.cacheDataType = dataType;
+        this.cache = null;
+    }
+
+    public String getCacheFile() {
+        return cacheFilePath;
+    }
+
+    /**
+     * Returns cached rows, or null if rows are not cached (yet)
+     *
+     * @return mapped data set with cached rows
+     */
+    public MappedDataSet getCache() {
+        return cache;
+    }
+
+    /**
+     * Drops cached rows, so next pass reads source again (and refreshes the
+     * cache if caching is enabled).
+     */
+    public synchronized void invalidateCache() {
+        cache = null;
+    }
+
+    /**
+     * Returns iterator which makes a new pass through the data. Only one pass
+     * can be active at a time, so any previously returned iterator is closed.
+     *
+     * @return iterator over data set rows
+     */
+    @Override
+    public synchronized Iterator<DataSetRow> iterator() {
+        if (activeIterator != null) {
+            activeIterator.close();
+            activeIterator = null;
+        }
+
+        if (cache != null) {
+            return cache.iterator();
+        }
+
+        activeIterator = new SourceIterator(openSource());
+        return activeIterator;
+    }
+
+    /**
+     * Closes source of the active pass, if any.
+     */
+    public synchronized void close() {
+        if (activeIterator != null) {
+            activeIterator.close();
+            activeIterator = null;
+        }
+    }
+
+    /**
+     * Returns number of rows read in the last complete pass, or 0 if no pass
+     * has been completed yet.
+     *
+     * @return number of rows
+     */
+    @Override
+    public int size() {
+        return cache != null ? cache.size() : rowCount;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Iterator<DataSetRow> iterator = cache != null ? cache.iterator() : null;
+        if (iterator != null) {
+            return !iterator.hasNext();
+        }
+        if (rowCount > 0) {
+            return false;
+        }
+        try (RowSource source = openSource()) {
+            return source.nextRow() == null;
+        }
+    }
+
+    @Override
+    public DataSetRow getRowAt(int idx) {
+        if (cache != null) {
+            return cache.getRowAt(idx);
+        }
+        throw new UnsupportedOperationException("Streaming data set does not support random access!");
+    }
+
+    @Override
+    public void shuffle() {
+        if (cache != null) {
+            cache.shuffle();
+        }
+    }
+
+    @Override
+    public void addRow(DataSetRow row) {
+        throw new UnsupportedOperationException("Rows cannot be added to streaming data set!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("Rows cannot be removed from streaming data set!");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Rows cannot be removed from streaming data set!");
+    }
+
+    /**
+     * Creates empty temporary file in the directory of the cache file
+     */
+    private static String createSpoolFile(String cacheFilePath) {
+        File cacheFile = new File(cacheFilePath).getAbsoluteFile();
+        try {
+            return File.createTempFile(cacheFile.getName() + ".", ".spool", cacheFile.getParentFile()).getPath();
+        } catch (IOException ex) {
+            throw new NeurophException("Error creating spool file for cache " + cacheFilePath, ex);
+        }
+    }
+
+    /**
+     * Moves completely written spool file over the cache file, atomically if
+     * file system supports it. Processes which still map the old cache keep
+     * reading old rows. If cache file can't be replaced (some systems don't
+     * allow replacing mapped files), rows are read from the spool file.
+     *
+     * @return path of the file holding the new cache
+     */
+    private static String replaceCacheFile(String spoolFilePath, String cacheFilePath) {
+        File spoolFile = new File(spoolFilePath);
+        File cacheFile = new File(cacheFilePath);
+        try {
+            try {
+                Files.move(spoolFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(spoolFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return cacheFilePath;
+        } catch (IOException ex) {
+            spoolFile.deleteOnExit();
+            return spoolFilePath;
+        }
+    }
+
+    private synchronized void passCompleted(SourceIterator iterator, int rows, MappedDataSet cachedRows) {
+        rowCount = rows;
+        if (cachedRows != null && cacheFilePath != null) {
+            cache = cachedRows;
+        }
+        if (activeIterator == iterator) {
+            activeIterator = null;
+        }
+    }
+
+    /**
+     * Iterator over rows from single source, spools rows to cache file if
+     * caching is enabled.
+     */
+    private final class SourceIterator implements Iterator<DataSetRow> {
+
+        private final RowSource source;
+
+        private final String cacheFilePath;
+
+        /**
+         * Temporary file rows are written to during the pass
+         */
+        private final String spoolFilePath;
+
+        private BinaryDataSetWriter spool;
+
+        private DataSetRow nextRow;
+
+        private int rows;
+
+        private boolean finished;
+
+        SourceIterator(RowSource source) {
+            this.source = source;
+            this.cacheFilePath = StreamingDataSet.this.cacheFilePath;
+            this.spoolFilePath = cacheFilePath != null ? createSpoolFile(cacheFilePath) : null;
+            if (spoolFilePath != null) {
+                spool = new BinaryDataSetWriter(spoolFilePath, getInputSize(), getOutputSize(), cacheDataType, getLabel(), null);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextRow != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+
+            nextRow = source.nextRow();
+            if (nextRow == null) {
+                finish();
+                return false;
+            }
+
+            rows++;
+            if (spool != null) {
+                spool.writeRow(nextRow);
+            }
+            return true;
+        }
+
+        @Override
+        public DataSetRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DataSetRow row = nextRow;
+            nextRow = null;
+            return row;
+        }
+
+        private void finish() {
+            finished = true;
+            source.close();
+
+            MappedDataSet cachedRows = null;
+            if (spool != null) {
+                spool.close();
+                spool = null;
+                cachedRows = new MappedDataSet(replaceCacheFile(spoolFilePath, cacheFilePath));
+            }
+            passCompleted(this, rows, cachedRows);
+        }
+
+        /**
+         * Closes incomplete pass, partially written cache file is deleted
+         */
+        void close() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            nextRow = null;
+            source.close();
+
+            if (spool != null) {
+                spool.close();
+                spool = null;
+                new File(spoolFilePath).delete();
+            }
+        }
+    }
+}
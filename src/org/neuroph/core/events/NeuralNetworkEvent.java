@@ -57,7 +57,8 @@ public class NeuralNetworkEvent extends java.util.EventObject {
         NEURON_ADDED,
         NEURON_REMOVED,
         CONNECTION_ADDED,
-        CONNECTION_REMOVED;
+        CONNECTION_REMOVED,
+        WEIGHTS_CHANGED;
     }    
 
         
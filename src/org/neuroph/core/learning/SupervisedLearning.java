@@ -208,10 +208,14 @@ abstract public class SupervisedLearning extends IterativeLearning implements
                 for (Connection connection : neuron.getInputConnections()) {
                     // for each connection weight apply accumulated weight change
                     Weight weight = connection.getWeight();
-                    weight.value += weight.weightChange; // apply delta weight which is the sum of delta weights in batch mode
+                    weight.inc(weight.weightChange); // apply delta weight which is the sum of delta weights in batch mode
                     weight.weightChange = 0; // reset deltaWeight
                 }
             }
+            for (Weight weight : layers.get(i).getLayerWeights()) {
+                weight.inc(weight.weightChange);
+                weight.weightChange = 0;
+            }
         }
     }
 
@@ -27,7 +27,7 @@ import java.io.Serializable;
  * @author Zoran Sevarac <sevarac@gmail.com>
  * @see org.neuroph.core.Neuron
  */
-abstract public class TransferFunction implements Serializable {
+abstract public class TransferFunction implements Serializable, Cloneable {
 	
 	/**
 	 * The class fingerprint that is set to indicate serialization
@@ -61,4 +61,15 @@ abstract public class TransferFunction implements Serializable {
 		return 1d;
 	}
 
+	/**
+	 * Returns copy of this transfer function
+	 *
+	 * @return copy of this transfer function
+	 * @throws CloneNotSupportedException
+	 */
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		return super.clone();
+	}
+
 }
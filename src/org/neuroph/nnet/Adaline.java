@@ -42,6 +42,12 @@ public class Adaline extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected Adaline() {
+	}
+
 	/**
 	 * Creates new Adaline network with specified number of neurons in input
 	 * layer
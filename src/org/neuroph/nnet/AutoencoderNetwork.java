@@ -5,6 +5,12 @@ package org.neuroph.nnet;
  */
 public class AutoencoderNetwork extends MultiLayerPerceptron {
 
+    /**
+     * Creates empty network, used when network is loaded from binary model file
+     */
+    protected AutoencoderNetwork() {
+    }
+
     public AutoencoderNetwork(int inputsCount, int hiddenCount) {      
         super(inputsCount, hiddenCount, inputsCount);
     }
@@ -34,6 +34,12 @@ import org.neuroph.util.TransferFunctionType;
 public class BAM extends NeuralNetwork {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected BAM() {
+	}
+
 	/**
 	 * Creates an instance of BAM network with specified number of neurons
          * in input and output layers.
@@ -115,6 +115,49 @@ public class ConvolutionalNetwork extends NeuralNetwork<ConvolutionalBackpropaga
             return this;
         }        
 
+        /**
+         * Adds convolutional layer with square kernel step and zero padding,
+         * and default neuron settings for convolutional layer. For example
+         * padding of 2 with 5x5 kernel keeps map size, and stride of 2 halves
+         * it.
+         *
+         * @param kernelWidth  kernel width
+         * @param kernelHeight kernel height
+         * @param numberOfMaps number of feature maps
+         * @param stride       horizontal and vertical step of kernel
+         * @param padding      number of zeros added on each side of input maps
+         * @return this builder
+         */
+        public Builder withConvolutionLayer(int kernelWidth, int kernelHeight, int numberOfMaps, int stride, int padding) {
+            return withConvolutionLayer(new Dimension2D(kernelWidth, kernelHeight), numberOfMaps,
+                    new Dimension2D(stride, stride), new Dimension2D(padding, padding), ConvolutionalLayer.DEFAULT_NEURON_PROP);
+        }
+
+        /**
+         * Adds convolutional layer with specified kernel step and zero padding
+         *
+         * @param kernelDimension  kernel dimensions
+         * @param numberOfMaps     number of feature maps
+         * @param stride           horizontal and vertical step of kernel
+         * @param padding          number of zero columns (width) and rows
+         *                         (height) added on each side of input maps
+         * @param transferFunction neuron's transfer function to use
+         * @return this builder
+         */
+        public Builder withConvolutionLayer(Dimension2D kernelDimension, int numberOfMaps, Dimension2D stride, Dimension2D padding, Class<? extends TransferFunction> transferFunction) {
+            return withConvolutionLayer(kernelDimension, numberOfMaps, stride, padding, new NeuronProperties(Neuron.class, transferFunction));
+        }
+
+        private Builder withConvolutionLayer(Dimension2D kernelDimension, int numberOfMaps, Dimension2D stride, Dimension2D padding, NeuronProperties neuronProp) {
+            FeatureMapsLayer prevLayer = getLastFeatureMapLayer();
+            ConvolutionalLayer convolutionLayer = new ConvolutionalLayer(prevLayer, kernelDimension, stride, padding, numberOfMaps, neuronProp);
+
+            network.addLayer(convolutionLayer);
+            ConvolutionalUtils.fullConnectMapLayers(prevLayer, convolutionLayer);
+
+            return this;
+        }
+
         public Builder withPoolingLayer(int width, int height) {
             FeatureMapsLayer lastLayer = getLastFeatureMapLayer();
             PoolingLayer poolingLayer = new PoolingLayer(lastLayer, new Dimension2D(width, height));
@@ -125,6 +168,24 @@ public class ConvolutionalNetwork extends NeuralNetwork<ConvolutionalBackpropaga
             return this;
         }
 
+        /**
+         * Adds pooling layer with specified window, stride and pooling type
+         *
+         * @param window pooling window dimensions, which can be non square
+         * @param stride horizontal and vertical step of pooling window
+         * @param type   max or average pooling
+         * @return this builder
+         */
+        public Builder withPoolingLayer(Dimension2D window, Dimension2D stride, PoolingLayer.Type type) {
+            FeatureMapsLayer lastLayer = getLastFeatureMapLayer();
+            PoolingLayer poolingLayer = new PoolingLayer(lastLayer, window, stride, type);
+
+            network.addLayer(poolingLayer);
+            ConvolutionalUtils.fullConnectMapLayers(lastLayer, poolingLayer);
+
+            return this;
+        }
+
         public Builder withFullConnectedLayer(int numberOfNeurons) {
             Layer lastLayer = getLastLayer();
 
@@ -16,6 +16,12 @@ import org.neuroph.util.TransferFunctionType;
  */
 public class ElmanNetwork extends NeuralNetwork {
 
+    /**
+     * Creates empty network, used when network is loaded from binary model file
+     */
+    protected ElmanNetwork() {
+    }
+
     public ElmanNetwork(int inputNeuronsCount, int hiddenNeuronsCount, int contextNeuronsCount, int outputNeuronsCount) {
         createNetwork(inputNeuronsCount, hiddenNeuronsCount, contextNeuronsCount, outputNeuronsCount);
     }
@@ -41,6 +41,12 @@ public class Hopfield extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 2L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected Hopfield() {
+	}
+
 	/**
 	 * Creates new Hopfield network with specified neuron number
 	 * 
@@ -38,6 +38,12 @@ public class Instar extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected Instar() {
+	}
+
 	/**
 	 * Creates new Instar with specified number of input neurons.
 	 * 
@@ -16,6 +16,12 @@ import org.neuroph.util.TransferFunctionType;
  */
 public class JordanNetwork extends NeuralNetwork {
 
+    /**
+     * Creates empty network, used when network is loaded from binary model file
+     */
+    protected JordanNetwork() {
+    }
+
     public JordanNetwork(int inputNeuronsCount, int hiddenNeuronsCount, int contextNeuronsCount, int outputNeuronsCount) {
         createNetwork(inputNeuronsCount, hiddenNeuronsCount, contextNeuronsCount, outputNeuronsCount);
         
@@ -37,6 +37,12 @@ public class Kohonen extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected Kohonen() {
+	}
+
 	/**
 	 * Creates new Kohonen network with specified number of neurons in input and
 	 * map layer
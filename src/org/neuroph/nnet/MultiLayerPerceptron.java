@@ -51,6 +51,12 @@ public class MultiLayerPerceptron extends NeuralNetwork<BackPropagation> {
      */
     private static final long serialVersionUID = 2L;
 
+    /**
+     * Creates empty network, used when network is loaded from binary model file
+     */
+    protected MultiLayerPerceptron() {
+    }
+
     /**
      * Creates new MultiLayerPerceptron with specified number of neurons in layers
      *
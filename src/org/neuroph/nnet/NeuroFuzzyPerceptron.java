@@ -49,6 +49,12 @@ public class NeuroFuzzyPerceptron extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected NeuroFuzzyPerceptron() {
+	}
+
 	public NeuroFuzzyPerceptron(double[][] pointsSets, double[][] timeSets) {
 		List<Integer> inputSets = new ArrayList<>();
 		inputSets.add(Integer.valueOf(4));
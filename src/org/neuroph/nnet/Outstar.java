@@ -38,6 +38,12 @@ public class Outstar extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected Outstar() {
+	}
+
 	/**
 	 * Creates an instance of Outstar network with specified number of neurons
      * in output layer.
@@ -43,6 +43,12 @@ public class Perceptron extends NeuralNetwork {
 	 */	
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected Perceptron() {
+	}
+
 	/**
 	 * Creates new Perceptron with specified number of neurons in input and
 	 * output layer, with Step trqansfer function
@@ -46,6 +46,12 @@ public class RBFNetwork extends NeuralNetwork {
 	 */		
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected RBFNetwork() {
+	}
+
 	/**
 	 * 构造函数 
 	 * Creates new RBFNetwork with specified number of neurons in input, rbf and output layer
@@ -40,6 +40,12 @@ public class SupervisedHebbianNetwork extends NeuralNetwork {
 	 */
 	private static final long serialVersionUID = 2L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected SupervisedHebbianNetwork() {
+	}
+
 	/**
 	 * Creates an instance of Supervised Hebbian Network net with specified 
 	 * number neurons in input and output layer
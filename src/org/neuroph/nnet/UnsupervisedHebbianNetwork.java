@@ -39,6 +39,12 @@ public class UnsupervisedHebbianNetwork extends NeuralNetwork {
 	 */
 	private static final long serialVersionUID = 2L;
 
+	/**
+	 * Creates empty network, used when network is loaded from binary model file
+	 */
+	protected UnsupervisedHebbianNetwork() {
+	}
+
 	/**
 	 * Creates an instance of Unsuervised Hebian net with specified number 
 	 * of neurons in input and output layer
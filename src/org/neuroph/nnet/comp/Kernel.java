@@ -16,6 +16,7 @@
 package org.neuroph.nnet.comp;
 
 import java.io.Serializable;
+import org.neuroph.core.CopyContext;
 import org.neuroph.core.Weight;
 
 /**
@@ -118,6 +119,31 @@ public class Kernel implements Serializable {
         this.weights = weights;
     }
     
+    /**
+     * Returns copy of this kernel for the network copy. Kernel weights are
+     * replaced with their copies, so they stay shared with connections.
+     *
+     * @param context network copy context
+     * @return copy of this kernel
+     */
+    public Kernel copy(CopyContext context) {
+        Kernel copy = context.get(this);
+        if (copy == null) {
+            copy = new Kernel(width, height);
+            if (weights != null) {
+                copy.weights = new Weight[weights.length][];
+                for (int i = 0; i < weights.length; i++) {
+                    copy.weights[i] = new Weight[weights[i].length];
+                    for (int j = 0; j < weights[i].length; j++) {
+                        copy.weights[i][j] = context.getWeight(weights[i][j]);
+                    }
+                }
+            }
+            context.put(this, copy);
+        }
+        return copy;
+    }
+
     public void initWeights(double min, double max) {
         weights = new Weight[height][width];
 
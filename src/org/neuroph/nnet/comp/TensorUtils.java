@@ -0,0 +1,304 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.nnet.comp;
+
+import java.util.Arrays;
+
+/**
+ * Tensor operations used by tensor based layers of convolutional networks.
+ * Tensors are plain double arrays in row major order: feature map tensor of
+ * (channels x height x width) keeps value (c, y, x) at index
+ * c * height * width + y * width + x, and matrix of (rows x columns) keeps
+ * value (r, c) at index r * columns + c.
+ * <p/>
+ * Convolution is calculated as one matrix multiplication: im2col copies every
+ * kernel window of the input into one column of a (channels * kernelHeight *
+ * kernelWidth) x (outputHeight * outputWidth) matrix, which is multiplied by
+ * (maps x channels * kernelHeight * kernelWidth) matrix of kernel weights.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public final class TensorUtils {
+
+    private TensorUtils() {
+    }
+
+    /**
+     * Returns output size of convolution along one dimension
+     *
+     * @param size    input size
+     * @param kernel  kernel size
+     * @param stride  kernel step
+     * @param padding number of zeros added on each side of input
+     * @return output size
+     */
+    public static int outputSize(int size, int kernel, int stride, int padding) {
+        return (size + 2 * padding - kernel) / stride + 1;
+    }
+
+    /**
+     * Copies kernel windows of input tensor into columns of matrix. Row (c *
+     * kernelHeight + ky) * kernelWidth + kx of the matrix holds input values
+     * under kernel position (kx, ky) of channel c, for all output positions.
+     * Positions which fall into padding get zeros.
+     *
+     * @param input    input tensor (channels x height x width)
+     * @param channels number of input channels (feature maps)
+     * @param height   input height
+     * @param width    input width
+     * @param kernel   kernel dimensions
+     * @param stride   horizontal and vertical step of kernel
+     * @param padding  number of zero columns (width) and rows (height) added
+     *                 on each side of input
+     * @param columns  matrix to fill, (channels * kernelHeight * kernelWidth)
+     *                 x (outputHeight * outputWidth)
+     */
+    public static void im2col(double[] input, int channels, int height, int width,
+            Dimension2D kernel, Dimension2D stride, Dimension2D padding, double[] columns) {
+        int outputHeight = outputSize(height, kernel.getHeight(), stride.getHeight(), padding.getHeight());
+        int outputWidth = outputSize(width, kernel.getWidth(), stride.getWidth(), padding.getWidth());
+        int strideX = stride.getWidth();
+        int strideY = stride.getHeight();
+        boolean copyRows = strideX == 1 && padding.getWidth() == 0;
+        int to = 0;
+        for (int c = 0; c < channels; c++) {
+            for (int ky = 0; ky < kernel.getHeight(); ky++) {
+                for (int kx = 0; kx < kernel.getWidth(); kx++) {
+                    for (int y = 0; y < outputHeight; y++, to += outputWidth) {
+                        int inputY = y * strideY - padding.getHeight() + ky;
+                        if (inputY < 0 || inputY >= height) {
+                            Arrays.fill(columns, to, to + outputWidth, 0);
+                            continue;
+                        }
+                        int inputRow = (c * height + inputY) * width;
+                        if (copyRows) {
+                            System.arraycopy(input, inputRow + kx, columns, to, outputWidth);
+                            continue;
+                        }
+                        for (int x = 0; x < outputWidth; x++) {
+                            int inputX = x * strideX - padding.getWidth() + kx;
+                            columns[to + x] = inputX >= 0 && inputX < width ? input[inputRow + inputX] : 0;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds columns of matrix back to positions of input tensor they were
+     * copied from by {@link #im2col}. Used to propagate errors from columns
+     * to input tensor, values of overlapping windows are summed and values
+     * which fall into padding are dropped.
+     *
+     * @param columns  matrix (channels * kernelHeight * kernelWidth) x
+     *                 (outputHeight * outputWidth)
+     * @param channels number of input channels (feature maps)
+     * @param height   input height
+     * @param width    input width
+     * @param kernel   kernel dimensions
+     * @param stride   horizontal and vertical step of kernel
+     * @param padding  number of zero columns (width) and rows (height) added
+     *                 on each side of input
+     * @param input    input tensor to add values to
+     */
+    public static void col2im(double[] columns, int channels, int height, int width,
+            Dimension2D kernel, Dimension2D stride, Dimension2D padding, double[] input) {
+        col2im(columns, height, width, kernel, stride, padding, input, 0, channels);
+    }
+
+    /**
+     * Adds columns of matrix back to channels fromChannel to toChannel
+     * (exclusive) of input tensor, see {@link #col2im(double[], int, int, int,
+     * Dimension2D, Dimension2D, Dimension2D, double[])}. Different channel
+     * ranges can be calculated in parallel.
+     *
+     * @param columns     matrix (channels * kernelHeight * kernelWidth) x
+     *                    (outputHeight * outputWidth)
+     * @param height      input height
+     * @param width       input width
+     * @param kernel      kernel dimensions
+     * @param stride      horizontal and vertical step of kernel
+     * @param padding     number of zero columns (width) and rows (height)
+     *                    added on each side of input
+     * @param input       input tensor to add values to
+     * @param fromChannel first channel to calculate
+     * @param toChannel   channel after the last channel to calculate
+     */
+    public static void col2im(double[] columns, int height, int width, Dimension2D kernel, Dimension2D stride,
+            Dimension2D padding, double[] input, int fromChannel, int toChannel) {
+        int outputHeight = outputSize(height, kernel.getHeight(), stride.getHeight(), padding.getHeight());
+        int outputWidth = outputSize(width, kernel.getWidth(), stride.getWidth(), padding.getWidth());
+        int strideX = stride.getWidth();
+        int strideY = stride.getHeight();
+        int from = fromChannel * kernel.getHeight() * kernel.getWidth() * outputHeight * outputWidth;
+        for (int c = fromChannel; c < toChannel; c++) {
+            for (int ky = 0; ky < kernel.getHeight(); ky++) {
+                for (int kx = 0; kx < kernel.getWidth(); kx++) {
+                    for (int y = 0; y < outputHeight; y++, from += outputWidth) {
+                        int inputY = y * strideY - padding.getHeight() + ky;
+                        if (inputY < 0 || inputY >= height) {
+                            continue;
+                        }
+                        int inputRow = (c * height + inputY) * width;
+                        for (int x = 0; x < outputWidth; x++) {
+                            int inputX = x * strideX - padding.getWidth() + kx;
+                            if (inputX >= 0 && inputX < width) {
+                                input[inputRow + inputX] += columns[from + x];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds product of matrices a (rows x inner) and b (inner x columns) to
+     * matrix c (rows x columns). Zero values of a are skipped, so sparse
+     * connections between feature maps cost nothing.
+     *
+     * @param a       left matrix
+     * @param b       right matrix
+     * @param c       result matrix to add product to
+     * @param rows    number of rows of a and c
+     * @param inner   number of columns of a and rows of b
+     * @param columns number of columns of b and c
+     */
+    public static void multiply(double[] a, double[] b, double[] c, int rows, int inner, int columns) {
+        multiply(a, b, c, inner, columns, 0, rows, 0, columns);
+    }
+
+    /**
+     * Adds product of matrices a and b to the block of matrix c between
+     * specified rows and columns, so that blocks of the product can be
+     * calculated on different threads.
+     *
+     * @param a          left matrix
+     * @param b          right matrix
+     * @param c          result matrix to add product to
+     * @param inner      number of columns of a and rows of b
+     * @param columns    number of columns of b and c
+     * @param fromRow    first row of the block
+     * @param toRow      row after the last row of the block
+     * @param fromColumn first column of the block
+     * @param toColumn   column after the last column of the block
+     */
+    public static void multiply(double[] a, double[] b, double[] c, int inner, int columns,
+            int fromRow, int toRow, int fromColumn, int toColumn) {
+        for (int i = fromRow; i < toRow; i++) {
+            int cRow = i * columns;
+            for (int k = 0; k < inner; k++) {
+                double aik = a[i * inner + k];
+                if (aik == 0) {
+                    continue;
+                }
+                int bRow = k * columns;
+                for (int j = fromColumn; j < toColumn; j++) {
+                    c[cRow + j] += aik * b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds product of matrix a (rows x inner) and transposed matrix b
+     * (columns x inner) to matrix c (rows x columns)
+     *
+     * @param a       left matrix
+     * @param b       right matrix, before transposition
+     * @param c       result matrix to add product to
+     * @param rows    number of rows of a and c
+     * @param inner   number of columns of a and b
+     * @param columns number of rows of b and columns of c
+     */
+    public static void multiplyTransposedB(double[] a, double[] b, double[] c, int rows, int inner, int columns) {
+        multiplyTransposedB(a, b, c, inner, columns, 0, rows);
+    }
+
+    /**
+     * Adds rows fromRow to toRow (exclusive) of product of matrix a and
+     * transposed matrix b to the same rows of matrix c. Different row ranges
+     * can be calculated in parallel.
+     *
+     * @param a       left matrix (rows x inner)
+     * @param b       right matrix (columns x inner), before transposition
+     * @param c       result matrix (rows x columns) to add product to
+     * @param inner   number of columns of a and b
+     * @param columns number of rows of b and columns of c
+     * @param fromRow first row to calculate
+     * @param toRow   row after the last row to calculate
+     */
+    public static void multiplyTransposedB(double[] a, double[] b, double[] c, int inner, int columns, int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int aRow = i * inner;
+            for (int j = 0; j < columns; j++) {
+                int bRow = j * inner;
+                double sum = 0;
+                for (int k = 0; k < inner; k++) {
+                    sum += a[aRow + k] * b[bRow + k];
+                }
+                c[i * columns + j] += sum;
+            }
+        }
+    }
+
+    /**
+     * Adds product of transposed matrix a (inner x rows) and matrix b
+     * (inner x columns) to matrix c (rows x columns)
+     *
+     * @param a       left matrix, before transposition
+     * @param b       right matrix
+     * @param c       result matrix to add product to
+     * @param rows    number of columns of a and rows of c
+     * @param inner   number of rows of a and b
+     * @param columns number of columns of b and c
+     */
+    public static void multiplyTransposedA(double[] a, double[] b, double[] c, int rows, int inner, int columns) {
+        multiplyTransposedA(a, b, c, rows, inner, columns, 0, rows);
+    }
+
+    /**
+     * Adds rows fromRow to toRow (exclusive) of product of transposed matrix
+     * a and matrix b to the same rows of matrix c. Different row ranges can
+     * be calculated in parallel.
+     *
+     * @param a       left matrix (inner x rows), before transposition
+     * @param b       right matrix (inner x columns)
+     * @param c       result matrix (rows x columns) to add product to
+     * @param rows    number of columns of a and rows of c
+     * @param inner   number of rows of a and b
+     * @param columns number of columns of b and c
+     * @param fromRow first row to calculate
+     * @param toRow   row after the last row to calculate
+     */
+    public static void multiplyTransposedA(double[] a, double[] b, double[] c, int rows, int inner, int columns, int fromRow, int toRow) {
+        for (int k = 0; k < inner; k++) {
+            int bRow = k * columns;
+            for (int i = fromRow; i < toRow; i++) {
+                double aki = a[k * rows + i];
+                if (aki == 0) {
+                    continue;
+                }
+                int cRow = i * columns;
+                for (int j = 0; j < columns; j++) {
+                    c[cRow + j] += aki * b[bRow + j];
+                }
+            }
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package org.neuroph.nnet.comp.layer;
 
+import org.neuroph.core.CopyContext;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
 import org.neuroph.nnet.comp.neuron.CompetitiveNeuron;
@@ -122,6 +123,12 @@ public class CompetitiveLayer extends Layer {
 	public void setMaxIterations(int maxIterations) {
 		this.maxIterations = maxIterations;
 	}
+
+	@Override
+	protected void copyFrom(Layer original, CopyContext context) {
+		super.copyFrom(original, context);
+		this.winner = context.get(winner);
+	}
 	
 	
 
@@ -15,16 +15,22 @@
  */
 package org.neuroph.nnet.comp.layer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.neuroph.core.CopyContext;
+import org.neuroph.core.Layer;
 import org.neuroph.core.transfer.RectifiedLinear;
 import org.neuroph.nnet.comp.Kernel;
 import org.neuroph.core.Neuron;
 import org.neuroph.core.Weight;
+import org.neuroph.core.exceptions.NeurophException;
 import org.neuroph.core.input.WeightedSum;
 import org.neuroph.core.transfer.Tanh;
 import org.neuroph.core.transfer.TransferFunction;
 import org.neuroph.nnet.comp.Dimension2D;
-import org.neuroph.nnet.comp.neuron.BiasNeuron;
-import org.neuroph.util.ConnectionFactory;
+import org.neuroph.nnet.comp.TensorUtils;
 import org.neuroph.util.NeuronProperties;
 
 /**
@@ -33,6 +39,11 @@ import org.neuroph.util.NeuronProperties;
  * for convolutional layers, and method for creating connections to feature
  * maps. The role of the convolutional layer is extaction of high level
  * features.
+ * <p/>
+ * Feature maps are calculated as tensors: each pair of connected input map and
+ * feature map has one kernel with shared weights, and each feature map has one
+ * bias weight. Neurons of feature maps have no input connections, their net
+ * inputs and outputs are set when the layer is calculated.
  *
  * @author Boris Fulurija
  * @author Zoran Sevarac
@@ -53,6 +64,57 @@ public class ConvolutionalLayer extends FeatureMapsLayer {
         DEFAULT_NEURON_PROP.setProperty("useBias", true);
     }
 
+    /**
+     * Previous layer, whose feature maps are inputs of this layer. It is null
+     * in layers created by older versions, which are connected with
+     * connections instead of kernels.
+     */
+    private FeatureMapsLayer inputLayer;
+
+    /**
+     * Dimensions of all kernels in this layer
+     */
+    private Dimension2D kernelDimension;
+
+    /**
+     * Horizontal and vertical step of kernel
+     */
+    private Dimension2D stride;
+
+    /**
+     * Number of zero columns (width) and rows (height) added on each side of
+     * input maps
+     */
+    private Dimension2D padding;
+
+    /**
+     * Kernels between input maps and feature maps of this layer. Kernel from
+     * input map i to feature map j is at index j * (number of input maps) + i,
+     * it is null if maps are not connected.
+     */
+    private Kernel[] kernels;
+
+    /**
+     * Bias weight of each feature map
+     */
+    private Weight[] biasWeights;
+
+    /**
+     * Kernel weights in matrix order, see getKernelWeights()
+     */
+    private transient Weight[] kernelWeights;
+
+    /**
+     * Buffers of the last calculation: input tensor, its kernel windows as
+     * columns, kernel weight values and net inputs of all neurons
+     */
+    private transient double[] inputs, columns, kernelMatrix, netInputs;
+
+    /**
+     * Buffers for backpropagation: neuron errors and errors of columns
+     */
+    private transient double[] errors, columnErrors;
+
     /**
      * Creates convolutional layer with specified kernel, and appropriate map
      * dimensions in regard to previous layer - fromLayer param
@@ -80,13 +142,7 @@ public class ConvolutionalLayer extends FeatureMapsLayer {
      * @param numberOfMaps number of feature maps to create in this layer
      */
     public ConvolutionalLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDimension, int numberOfMaps) {
-        Dimension2D fromDimension = fromLayer.getMapDimensions();
-
-        int mapWidth = fromDimension.getWidth() - kernelDimension.getWidth() + 1;
-        int mapHeight = fromDimension.getHeight() - kernelDimension.getHeight() + 1;
-        this.mapDimensions = new Dimension2D(mapWidth, mapHeight);
-
-        createFeatureMaps(numberOfMaps, this.mapDimensions, kernelDimension, ConvolutionalLayer.DEFAULT_NEURON_PROP);
+        this(fromLayer, kernelDimension, numberOfMaps, ConvolutionalLayer.DEFAULT_NEURON_PROP);
     }
     
      /**
@@ -101,15 +157,7 @@ public class ConvolutionalLayer extends FeatureMapsLayer {
      * @param transferFunction neuron's transfer function to use
      */
     public ConvolutionalLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDimension, int numberOfMaps, Class <? extends TransferFunction> transferFunction) {
-        Dimension2D fromDimension = fromLayer.getMapDimensions();
-
-        int mapWidth = fromDimension.getWidth() - kernelDimension.getWidth() + 1;
-        int mapHeight = fromDimension.getHeight() - kernelDimension.getHeight() + 1;
-        this.mapDimensions = new Dimension2D(mapWidth, mapHeight);
-        
-        NeuronProperties neuronProp = new NeuronProperties(Neuron.class, transferFunction);
-
-        createFeatureMaps(numberOfMaps, this.mapDimensions, kernelDimension, neuronProp);
+        this(fromLayer, kernelDimension, numberOfMaps, new NeuronProperties(Neuron.class, transferFunction));
     }    
 
     /**
@@ -123,69 +171,349 @@ public class ConvolutionalLayer extends FeatureMapsLayer {
      * @param neuronProp settings for neurons in feature maps
      */
     public ConvolutionalLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDimension, int numberOfMaps, NeuronProperties neuronProp) {
+        this(fromLayer, kernelDimension, new Dimension2D(1, 1), new Dimension2D(0, 0), numberOfMaps, neuronProp);
+    }
+
+    /**
+     * Creates convolutional layer with specified kernel, stride and padding,
+     * and specified number of feature maps with given neuron properties. Map
+     * width is (input width + 2 * horizontal padding - kernel width) /
+     * horizontal stride + 1, and the same for height.
+     *
+     * @param fromLayer previous layer, which will be connected to this layer
+     * @param kernelDimension kernel dimensions for all feature maps
+     * @param stride horizontal and vertical step of kernel
+     * @param padding number of zero columns added on the left and right side
+     * of input maps (width), and zero rows added above and below (height)
+     * @param numberOfMaps number of feature maps to create in this layer
+     * @param neuronProp settings for neurons in feature maps
+     */
+    public ConvolutionalLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDimension, Dimension2D stride, Dimension2D padding, int numberOfMaps, NeuronProperties neuronProp) {
+        if (stride.getWidth() < 1 || stride.getHeight() < 1) {
+            throw new IllegalArgumentException("Stride must be positive!");
+        }
+        if (padding.getWidth() < 0 || padding.getHeight() < 0 || padding.getWidth() >= kernelDimension.getWidth()
+                || padding.getHeight() >= kernelDimension.getHeight()) {
+            throw new IllegalArgumentException("Padding must be non negative and smaller than kernel!");
+        }
         Dimension2D fromDimension = fromLayer.getMapDimensions();
 
-        int mapWidth = fromDimension.getWidth() - kernelDimension.getWidth() + 1;
-        int mapHeight = fromDimension.getHeight() - kernelDimension.getHeight() + 1;
+        int mapWidth = (fromDimension.getWidth() + 2 * padding.getWidth() - kernelDimension.getWidth()) / stride.getWidth() + 1;
+        int mapHeight = (fromDimension.getHeight() + 2 * padding.getHeight() - kernelDimension.getHeight()) / stride.getHeight() + 1;
+        if (mapWidth < 1 || mapHeight < 1) {
+            throw new IllegalArgumentException("Kernel is larger than padded feature maps of previous layer!");
+        }
         this.mapDimensions = new Dimension2D(mapWidth, mapHeight);
+        this.stride = stride;
+        this.padding = padding;
 
         createFeatureMaps(numberOfMaps, this.mapDimensions, kernelDimension, neuronProp);
+        createWeights(fromLayer, kernelDimension);
     }
 
     /**
-     * Creates connections with shared weights between two feature maps Assumes
-     * that toMap is from Convolutional layer.
+     * Creates kernel between two feature maps. Assumes that fromMap is from
+     * previous layer and toMap is from this layer.
      * <p/>
-     * Kernel is used as a sliding window, and kernel positions overlap. Kernel
-     * is shifting right by one position at a time. Neurons at the same kernel
-     * position share the same weights
+     * Kernel is used as a sliding window over input maps padded with zeros,
+     * shifting by stride positions at a time. All positions of the kernel
+     * share the same weights, so this layer does not create connections for
+     * them: kernel weights are applied to whole input maps at once, see
+     * {@link #calculate()}.
      *
      * @param fromMap source feature map
      * @param toMap destination feature map
      */
     @Override
     public void connectMaps(FeatureMapLayer fromMap, FeatureMapLayer toMap) {
+        int fromIndex = inputLayer.getFeatureMaps().indexOf(fromMap);
+        int toIndex = getFeatureMaps().indexOf(toMap);
+        if (fromIndex < 0 || toIndex < 0) {
+            throw new NeurophException("Feature maps don't belong to previous layer and this layer!");
+        }
+
+        int index = toIndex * inputLayer.getNumberOfMaps() + fromIndex;
+        if (kernels[index] == null) {
+            Kernel kernel = new Kernel(kernelDimension);
+            kernel.initWeights(-0.15, 0.15); // zasto ove vrednosti ???
+            kernels[index] = kernel;
+            kernelWeights = null;
+        }
+    }
+
+    /**
+     * Calculates all feature maps of this layer as one matrix multiplication:
+     * kernel windows of input maps are copied to columns of a matrix (see
+     * {@link TensorUtils#im2col}), which is multiplied by matrix of kernel
+     * weights. Net input and output of each neuron is set from the result.
+     * <p/>
+     * Multiplication is split in tiles of rows of each feature map, which are
+     * calculated in parallel (see {@link FeatureMapsLayer#forEachTile}). Tile
+     * is small enough that its part of the columns matrix stays in cache
+     * while kernels of all feature maps are applied to it.
+     */
+    @Override
+    public void calculate() {
+        if (inputLayer == null) { // layer created by older version, with connections
+            super.calculate();
+            return;
+        }
+
+        int channels = inputLayer.getNumberOfMaps();
+        Dimension2D inputDimension = inputLayer.getMapDimensions();
+        int kernelSize = channels * kernelDimension.getHeight() * kernelDimension.getWidth();
+        int mapSize = mapDimensions.getHeight() * mapDimensions.getWidth();
+        int mapCount = getNumberOfMaps();
+        if (columns == null) {
+            inputs = new double[channels * inputDimension.getHeight() * inputDimension.getWidth()];
+            columns = new double[kernelSize * mapSize];
+            kernelMatrix = new double[mapCount * kernelSize];
+            netInputs = new double[mapCount * mapSize];
+        }
+
+        List<Neuron> inputNeurons = inputLayer.getNeurons();
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = inputNeurons.get(i).getOutput();
+        }
+        TensorUtils.im2col(inputs, channels, inputDimension.getHeight(), inputDimension.getWidth(),
+                kernelDimension, stride, padding, columns);
+
+        Weight[] weights = getKernelWeights();
+        for (int i = 0; i < weights.length; i++) {
+            kernelMatrix[i] = weights[i] != null ? weights[i].getValue() : 0;
+        }
+
+        int mapWidth = mapDimensions.getWidth();
+        int rowsPerTile = rowsPerTile(mapWidth, mapDimensions.getHeight(), (kernelSize + 1) * Double.BYTES);
+        forEachTile(mapCount, mapWidth, mapDimensions.getHeight(), rowsPerTile, kernelSize, (map, from, to) -> {
+            Arrays.fill(netInputs, map * mapSize + from, map * mapSize + to, biasWeights[map].getValue());
+            TensorUtils.multiply(kernelMatrix, columns, netInputs, kernelSize, mapSize, map, map + 1, from, to);
+
+            for (int i = map * mapSize + from; i < map * mapSize + to; i++) {
+                Neuron neuron = neurons.get(i);
+                neuron.setInput(netInputs[i]);
+                neuron.setOutput(neuron.getTransferFunction().getOutput(netInputs[i]));
+            }
+        });
+    }
+
+    /**
+     * Calculates error terms of kernel and bias weights for the last
+     * calculated input, from errors (deltas) of neurons in this layer, and
+     * adds them to specified arrays. Error term of a weight is the sum of
+     * neuron error * input over all positions where the weight is used, so
+     * weight change is learning rate * error term. Error terms are added to
+     * arrays, so they can be summed over a batch of patterns. Feature maps are
+     * processed in parallel.
+     * <p/>
+     * If previous layer is not input layer, this method also sets its output
+     * errors (see {@link FeatureMapsLayer#getOutputErrors()}).
+     *
+     * @param kernelErrors array to add kernel weight error terms to, in the
+     * order of {@link #getKernelWeights()}
+     * @param biasErrors array to add bias error terms to, one for each
+     * feature map
+     */
+    public void backpropagate(double[] kernelErrors, double[] biasErrors) {
+        if (columns == null) {
+            throw new IllegalStateException("Layer must be calculated before backpropagation!");
+        }
+
+        int channels = inputLayer.getNumberOfMaps();
+        Dimension2D inputDimension = inputLayer.getMapDimensions();
+        int kernelSize = channels * kernelDimension.getHeight() * kernelDimension.getWidth();
+        int mapSize = mapDimensions.getHeight() * mapDimensions.getWidth();
+        int mapCount = getNumberOfMaps();
+        if (errors == null) {
+            errors = new double[mapCount * mapSize];
+        }
+
+        // each feature map has its own rows of kernel errors
+        forEachMap(mapCount, (long) mapSize * kernelSize, map -> {
+            double sum = 0;
+            for (int i = map * mapSize; i < (map + 1) * mapSize; i++) {
+                errors[i] = neurons.get(i).getError();
+                sum += errors[i];
+            }
+            biasErrors[map] += sum;
+            TensorUtils.multiplyTransposedB(errors, columns, kernelErrors, mapSize, kernelSize, map, map + 1);
+        });
+
+        if (!(inputLayer instanceof InputMapsLayer)) {
+            if (columnErrors == null) {
+                columnErrors = new double[kernelSize * mapSize];
+            }
+            if (inputLayer.outputErrors == null) {
+                inputLayer.outputErrors = new double[inputs.length];
+            }
+            double[] outputErrors = inputLayer.outputErrors;
+            int inputHeight = inputDimension.getHeight();
+            int inputWidth = inputDimension.getWidth();
+            int kernelArea = kernelDimension.getHeight() * kernelDimension.getWidth();
+
+            // each input map has its own rows of column errors
+            forEachMap(channels, (long) kernelArea * mapCount * mapSize, channel -> {
+                Arrays.fill(columnErrors, channel * kernelArea * mapSize, (channel + 1) * kernelArea * mapSize, 0);
+                TensorUtils.multiplyTransposedA(kernelMatrix, errors, columnErrors, kernelSize, mapCount, mapSize,
+                        channel * kernelArea, (channel + 1) * kernelArea);
+                Arrays.fill(outputErrors, channel * inputHeight * inputWidth, (channel + 1) * inputHeight * inputWidth, 0);
+                TensorUtils.col2im(columnErrors, inputHeight, inputWidth, kernelDimension, stride, padding,
+                        outputErrors, channel, channel + 1);
+            });
+        }
+    }
+
+    /**
+     * Returns previous layer, whose feature maps are inputs of this layer
+     *
+     * @return previous layer
+     */
+    public FeatureMapsLayer getInputLayer() {
+        return inputLayer;
+    }
+
+    /**
+     * Returns dimensions of kernels in this layer
+     *
+     * @return kernel dimensions
+     */
+    public Dimension2D getKernelDimension() {
+        return kernelDimension;
+    }
+
+    /**
+     * Returns horizontal and vertical step of kernel
+     *
+     * @return stride
+     */
+    public Dimension2D getStride() {
+        return stride;
+    }
 
-        Kernel kernel = toMap.getKernel();
-        kernel.initWeights(-0.15, 0.15); // zasto ove vrednosti ???
-      //  int numberOfSharedWeights = kernel.getArea();
-//        Weight[][] weights = new Weight[kernel.getHeight()][kernel.getWidth()];
-//        //double coefficient = getWeightCoeficient(toMap);
-//        // initialize kernel with random weights
-//        // ovo prebaciti u kernel
-//        for (int i = 0; i < kernel.getHeight(); i++) {
-//            for (int j = 0; j < kernel.getWidth(); j++) {
-//                Weight weight = new Weight();
-//                weight.randomize(-0.15, 0.15); // zasto ove vrednosti?
-//                weights[i][j] = weight;
-//            }
-//        }
-//        kernel.setWeights(weights); // na kraju svi kerneli od svih feature mapa imaju iste tezine jer gadjaju istu instancu kernela od nadklase!!!!
-//                                    // kernel prebaciti u Layer2D preimenovati ga u FeatureMapLayer i dodati mu kernel...
-//                                    // pored kernela dodati mu i BiasNeuron...
-        BiasNeuron biasNeuron = new BiasNeuron();
-        fromMap.addNeuron(biasNeuron);
-                                    
-                                    
-        // ovo se koristi samo za povezivanje dva konvoluciona sloja !!! 
-        // dodati step za from - ne mora da bude samo 1
-        // ostaje pitanje kako se primenjuje na ivici - trebalo bi od centra - dodati onaj okvir sa strane!!!!
-        for (int y = 0; y < toMap.getHeight(); y++) { // iterate all neurons by height in toMap  -- verovatno bi i ovde trebalo zameniti redosled x i y!!!
-            for (int x = 0; x < toMap.getWidth(); x++) { // iterate all neurons by width in toMap
-                Neuron toNeuron = toMap.getNeuronAt(x, y); // get neuron at specified position in toMap
-                for (int ky = 0; ky < kernel.getHeight(); ky++) { // iterate kernel positions by y
-                    for (int kx = 0; kx < kernel.getWidth(); kx++) { // iterate kernel positions by x
-                        int fromX = x + kx; // calculate the x position of from neuron
-                        int fromY = y + ky; // calculate the y position of from neuron
-                        //int currentWeightIndex = kx + ky * kernel.getHeight(); // find the idx of the shared weight
-                        Weight[][] concreteKernel = kernel.getWeights();
-                        Neuron fromNeuron = fromMap.getNeuronAt(fromX, fromY);
-                        ConnectionFactory.createConnection(fromNeuron, toNeuron, concreteKernel[kx][ky]);  // - da li je ovo dobro ???
-                        // also create connection from bias
-                        ConnectionFactory.createConnection(biasNeuron, toNeuron);
+    /**
+     * Returns number of zero columns (width) and rows (height) added on each
+     * side of input maps
+     *
+     * @return padding
+     */
+    public Dimension2D getPadding() {
+        return padding;
+    }
+
+    /**
+     * Returns kernel between specified input map and feature map of this
+     * layer, or null if maps are not connected
+     *
+     * @param fromIndex index of feature map in previous layer
+     * @param toIndex index of feature map in this layer
+     * @return kernel between feature maps or null
+     */
+    public Kernel getKernel(int fromIndex, int toIndex) {
+        return kernels[toIndex * inputLayer.getNumberOfMaps() + fromIndex];
+    }
+
+    /**
+     * Returns matrix of all kernel weights, with one row for each feature map
+     * of this layer. Row holds weights of kernels from all input maps, input
+     * map by input map, kernel row by kernel row. Weights of maps which are
+     * not connected are null. Returned array must not be changed.
+     *
+     * @return kernel weights of this layer
+     */
+    public Weight[] getKernelWeights() {
+        if (kernelWeights == null) {
+            int area = kernelDimension.getHeight() * kernelDimension.getWidth();
+            Weight[] weights = new Weight[kernels.length * area];
+            for (int k = 0; k < kernels.length; k++) {
+                if (kernels[k] != null) {
+                    Weight[][] kernelRows = kernels[k].getWeights();
+                    for (int ky = 0; ky < kernelRows.length; ky++) {
+                        System.arraycopy(kernelRows[ky], 0, weights, k * area + ky * kernelDimension.getWidth(), kernelRows[ky].length);
                     }
                 }
             }
+            kernelWeights = weights;
+        }
+        return kernelWeights;
+    }
+
+    /**
+     * Returns bias weights, one for each feature map. Returned array must not
+     * be changed.
+     *
+     * @return bias weights of this layer
+     */
+    public Weight[] getBiasWeights() {
+        return biasWeights;
+    }
+
+    /**
+     * Returns weights of all kernels followed by bias weights
+     *
+     * @return kernel and bias weights of this layer
+     */
+    @Override
+    public List<Weight> getLayerWeights() {
+        if (inputLayer == null) {
+            return super.getLayerWeights();
+        }
+        List<Weight> weights = new ArrayList<>();
+        for (Weight weight : getKernelWeights()) {
+            if (weight != null) {
+                weights.add(weight);
+            }
+        }
+        Collections.addAll(weights, biasWeights);
+        return weights;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        ConvolutionalLayer cloned = (ConvolutionalLayer) super.clone();
+        cloned.inputs = null;
+        cloned.columns = null;
+        cloned.kernelMatrix = null;
+        cloned.netInputs = null;
+        cloned.errors = null;
+        cloned.columnErrors = null;
+        cloned.kernelWeights = null;
+        return cloned;
+    }
+
+    /**
+     * Copies kernels and bias weights of original layer, with weights from
+     * the network copy
+     */
+    @Override
+    protected void copyFrom(Layer original, CopyContext context) {
+        super.copyFrom(original, context);
+        if (inputLayer != null) {
+            inputLayer = context.get(inputLayer);
+            kernels = kernels.clone();
+            for (int i = 0; i < kernels.length; i++) {
+                if (kernels[i] != null) {
+                    kernels[i] = kernels[i].copy(context);
+                }
+            }
+            biasWeights = biasWeights.clone();
+            for (int i = 0; i < biasWeights.length; i++) {
+                biasWeights[i] = context.getWeight(biasWeights[i]);
+            }
+        }
+    }
+
+    /**
+     * Creates empty kernel table and bias weights for feature maps of this
+     * layer
+     */
+    private void createWeights(FeatureMapsLayer fromLayer, Dimension2D kernelDimension) {
+        this.inputLayer = fromLayer;
+        this.kernelDimension = kernelDimension;
+        this.kernels = new Kernel[getNumberOfMaps() * fromLayer.getNumberOfMaps()];
+        this.biasWeights = new Weight[getNumberOfMaps()];
+        for (int i = 0; i < biasWeights.length; i++) {
+            biasWeights[i] = new Weight();
+            biasWeights[i].randomize(-0.15, 0.15);
         }
     }
 
@@ -18,6 +18,7 @@ package org.neuroph.nnet.comp.layer;
 
 import java.util.concurrent.Callable;
 
+import org.neuroph.core.CopyContext;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
 import org.neuroph.nnet.comp.Dimension2D;
@@ -134,6 +135,14 @@ public class FeatureMapLayer extends Layer /*implements Callable<Void>*/ {
         return kernel;
     }
 
+    @Override
+    protected void copyFrom(Layer original, CopyContext context) {
+        super.copyFrom(original, context);
+        if (kernel != null) {
+            kernel = kernel.copy(context);
+        }
+    }
+
  
 //    @Override
 //    public Void call() throws Exception {
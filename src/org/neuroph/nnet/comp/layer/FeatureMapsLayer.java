@@ -23,9 +23,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
+import org.neuroph.core.CopyContext;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
+import org.neuroph.core.exceptions.NeurophException;
 import org.neuroph.nnet.comp.Dimension2D;
 import org.neuroph.util.NeuronProperties;
 
@@ -42,7 +46,22 @@ import org.neuroph.util.NeuronProperties;
  */
 public abstract class FeatureMapsLayer extends Layer {
 
-   // static final ForkJoinPool mainPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * Pool for calculating feature maps in parallel
+     */
+    static final ForkJoinPool mainPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Number of bytes which data of one tile of work should fit in, so that
+     * its part of input and output stays in per core (L2) cache
+     */
+    static final int TILE_CACHE_SIZE = 256 * 1024;
+
+    /**
+     * Smallest amount of work (number of multiply-adds) which is split
+     * between threads, smaller layers are calculated on the calling thread
+     */
+    static final long PARALLEL_THRESHOLD = 64 * 1024;
 
 
     private static final long serialVersionUID = -6706741997689639209L;
@@ -66,6 +85,12 @@ public abstract class FeatureMapsLayer extends Layer {
      */
     private List<FeatureMapLayer> featureMaps;
 
+    /**
+     * Errors of neuron outputs, set by tensor based layer above this layer
+     * during backpropagation
+     */
+    transient double[] outputErrors;
+
     /**
      * Creates a new empty feature maps layer with specified kernel
      *
@@ -231,5 +256,149 @@ public abstract class FeatureMapsLayer extends Layer {
      */
     public abstract void connectMaps(FeatureMapLayer fromMap, FeatureMapLayer toMap);
 
+    /**
+     * Returns errors of neuron outputs in this layer, which tensor based layer
+     * above this layer (like {@link ConvolutionalLayer}) has propagated back
+     * for the last pattern. These errors come in addition to errors propagated
+     * through output connections of neurons. Array has one value for each
+     * neuron, in the same order as neurons of this layer.
+     *
+     * @return output errors, or null if layer above this layer is not tensor
+     * based
+     */
+    public double[] getOutputErrors() {
+        return outputErrors;
+    }
+
+    /**
+     * Work on part of one feature map
+     */
+    @FunctionalInterface
+    interface TileTask {
+
+        /**
+         * Does the work for neurons from index from to index to (exclusive)
+         * of specified feature map. Indexes are positions within the map.
+         */
+        void run(int map, int from, int to);
+    }
+
+    /**
+     * Returns number of map rows in one tile, so that tile data fits in
+     * cache
+     *
+     * @param width            map width
+     * @param height           map height
+     * @param bytesPerPosition bytes of data used for each map position
+     * @return rows per tile, between 1 and height
+     */
+    static int rowsPerTile(int width, int height, int bytesPerPosition) {
+        int rows = TILE_CACHE_SIZE / Math.max(1, bytesPerPosition * width);
+        return Math.max(1, Math.min(height, rows));
+    }
+
+    /**
+     * Runs task for tiles of whole rows of all feature maps, in parallel on
+     * fork/join pool if there is enough work. Tiles are ordered tile by tile
+     * and map by map within a tile, so neighbouring tasks share the same part
+     * of input.
+     *
+     * @param mapCount        number of feature maps
+     * @param width           map width
+     * @param height          map height
+     * @param rowsPerTile     number of rows in one tile
+     * @param workPerPosition number of multiply-adds (or similar operations)
+     *                        for one map position
+     * @param task            task to run for each tile
+     */
+    static void forEachTile(int mapCount, int width, int height, int rowsPerTile, long workPerPosition, TileTask task) {
+        int tilesPerMap = (height + rowsPerTile - 1) / rowsPerTile;
+        int tileCount = mapCount * tilesPerMap;
+        TileAction action = new TileAction(task, mapCount, width, height, rowsPerTile, 0, tileCount);
+        if (tileCount == 1 || mainPool.getParallelism() == 1
+                || (long) mapCount * width * height * workPerPosition < PARALLEL_THRESHOLD) {
+            action.compute();
+        } else {
+            mainPool.invoke(action);
+        }
+    }
+
+    /**
+     * Runs task for each whole feature map, in parallel on fork/join pool if
+     * there is enough work
+     *
+     * @param mapCount   number of feature maps
+     * @param workPerMap number of multiply-adds for one map
+     * @param task       task to run for each map index
+     */
+    static void forEachMap(int mapCount, long workPerMap, IntConsumer task) {
+        forEachTile(mapCount, 1, 1, 1, workPerMap, (map, from, to) -> task.accept(map));
+    }
+
+    /**
+     * Splits range of tiles in halves until single tiles are left
+     */
+    private static class TileAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TileTask task;
+
+        private final int mapCount, width, height, rowsPerTile, fromTile, toTile;
+
+        TileAction(TileTask task, int mapCount, int width, int height, int rowsPerTile, int fromTile, int toTile) {
+            this.task = task;
+            this.mapCount = mapCount;
+            this.width = width;
+            this.height = height;
+            this.rowsPerTile = rowsPerTile;
+            this.fromTile = fromTile;
+            this.toTile = toTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (toTile - fromTile > 1 && getPool() != null) {
+                int middle = (fromTile + toTile) >>> 1;
+                invokeAll(new TileAction(task, mapCount, width, height, rowsPerTile, fromTile, middle),
+                        new TileAction(task, mapCount, width, height, rowsPerTile, middle, toTile));
+                return;
+            }
+            for (int tile = fromTile; tile < toTile; tile++) {
+                int firstRow = tile / mapCount * rowsPerTile;
+                int lastRow = Math.min(height, firstRow + rowsPerTile);
+                task.run(tile % mapCount, firstRow * width, lastRow * width);
+            }
+        }
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        FeatureMapsLayer cloned = (FeatureMapsLayer) super.clone();
+        cloned.featureMaps = new ArrayList<>();
+        cloned.outputErrors = null;
+        return cloned;
+    }
+
+    /**
+     * Copies feature maps of original layer, with neurons from the network copy
+     */
+    @Override
+    protected void copyFrom(Layer original, CopyContext context) {
+        super.copyFrom(original, context);
+        List<FeatureMapLayer> originalMaps = ((FeatureMapsLayer) original).featureMaps;
+        featureMaps = new ArrayList<>(originalMaps.size());
+        try {
+            for (FeatureMapLayer map : originalMaps) {
+                FeatureMapLayer mapCopy = (FeatureMapLayer) map.clone();
+                context.put(map, mapCopy);
+                mapCopy.copyFrom(map, context);
+                featureMaps.add(mapCopy);
+            }
+        } catch (CloneNotSupportedException ex) {
+            throw new NeurophException("Could not copy feature map!", ex);
+        }
+    }
+
 
 }
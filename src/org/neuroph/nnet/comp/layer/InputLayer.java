@@ -30,6 +30,12 @@ import org.neuroph.util.NeuronProperties;
  */
 public class InputLayer extends Layer {
 
+    /**
+     * Creates empty layer, used when layer is loaded from binary model file
+     */
+    protected InputLayer() {
+    }
+
     /**
      * Creates a new instance of InputLayer with specified number of input neurons
      * @param neuronsCount input neurons count for this layer
@@ -15,22 +15,32 @@
  */
 package org.neuroph.nnet.comp.layer;
 
+import java.util.Arrays;
+import java.util.List;
 import org.neuroph.nnet.comp.Kernel;
+import org.neuroph.core.CopyContext;
+import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
-import org.neuroph.core.Weight;
+import org.neuroph.core.exceptions.NeurophException;
 import org.neuroph.core.input.Max;
-import org.neuroph.core.transfer.Ramp;
+import org.neuroph.core.transfer.Linear;
 import org.neuroph.core.transfer.Tanh;
 import org.neuroph.nnet.comp.Dimension2D;
-import org.neuroph.util.ConnectionFactory;
 import org.neuroph.util.NeuronProperties;
 
 /**
  * Pooling layer is a special type of feature maps layer (FeatureMapsLayer)
- * which is used in convolutional networks. It contains neurons with max input
- * function and method for creating pooling layer specific conectivity patterns.
- * The role of pooling layer is dimensionality and complexity reduction,
- * while it keeps essential information.
+ * which is used in convolutional networks. Each feature map takes maximum
+ * (or average) of every window of the feature map with the same index in
+ * previous layer. The role of pooling layer is dimensionality and complexity
+ * reduction, while it keeps essential information.
+ * <p/>
+ * Pooling works directly on feature map tensors, without connections. Window
+ * can be non square and moves by stride, which is window size by default.
+ * Max pooling remembers position of the maximum in each window, so errors are
+ * propagated back only to these positions (see {@link #backpropagate()}).
+ * Outputs of neurons are pooled values, neuron transfer functions are not
+ * used.
  *
  * @author Boris Fulurija
  * @author Zoran Sevarac
@@ -39,9 +49,50 @@ import org.neuroph.util.NeuronProperties;
 public class PoolingLayer extends FeatureMapsLayer {
 
     private static final long serialVersionUID = -6771501759374920878L;
-    
+
+    /**
+     * Pooling operation
+     */
+    public enum Type {
+        /**
+         * Maximum of the window
+         */
+        MAX,
+        /**
+         * Average of the window
+         */
+        AVERAGE
+    }
+
+    /**
+     * Pooling window
+     */
     private Kernel kernel;
 
+    /**
+     * Previous layer, whose feature maps are pooled. It is null in layers
+     * created by older versions, which are connected with connections.
+     */
+    private FeatureMapsLayer inputLayer;
+
+    /**
+     * Horizontal and vertical step of pooling window
+     */
+    private Dimension2D stride;
+
+    private Type type;
+
+    /**
+     * Input tensor of the last calculation
+     */
+    private transient double[] inputs;
+
+    /**
+     * Index of maximum in input tensor for each neuron, for the last
+     * calculation of max pooling
+     */
+    private transient int[] maxIndexes;
+
     /**
      * Default neuron properties for pooling layer
      */
@@ -49,81 +100,262 @@ public class PoolingLayer extends FeatureMapsLayer {
 
     static {
         DEFAULT_NEURON_PROP.setProperty("useBias", true);
-        DEFAULT_NEURON_PROP.setProperty("transferFunction", Tanh.class);
-    //    DEFAULT_NEURON_PROP.setProperty("transferFunction", Ramp.class);
+        DEFAULT_NEURON_PROP.setProperty("transferFunction", Linear.class);
+    //    DEFAULT_NEURON_PROP.setProperty("transferFunction", Tanh.class);
         DEFAULT_NEURON_PROP.setProperty("inputFunction", Max.class);
     }
 
     /**
-     * Creates pooling layer with specified kernel, appropriate map
+     * Creates max pooling layer with specified kernel, appropriate map
      * dimensions in regard to previous layer (fromLayer param) and specified
      * number of feature maps with default neuron settings for pooling layer.
      * Number of maps in pooling layer must be the same as number of maps in previous
      * layer.
      *
      * @param fromLayer previous layer, which will be connected to this layer
-     * @param kernel    kernel for all feature maps
+     * @param kernelDim pooling window dimensions
      */
     public PoolingLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDim) {
-        this.kernel = new Kernel(kernelDim);
-        int numberOfMaps = fromLayer.getNumberOfMaps();
-        Dimension2D fromDimension = fromLayer.getMapDimensions();
-
-        int mapWidth = fromDimension.getWidth() / kernel.getWidth();
-        int mapHeight = fromDimension.getHeight() / kernel.getHeight();
-        this.mapDimensions = new Dimension2D(mapWidth, mapHeight);
+        this(fromLayer, kernelDim, kernelDim, Type.MAX);
+    }
 
-        createFeatureMaps(numberOfMaps, mapDimensions, kernelDim, DEFAULT_NEURON_PROP);
+    /**
+     * Creates pooling layer with specified window, stride and pooling type,
+     * with one feature map for each feature map of previous layer
+     *
+     * @param fromLayer previous layer, which will be connected to this layer
+     * @param kernelDim pooling window dimensions
+     * @param stride    horizontal and vertical step of pooling window
+     * @param type      pooling operation
+     */
+    public PoolingLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDim, Dimension2D stride, Type type) {
+        this(fromLayer, kernelDim, stride, type, fromLayer.getNumberOfMaps(), DEFAULT_NEURON_PROP);
     }
 
     /**
-     * Creates pooling layer with specified kernel, appropriate map
+     * Creates max pooling layer with specified kernel, appropriate map
      * dimensions in regard to previous layer (fromLayer param) and specified
      * number of feature maps with given neuron properties.
      *
      * @param fromLayer    previous layer, which will be connected to this layer
-     * @param kernel       kernel for all feature maps
+     * @param kernelDim    pooling window dimensions
      * @param numberOfMaps number of feature maps to create in this layer
      * @param neuronProp   settings for neurons in feature maps
      */
     public PoolingLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDim, int numberOfMaps, NeuronProperties neuronProp) {
-        this.kernel = kernel;
+        this(fromLayer, kernelDim, kernelDim, Type.MAX, numberOfMaps, neuronProp);
+    }
+
+    private PoolingLayer(FeatureMapsLayer fromLayer, Dimension2D kernelDim, Dimension2D stride, Type type, int numberOfMaps, NeuronProperties neuronProp) {
+        if (stride.getWidth() < 1 || stride.getHeight() < 1) {
+            throw new IllegalArgumentException("Stride must be positive!");
+        }
+        if (numberOfMaps > fromLayer.getNumberOfMaps()) {
+            throw new IllegalArgumentException("Pooling layer can't have more maps than previous layer!");
+        }
+        this.kernel = new Kernel(kernelDim);
+        this.inputLayer = fromLayer;
+        this.stride = stride;
+        this.type = type;
         Dimension2D fromDimension = fromLayer.getMapDimensions();
 
-        int mapWidth = fromDimension.getWidth() / kernel.getWidth();
-        int mapHeight = fromDimension.getHeight() / kernel.getHeight();
+        int mapWidth = (fromDimension.getWidth() - kernel.getWidth()) / stride.getWidth() + 1;
+        int mapHeight = (fromDimension.getHeight() - kernel.getHeight()) / stride.getHeight() + 1;
+        if (mapWidth < 1 || mapHeight < 1) {
+            throw new IllegalArgumentException("Pooling window is larger than feature maps of previous layer!");
+        }
         this.mapDimensions = new Dimension2D(mapWidth, mapHeight);
 
         createFeatureMaps(numberOfMaps, mapDimensions, kernelDim, neuronProp);
     }
 
     /**
-     * Creates connections with shared weights between two feature maps
-     * Assumes that toMap is from Pooling layer.
-     * <p/>
-     * In this implementation, there is no overlapping between kernel positions.
+     * Checks that maps can be pooled. Feature map is pooled from the feature
+     * map with the same index in previous layer, no connections are created.
      *
      * @param fromMap source feature map
      * @param toMap   destination feature map
      */
     @Override
     public void connectMaps(FeatureMapLayer fromMap, FeatureMapLayer toMap) {
-        int kernelWidth = kernel.getWidth();
-        int kernelHeight = kernel.getHeight();
-        Weight weight = new Weight(1);
-        for (int x = 0; x < fromMap.getWidth() - kernelWidth + 1; x += kernelWidth) { // < da li step treba da je kernel
-            for (int y = 0; y < fromMap.getHeight() - kernelHeight + 1; y += kernelHeight) {
-
-                Neuron toNeuron = toMap.getNeuronAt(x / kernelWidth, y / kernelHeight);
-                for (int dy = 0; dy < kernelHeight; dy++) {
-                    for (int dx = 0; dx < kernelWidth; dx++) {
-                        int fromX = x + dx;
-                        int fromY = y + dy;
-                        Neuron fromNeuron = fromMap.getNeuronAt(fromX, fromY);
-                        ConnectionFactory.createConnection(fromNeuron, toNeuron, weight);
+        int fromIndex = inputLayer.getFeatureMaps().indexOf(fromMap);
+        if (fromIndex < 0 || fromIndex != getFeatureMaps().indexOf(toMap)) {
+            throw new NeurophException("Pooling layer can only pool feature map with the same index in previous layer!");
+        }
+    }
+
+    /**
+     * Calculates maximum or average of each window of input maps, and sets it
+     * as net input and output of the neuron for the window. Tiles of rows of
+     * feature maps are calculated in parallel (see
+     * {@link FeatureMapsLayer#forEachTile}).
+     */
+    @Override
+    public void calculate() {
+        if (inputLayer == null) { // layer created by older version, with connections
+            super.calculate();
+            return;
+        }
+
+        Dimension2D inputDimension = inputLayer.getMapDimensions();
+        int inputHeight = inputDimension.getHeight();
+        int inputWidth = inputDimension.getWidth();
+        int mapWidth = mapDimensions.getWidth();
+        int mapSize = mapWidth * mapDimensions.getHeight();
+        int windowWidth = kernel.getWidth();
+        int windowHeight = kernel.getHeight();
+        if (inputs == null) {
+            inputs = new double[inputLayer.getNeuronsCount()];
+            maxIndexes = new int[getNeuronsCount()];
+        }
+
+        List<Neuron> inputNeurons = inputLayer.getNeurons();
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = inputNeurons.get(i).getOutput();
+        }
+
+        int windowArea = windowWidth * windowHeight;
+        int rowsPerTile = rowsPerTile(mapWidth, mapDimensions.getHeight(), (windowArea + 1) * Double.BYTES);
+        forEachTile(getNumberOfMaps(), mapWidth, mapDimensions.getHeight(), rowsPerTile, windowArea, (map, from, to) -> {
+            for (int position = from; position < to; position++) {
+                int i = map * mapSize + position;
+                int y = position / mapWidth * stride.getHeight();
+                int x = position % mapWidth * stride.getWidth();
+                int windowStart = (map * inputHeight + y) * inputWidth + x;
+
+                double value;
+                if (type == Type.MAX) {
+                    int maxIndex = windowStart;
+                    for (int wy = 0; wy < windowHeight; wy++) {
+                        int row = windowStart + wy * inputWidth;
+                        for (int wx = 0; wx < windowWidth; wx++) {
+                            if (inputs[row + wx] > inputs[maxIndex]) {
+                                maxIndex = row + wx;
+                            }
+                        }
                     }
+                    maxIndexes[i] = maxIndex;
+                    value = inputs[maxIndex];
+                } else {
+                    double sum = 0;
+                    for (int wy = 0; wy < windowHeight; wy++) {
+                        int row = windowStart + wy * inputWidth;
+                        for (int wx = 0; wx < windowWidth; wx++) {
+                            sum += inputs[row + wx];
+                        }
+                    }
+                    value = sum / windowArea;
                 }
+
+                Neuron neuron = neurons.get(i);
+                neuron.setInput(value);
+                neuron.setOutput(value);
             }
+        });
+    }
+
+    /**
+     * Propagates errors of neurons in this layer, set by learning rule, to
+     * output errors of previous layer (see
+     * {@link FeatureMapsLayer#getOutputErrors()}). Max pooling passes error of
+     * each window only to the position of its maximum, average pooling
+     * divides it evenly over the window. Windows of one map may overlap, so
+     * only whole feature maps are processed in parallel. Does nothing if
+     * previous layer is input layer.
+     */
+    public void backpropagate() {
+        if (inputLayer == null || inputLayer instanceof InputMapsLayer) {
+            return;
         }
+        if (inputs == null) {
+            throw new IllegalStateException("Layer must be calculated before backpropagation!");
+        }
+        if (inputLayer.outputErrors == null) {
+            inputLayer.outputErrors = new double[inputs.length];
+        }
+        double[] outputErrors = inputLayer.outputErrors;
+
+        Dimension2D inputDimension = inputLayer.getMapDimensions();
+        int inputWidth = inputDimension.getWidth();
+        int inputMapSize = inputWidth * inputDimension.getHeight();
+        int mapWidth = mapDimensions.getWidth();
+        int mapSize = mapWidth * mapDimensions.getHeight();
+        int windowWidth = kernel.getWidth();
+        int windowHeight = kernel.getHeight();
+        forEachMap(getNumberOfMaps(), (long) mapSize * windowWidth * windowHeight, map -> {
+            Arrays.fill(outputErrors, map * inputMapSize, (map + 1) * inputMapSize, 0);
+            for (int i = map * mapSize; i < (map + 1) * mapSize; i++) {
+                if (type == Type.MAX) {
+                    outputErrors[maxIndexes[i]] += neurons.get(i).getError();
+                    continue;
+                }
+                int y = (i % mapSize) / mapWidth * stride.getHeight();
+                int x = (i % mapSize) % mapWidth * stride.getWidth();
+                int windowStart = map * inputMapSize + y * inputWidth + x;
+                double error = neurons.get(i).getError() / (windowWidth * windowHeight);
+                for (int wy = 0; wy < windowHeight; wy++) {
+                    int row = windowStart + wy * inputWidth;
+                    for (int wx = 0; wx < windowWidth; wx++) {
+                        outputErrors[row + wx] += error;
+                    }
+                }
+            }
+        });
     }
+
+    /**
+     * Returns previous layer, whose feature maps are pooled
+     *
+     * @return previous layer
+     */
+    public FeatureMapsLayer getInputLayer() {
+        return inputLayer;
+    }
+
+    /**
+     * Returns pooling window
+     *
+     * @return pooling window
+     */
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Returns horizontal and vertical step of pooling window
+     *
+     * @return stride
+     */
+    public Dimension2D getStride() {
+        return stride;
+    }
+
+    /**
+     * Returns pooling operation
+     *
+     * @return pooling type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        PoolingLayer cloned = (PoolingLayer) super.clone();
+        cloned.inputs = null;
+        cloned.maxIndexes = null;
+        return cloned;
+    }
+
+    @Override
+    protected void copyFrom(Layer original, CopyContext context) {
+        super.copyFrom(original, context);
+        if (kernel != null) {
+            kernel = kernel.copy(context);
+        }
+        if (inputLayer != null) {
+            inputLayer = context.get(inputLayer);
+        }
+    }
+
 }
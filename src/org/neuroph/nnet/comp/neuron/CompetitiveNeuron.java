@@ -21,6 +21,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.neuroph.core.Connection;
+import org.neuroph.core.CopyContext;
+import org.neuroph.core.Neuron;
 import org.neuroph.core.input.InputFunction;
 import org.neuroph.core.transfer.TransferFunction;
 
@@ -135,4 +137,20 @@ public class CompetitiveNeuron extends DelayedNeuron {
 		this.isCompeting = isCompeting;
 	}
 
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		CompetitiveNeuron cloned = (CompetitiveNeuron) super.clone();
+		cloned.connectionsFromOtherLayers = new ArrayList<>();
+		cloned.connectionsFromThisLayer = new ArrayList<>();
+		return cloned;
+	}
+
+	@Override
+	protected void copyFrom(Neuron original, CopyContext context) {
+		super.copyFrom(original, context);
+		CompetitiveNeuron competitive = (CompetitiveNeuron) original;
+		this.connectionsFromOtherLayers = context.getAll(competitive.connectionsFromOtherLayers);
+		this.connectionsFromThisLayer = context.getAll(competitive.connectionsFromThisLayer);
+	}
+
 }
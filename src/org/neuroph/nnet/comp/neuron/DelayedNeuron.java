@@ -71,6 +71,13 @@ public class DelayedNeuron extends Neuron {
 	}
         
         
+        @Override
+        public Object clone() throws CloneNotSupportedException {
+            DelayedNeuron cloned = (DelayedNeuron) super.clone();
+            cloned.outputHistory = outputHistory != null ? new ArrayList<>(outputHistory) : new ArrayList<Double>(5);
+            return cloned;
+        }
+
         private void readObject(java.io.ObjectInputStream in)
             throws IOException, ClassNotFoundException {
             in.defaultReadObject();
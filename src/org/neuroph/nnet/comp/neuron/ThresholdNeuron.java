@@ -37,6 +37,12 @@ public class ThresholdNeuron extends Neuron {
 	 */
 	protected double thresh = 0;
 
+	/**
+	 * Creates empty neuron, used when neuron is loaded from binary model file
+	 */
+	protected ThresholdNeuron() {
+	}
+
 	/**
 	 * Creates a neuron with threshold behaviour, and with the specified input
 	 * and transfer functions.
@@ -113,7 +113,7 @@ public class BackPropagation extends LMS {
         double deltaSum = 0d;
         for (Connection connection : neuron.getOutConnections()) {
             double delta = connection.getToNeuron().getError()
-                    * connection.getWeight().value;
+                    * connection.getWeight().getValue();
             deltaSum += delta; // weighted delta sum from the next layer
         } // for
 
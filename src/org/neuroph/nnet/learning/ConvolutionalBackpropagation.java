@@ -1,52 +1,180 @@
 package org.neuroph.nnet.learning;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import org.neuroph.core.Connection;
 import org.neuroph.nnet.comp.layer.ConvolutionalLayer;
-import org.neuroph.nnet.comp.layer.FeatureMapLayer;
+import org.neuroph.nnet.comp.layer.FeatureMapsLayer;
+import org.neuroph.nnet.comp.layer.PoolingLayer;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
-import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.core.Weight;
 
+/**
+ * Backpropagation with momentum for convolutional networks. Error terms of
+ * kernel weights of convolutional layers are summed over all positions of the
+ * kernel (see {@link ConvolutionalLayer#backpropagate(double[], double[])})
+ * into one gradient per layer, and in batch mode over all patterns of the
+ * epoch. Each kernel weight is then changed once per pattern (or once per
+ * epoch in batch mode), with momentum kept per kernel weight. Pooling layers
+ * just pass errors to previous layer (see {@link PoolingLayer#backpropagate()}).
+ *
+ * @author Boris Fulurija
+ * @author Zoran Sevarac
+ */
 public class ConvolutionalBackpropagation extends MomentumBackpropagation {
 
 	private static final long serialVersionUID = -7134947805154423695L;
 
+	/**
+	 * Gradient of kernel and bias weights of each convolutional layer
+	 */
+	private transient Map<ConvolutionalLayer, KernelGradient> gradients;
+
+	@Override
+	protected void onStart() {
+		super.onStart();
+		gradients = new IdentityHashMap<>();
+	}
+
         @Override
 	protected void calculateErrorAndUpdateHiddenNeurons() {
 		List<Layer> layers = neuralNetwork.getLayers();
 		for (int layerIdx = layers.size() - 2; layerIdx > 0; layerIdx--) {
-			for (Neuron neuron : layers.get(layerIdx).getNeurons()) {
-				double neuronError = this.calculateHiddenNeuronError(neuron);
-				neuron.setError(neuronError);
-				if (layers.get(layerIdx) instanceof ConvolutionalLayer) { // if it is convolutional layer c=adapt weughts, dont touch pooling. Pooling just propagate the error
-					this.updateNeuronWeights(neuron);
+			Layer layer = layers.get(layerIdx);
+			if (!(layer instanceof FeatureMapsLayer)) { // fully connected hidden layer
+				for (Neuron neuron : layer.getNeurons()) {
+					neuron.setError(calculateHiddenNeuronError(neuron));
+					updateNeuronWeights(neuron);
 				}
-			} // for
-		} // for
+				continue;
+			}
+
+			boolean convolutional = layer instanceof ConvolutionalLayer;
+			double[] outputErrors = ((FeatureMapsLayer) layer).getOutputErrors(); // errors from tensor based layer above
+			List<Neuron> neurons = layer.getNeurons();
+			for (int i = 0; i < neurons.size(); i++) {
+				Neuron neuron = neurons.get(i);
+				double outputError = sumOutputErrors(neuron);
+				if (outputErrors != null) {
+					outputError += outputErrors[i];
+				}
+
+				if (convolutional) { // for convolutional layers use standard backprop formula
+					double f1 = neuron.getTransferFunction().getDerivative(neuron.getNetInput());
+					neuron.setError(f1 * outputError);
+					updateNeuronWeights(neuron); // layers created by older versions have connections
+				} else { // for pooling layer just transfer error without using tranfer function derivative
+					neuron.setError(outputError);
+				}
+			}
+
+			if (convolutional) {
+				updateKernelWeights((ConvolutionalLayer) layer);
+			} else if (layer instanceof PoolingLayer) {
+				((PoolingLayer) layer).backpropagate();
+			}
+		}
+	}
+
+	/**
+	 * Returns weighted sum of errors of neurons this neuron is connected to
+	 */
+	private double sumOutputErrors(Neuron neuron) {
+		double deltaSum = 0d;
+		for (Connection connection : neuron.getOutConnections()) {
+			deltaSum += connection.getToNeuron().getError() * connection.getWeight().getValue();
+		}
+		return deltaSum;
+	}
+
+	/**
+	 * Adds kernel and bias error terms of specified convolutional layer for
+	 * the current pattern to its gradient, using errors of its neurons. This
+	 * also propagates errors to previous layer. In online mode the gradient is
+	 * applied right away, in batch mode it is summed over the whole epoch and
+	 * applied in {@link #doBatchWeightsUpdate()}.
+	 *
+	 * @param layer convolutional layer to update
+	 */
+	protected void updateKernelWeights(ConvolutionalLayer layer) {
+		if (layer.getInputLayer() == null) {
+			return; // layer created by older version, updated through connections
+		}
+		if (gradients == null) {
+			gradients = new IdentityHashMap<>();
+		}
+		KernelGradient gradient = gradients.computeIfAbsent(layer, KernelGradient::new);
+		layer.backpropagate(gradient.kernelErrors, gradient.biasErrors);
+		if (!this.isInBatchMode()) {
+			applyGradient(layer, gradient);
+		}
+	}
+
+	/**
+	 * Applies connection weight changes summed over epoch, and then summed
+	 * gradients of convolutional layers
+	 */
+	@Override
+	protected void doBatchWeightsUpdate() {
+		super.doBatchWeightsUpdate();
+		if (gradients != null) {
+			for (Map.Entry<ConvolutionalLayer, KernelGradient> entry : gradients.entrySet()) {
+				applyGradient(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Changes each kernel and bias weight once, by learning rate * its summed
+	 * error term plus momentum * its previous change, and clears the gradient
+	 */
+	private void applyGradient(ConvolutionalLayer layer, KernelGradient gradient) {
+		Weight[] kernelWeights = layer.getKernelWeights();
+		for (int i = 0; i < kernelWeights.length; i++) {
+			if (kernelWeights[i] != null) {
+				kernelWeights[i].inc(gradient.step(gradient.kernelErrors, gradient.kernelChanges, i));
+			}
+		}
+		Weight[] biasWeights = layer.getBiasWeights();
+		for (int i = 0; i < biasWeights.length; i++) {
+			biasWeights[i].inc(gradient.step(gradient.biasErrors, gradient.biasChanges, i));
+		}
+	}
+
+	/**
+	 * Summed error terms and previous weight changes of kernel and bias
+	 * weights of one convolutional layer, in the order of
+	 * {@link ConvolutionalLayer#getKernelWeights()}
+	 */
+	private class KernelGradient {
+
+		final double[] kernelErrors, kernelChanges;
+
+		final double[] biasErrors, biasChanges;
+
+		KernelGradient(ConvolutionalLayer layer) {
+			int kernelCount = layer.getKernelWeights().length;
+			int mapCount = layer.getNumberOfMaps();
+			kernelErrors = new double[kernelCount];
+			kernelChanges = new double[kernelCount];
+			biasErrors = new double[mapCount];
+			biasChanges = new double[mapCount];
+		}
+
+		/**
+		 * Returns change of weight at specified index, remembers it for
+		 * momentum and clears the error term of the weight
+		 */
+		double step(double[] errors, double[] changes, int index) {
+			double weightChange = learningRate * errors[index] + momentum * changes[index];
+			changes[index] = weightChange;
+			errors[index] = 0;
+			return weightChange;
+		}
 	}
 
-        
-        // ova mora da se overriduje jer glavna uzima izvod //  ali ova treba samo za pooling sloj 
-    @Override     
-    protected double calculateHiddenNeuronError(Neuron neuron) {
-
-        // for convolutional layers use standard backprop formula
-        if (neuron.getParentLayer() instanceof ConvolutionalLayer ) {
-            return super.calculateHiddenNeuronError(neuron);
-        }
-                
-        // for pooling layer just transfer error without using tranfer function derivative
-        double deltaSum = 0d;
-        for (Connection connection : neuron.getOutConnections()) {
-            double delta = connection.getToNeuron().getError()
-                    * connection.getWeight().value;
-            deltaSum += delta; // weighted delta sum from the next layer
-        } // for
-
-       return deltaSum;
-    }        
-        
 //	@Override
 //	protected double calculateHiddenNeuronError(Neuron neuron) {
 //		double totalError = super.calculateHiddenNeuronError(neuron);
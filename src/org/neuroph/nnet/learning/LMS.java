@@ -106,7 +106,7 @@ public class LMS extends SupervisedLearning implements Serializable {
             // if the learning is in online mode (not batch) apply the weight change immediately
             if (!this.isInBatchMode()) {
                 weight.weightChange = weightChange;                
-                weight.value += weightChange;
+                weight.inc(weightChange);
             } else { // otherwise its in batch mode, so sum the weight changes and apply them later, after the current epoch (see SupervisedLearning.doLearningEpoch method)
                 weight.weightChange += weightChange;
             }
@@ -71,16 +71,16 @@ public class MomentumBackpropagation extends BackPropagation {
             //double currentWeightValue = weight.getValue();
             double previousWeightValue = weightTrainingData.previousValue;
             double weightChange = this.learningRate * neuronError * input
-                    + momentum * (weight.value - previousWeightValue);
+                    + momentum * (weight.getValue() - previousWeightValue);
             // save previous weight value
             //weight.getTrainingData().set(TrainingData.PREVIOUS_WEIGHT, currentWeightValue);
-            weightTrainingData.previousValue = weight.value;
+            weightTrainingData.previousValue = weight.getValue();
 
 
             // if the learning is in batch mode apply the weight change immediately
             if (this.isInBatchMode() == false) {
                 weight.weightChange = weightChange;
-                weight.value += weightChange;
+                weight.inc(weightChange);
             } else { // otherwise, sum the weight changes and apply them after at the end of epoch
                 weight.weightChange += weightChange;
             }
@@ -120,6 +120,9 @@ public class MomentumBackpropagation extends BackPropagation {
                     connection.getWeight().setTrainingData(new MomentumWeightTrainingData());
                 }
             } // for
+            for (Weight weight : layer.getLayerWeights()) {
+                weight.setTrainingData(new MomentumWeightTrainingData());
+            }
         } // for        
     }
 }
\ No newline at end of file
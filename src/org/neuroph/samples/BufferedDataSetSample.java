@@ -22,16 +22,14 @@ public class BufferedDataSetSample implements LearningEventListener {
     
     public  void run() throws FileNotFoundException {// org/neuroph/samples/
         String inputFileName = BufferedDataSetSample.class.getResource("data/iris_data_normalised.txt").getFile();
-        int i = 1;
         System.out.println(inputFileName);
-        if(i==1)
-        	return;
         // create MultiLayerPerceptron neural network
         MultiLayerPerceptron neuralNet = new MultiLayerPerceptron(4, 16, 3);
         
         BufferedDataSet irisDataSet = new BufferedDataSet(new File(inputFileName), 4, 3,  ",");
         
         neuralNet.getLearningRule().addListener(this);
+        neuralNet.getLearningRule().setMaxIterations(100); // each iteration reads the file again
         neuralNet.learn(irisDataSet);      
         
        // neuralNet.getLearningRule().setMaxError(0.001);
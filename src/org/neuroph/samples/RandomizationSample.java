@@ -34,7 +34,7 @@ public class RandomizationSample {
         for (Layer layer : neuralNet.getLayers()) {
             for (Neuron neuron : layer.getNeurons()) {
                 for (Connection connection : neuron.getInputConnections()) {
-                    System.out.print(connection.getWeight().value + " ");
+                    System.out.print(connection.getWeight().getValue() + " ");
                 }
                 System.out.println();
             }
@@ -1,10 +1,10 @@
 package org.neuroph.samples.convolution.mnist;
 
 import java.io.IOException;
-import java.util.List;
 
 import org.neuroph.core.data.DataSet;
-import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.DataSetView;
+import org.neuroph.core.data.IdxDataSet;
 
 /**
  * Provides methods for loading MNIST dataset (training and test set)
@@ -24,56 +24,48 @@ public class MNISTDataSet {
     public static final String TEST_IMAGE_NAME = "data_sets/t10k-images.idx3-ubyte";
 
 
+    /**
+     * Number of background pixels added around 28x28 MNIST images by default, which gives 32x32 network input.
+     * Networks whose first convolutional layer pads its input can use unpadded 28x28 images instead.
+     */
+    public static final int PADDING = 2;
+
+    /**
+     * Creates data set from MNIST files. Images are read from memory mapped file
+     * when rows are accessed, padded to 32x32 and scaled to [0, 1].
+     *
+     * @param labelPath   path to label file
+     * @param imagePath   path to image file
+     * @param sampleCount number of images to use (first sampleCount images from file)
+     * @return MNIST data set
+     */
     public static DataSet createFromFile(String labelPath, String imagePath, int sampleCount) throws IOException {
-        List<MNISTImage> mnistImages = MNISTImage.loadDigitImages(labelPath, imagePath);
-        DataSet dataSet = createDataSet(mnistImages, sampleCount);
-        return dataSet;
+        return createFromFile(labelPath, imagePath, sampleCount, PADDING);
     }
 
-    // TODO; remove sampleCount param its ame as  list count
-    private static DataSet createDataSet(List<MNISTImage> imageList, int sampleCount) {
+    /**
+     * Creates data set from MNIST files, with images padded by specified number of pixels on each side
+     *
+     * @param labelPath   path to label file
+     * @param imagePath   path to image file
+     * @param sampleCount number of images to use (first sampleCount images from file)
+     * @param padding     number of background pixels added on each side of 28x28 images, 0 for no padding
+     * @return MNIST data set
+     */
+    public static DataSet createFromFile(String labelPath, String imagePath, int sampleCount, int padding) throws IOException {
+        IdxDataSet dataSet = new IdxDataSet(imagePath, labelPath, padding);
+        for (int i = 0; i < dataSet.getOutputSize(); i++) {
+            dataSet.setColumnName(dataSet.getInputSize() + i, String.valueOf(i));
+        }
 
-        int pixelCount = imageList.get(0).getSize();
-        int totalSize = 1024;
-        DataSet dataSet = new DataSet(totalSize, 10);
+        if (sampleCount >= dataSet.size()) {
+            return dataSet;
+        }
 
+        int[] indices = new int[sampleCount];
         for (int i = 0; i < sampleCount; i++) {
-            MNISTImage dImage = imageList.get(i);
-            double[] input = new double[totalSize];
-            double[] output = new double[10];
-            for (int j = 0; j < 10; j++) {
-                output[j] = 0;
-            }
-
-            for (int j = 0; j < totalSize; j++) {
-                input[j] = 0;
-            }
-
-            output[dImage.getLabel()] = 1;
-            byte[] imageData = dImage.getData();
-            int k = 66;
-            for (int j = 0; j < pixelCount; j++) {
-                if ((imageData[j] & 0xff) > 0)
-                    input[k++] = 255;
-                else
-                    k++;
-                if (j % 28 == 27)
-                    k += 4;
-            }
-            DataSetRow row = new DataSetRow(input, output);
-            dataSet.addRow(row);
+            indices[i] = i;
         }
-        dataSet.setColumnName(1024, "0");
-        dataSet.setColumnName(1025, "1");
-        dataSet.setColumnName(1026, "2");
-        dataSet.setColumnName(1027, "3");
-        dataSet.setColumnName(1028, "4");
-        dataSet.setColumnName(1029, "5");
-        dataSet.setColumnName(1030, "6");
-        dataSet.setColumnName(1031, "7");
-        dataSet.setColumnName(1032, "8");
-        dataSet.setColumnName(1033, "9");
-        
-        return dataSet;
+        return new DataSetView(dataSet, indices);
     }
 }
@@ -65,12 +65,12 @@ public class MNISTExample {
     public static void main(String[] args) {
         try {
 
-            DataSet trainSet = MNISTDataSet.createFromFile(MNISTDataSet.TRAIN_LABEL_NAME, MNISTDataSet.TRAIN_IMAGE_NAME, 60);
-            DataSet testSet = MNISTDataSet.createFromFile(MNISTDataSet.TEST_LABEL_NAME, MNISTDataSet.TEST_IMAGE_NAME, 10);
+            DataSet trainSet = MNISTDataSet.createFromFile(MNISTDataSet.TRAIN_LABEL_NAME, MNISTDataSet.TRAIN_IMAGE_NAME, 60, 0);
+            DataSet testSet = MNISTDataSet.createFromFile(MNISTDataSet.TEST_LABEL_NAME, MNISTDataSet.TEST_IMAGE_NAME, 10, 0);
 
             ConvolutionalNetwork convolutionNetwork = new ConvolutionalNetwork.Builder()
-                    .withInputLayer(32, 32, 1)
-                    .withConvolutionLayer(5, 5, 6) // add transfer function and its properties
+                    .withInputLayer(28, 28, 1)
+                    .withConvolutionLayer(5, 5, 6, 1, 2) // padding keeps 28x28 maps, instead of padding images to 32x32
                     .withPoolingLayer(2, 2)
                     .withConvolutionLayer(5, 5, 16)
                     .withPoolingLayer(2, 2)
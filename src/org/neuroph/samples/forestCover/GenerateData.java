@@ -20,6 +20,7 @@ import java.math.RoundingMode;
 import java.util.List;
 import org.neuroph.core.data.DataSet;
 import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.DataSetView;
 import org.neuroph.util.data.norm.MaxNormalizer;
 import org.neuroph.util.data.norm.Normalizer;
 
@@ -47,7 +48,7 @@ public class GenerateData {
         System.out.println("Training set successfully saved!");
 
         //Normalizing test set
-        DataSet testSet = trainingAndTestSet[1];
+        DataSet testSet = ((DataSetView) trainingAndTestSet[1]).toDataSet();
         System.out.println("Normalizing test set...");
 
         Normalizer nor = new MaxNormalizer();
@@ -0,0 +1,66 @@
+package org.neuroph.samples.norm;
+
+import java.util.Random;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.data.norm.AffineNormalizer;
+import org.neuroph.util.data.norm.NormalizerFolding;
+import org.neuroph.util.data.norm.ZScoreNormalizer;
+
+/**
+ * This sample shows how to fold fitted input normalization into the network,
+ * and checks that folded network gives the same outputs for raw inputs as the
+ * original network gives for normalized inputs.
+ */
+public class NormalizerFoldingSample {
+
+    public static void main(String[] args) {
+        Random random = new Random(123);
+
+        // raw data with columns on very different scales
+        DataSet rawData = new DataSet(3, 1);
+        for (int i = 0; i < 500; i++) {
+            double a = 1000 + random.nextGaussian() * 200;
+            double b = -0.01 + random.nextDouble() * 0.02;
+            double c = -50 + random.nextDouble() * 10;
+            double label = (a > 1000 && b > 0) || c > -45 ? 1 : 0;
+            rawData.addRow(new DataSetRow(new double[]{a, b, c}, new double[]{label}));
+        }
+
+        // normalize copy of the data and train network on normalized data
+        AffineNormalizer normalizer = new ZScoreNormalizer();
+        normalizer.fit(rawData);
+
+        DataSet trainingSet = new DataSet(3, 1);
+        for (DataSetRow row : rawData.getRows()) {
+            trainingSet.addRow(new DataSetRow(row.getInput().clone(), row.getDesiredOutput().clone()));
+        }
+        normalizer.transform(trainingSet);
+
+        MultiLayerPerceptron neuralNet = new MultiLayerPerceptron(3, 8, 1);
+        neuralNet.getLearningRule().setMaxIterations(200);
+        neuralNet.learn(trainingSet);
+
+        // folded network accepts raw inputs
+        MultiLayerPerceptron foldedNet = NormalizerFolding.fold(normalizer, neuralNet);
+
+        double maxDifference = 0;
+        for (DataSetRow row : rawData.getRows()) {
+            neuralNet.setInput(normalizer.transformInput(row.getInput().clone()));
+            neuralNet.calculate();
+            double expected = neuralNet.getOutput()[0];
+
+            foldedNet.setInput(row.getInput());
+            foldedNet.calculate();
+            double actual = foldedNet.getOutput()[0];
+
+            maxDifference = Math.max(maxDifference, Math.abs(expected - actual));
+        }
+
+        System.out.println("Max output difference between normalized and folded network: " + maxDifference);
+        if (maxDifference > 1e-9) {
+            throw new IllegalStateException("Folded network is not equivalent to original network!");
+        }
+    }
+}
@@ -20,6 +20,8 @@ import org.neuroph.core.Connection;
 import org.neuroph.core.Layer;
 import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
+import org.neuroph.core.WeightArena;
 
 /**
  * A CODEC encodes and decodes neural networks, much like the more standard
@@ -42,19 +44,29 @@ public class NeuralNetworkCODEC {
 
 	/**
 	 * 该层所有神经元的权值保存到数组 
-	 * Encode a network to an array.
+	 * Encode a network to an array. Weights are in the same order as in
+	 * NeuralNetwork.getWeights, input connections of each neuron.
 	 * @param network The network to encode.
 	 */
 	public static void network2array(NeuralNetwork network, double[] array) {
+		WeightArena arena = network.getWeightArena();
+		if (arena != null && !arena.hasSharedWeights()) {
+			arena.copyTo(array);
+			return;
+		}
+
 		int index = 0;
 
                  List<Layer> layers = network.getLayers();
 		for (Layer layer : layers) {
 			for (Neuron neuron : layer.getNeurons()) {
-				for (Connection connection : neuron.getOutConnections()) {
+				for (Connection connection : neuron.getInputConnections()) {
 					array[index++] = connection.getWeight().getValue();
 				}
 			}
+			for (Weight weight : layer.getLayerWeights()) {
+				array[index++] = weight.getValue();
+			}
 		}
 	}
 
@@ -64,16 +76,25 @@ public class NeuralNetworkCODEC {
 	 * @param network The network to decode into.
 	 */
 	public static void array2network(double[] array, NeuralNetwork network) {
+		WeightArena arena = network.getWeightArena();
+		if (arena != null && !arena.hasSharedWeights()) {
+			arena.copyFrom(array);
+			return;
+		}
+
 		int index = 0;
                 
                 List<Layer> layers = network.getLayers();
                 for (Layer layer : layers) {
 			for (Neuron neuron : layer.getNeurons()) {
-				for (Connection connection : neuron.getOutConnections()) {
+				for (Connection connection : neuron.getInputConnections()) {
 					connection.getWeight().setValue(array[index++]);
 					//connection.getWeight().setPreviousValue(array[index++]);
 				}
 			}
+			for (Weight weight : layer.getLayerWeights()) {
+				weight.setValue(array[index++]);
+			}
 		}
 	}
 
@@ -88,8 +109,9 @@ public class NeuralNetworkCODEC {
                 List<Layer> layers = network.getLayers();
 		for (Layer layer : layers) {
 			for (Neuron neuron : layer.getNeurons()) {
-				result+=neuron.getOutConnections().size();
+				result+=neuron.getInputConnections().size();
 			}
+			result += layer.getLayerWeights().size();
 		}
 		return result;
 	}
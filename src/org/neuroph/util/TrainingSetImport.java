@@ -16,14 +16,11 @@
 
 package org.neuroph.util;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
-import org.neuroph.core.data.DataSetRow;
 import org.neuroph.core.data.DataSet;
+import org.neuroph.core.exceptions.NeurophException;
 
 
 /**
@@ -52,51 +49,18 @@ public class TrainingSetImport
   public static DataSet importFromFile(String filePath, int inputsCount, int outputsCount, String separator)
     throws IOException, FileNotFoundException, NumberFormatException
   {
-
-    FileReader fileReader = null;
-
     try {
-     DataSet trainingSet = new DataSet(inputsCount, outputsCount);
-     fileReader = new FileReader(new File(filePath));
-     BufferedReader reader = new BufferedReader(fileReader);
-
-     String line = "";
-     // check if firs lin econtains column names and set datatset column names
-      while((line = reader.readLine())!=null) {
-        double[] inputs = new double[inputsCount];
-        double[] outputs = new double[outputsCount];
-        String[] values = line.split(separator);
-
-        if (values[0].equals("")) continue; // skip if line was empty
-
-        for (int i = 0; i < inputsCount; i++)
-          inputs[i] =  Double.parseDouble(values[i]);
-
-           for (int i = 0; i < outputsCount; i++)
-          outputs[i] = Double.parseDouble(values[inputsCount + i]);
-
-        if (outputsCount>0) {
-              trainingSet.addRow(new DataSetRow(inputs, outputs));
-        } else {
-              trainingSet.addRow(new DataSetRow(inputs));
-        }
+      // parsing is done by DataSet, which reads file in parallel chunks
+      return DataSet.createFromFile(filePath, inputsCount, outputsCount, separator);
+    } catch (NeurophException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
       }
-
-      return trainingSet;
-      
-    } catch (FileNotFoundException ex) {
-       ex.printStackTrace();
-       throw ex;
-    } catch(IOException ex) {
-    	if(fileReader != null) {
-    		fileReader.close();
-    	}
-    	ex.printStackTrace();
-    	throw ex;
-    } catch (NumberFormatException ex) {
-       fileReader.close();
-       ex.printStackTrace();
-       throw ex;
+      if (cause instanceof NumberFormatException) {
+        throw (NumberFormatException) cause;
+      }
+      throw ex;
     }
   }
 
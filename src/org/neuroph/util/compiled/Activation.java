@@ -0,0 +1,185 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.util.Arrays;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.transfer.Gaussian;
+import org.neuroph.core.transfer.Linear;
+import org.neuroph.core.transfer.Log;
+import org.neuroph.core.transfer.Ramp;
+import org.neuroph.core.transfer.RectifiedLinear;
+import org.neuroph.core.transfer.Sgn;
+import org.neuroph.core.transfer.Sigmoid;
+import org.neuroph.core.transfer.Sin;
+import org.neuroph.core.transfer.Step;
+import org.neuroph.core.transfer.Tanh;
+import org.neuroph.core.transfer.Trapezoid;
+
+/**
+ * Stateless implementation of standard transfer functions used by compiled
+ * networks. Transfer function objects cache their last output for derivative
+ * calculation, so they cannot be shared between threads; this class gives the
+ * same results without any state. Formulas are the same as in transfer function
+ * classes, so compiled network gives exactly the same output.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+final class Activation {
+
+    static final int LINEAR = 0, SIGMOID = 1, TANH = 2, STEP = 3, SGN = 4, RELU = 5, RAMP = 6,
+            GAUSSIAN = 7, TRAPEZOID = 8, SIN = 9, LOG = 10;
+
+    final int type;
+
+    final double p0, p1, p2, p3, p4;
+
+    private Activation(int type, double... params) {
+        double[] p = Arrays.copyOf(params, 5);
+        this.type = type;
+        this.p0 = p[0];
+        this.p1 = p[1];
+        this.p2 = p[2];
+        this.p3 = p[3];
+        this.p4 = p[4];
+    }
+
+    /**
+     * Creates activation for the transfer function described by record
+     *
+     * @throws NeurophException if transfer function is not supported
+     */
+    static Activation of(ModelRecord transfer) {
+        if (transfer == null) {
+            throw new NeurophException("Neuron without transfer function cannot be compiled!");
+        }
+        String name = transfer.getClassName();
+        if (name.equals(Linear.class.getName())) {
+            return new Activation(LINEAR, transfer.getDouble("slope", 1d));
+        } else if (name.equals(Sigmoid.class.getName())) {
+            return new Activation(SIGMOID, transfer.getDouble("slope", 1d));
+        } else if (name.equals(Tanh.class.getName())) {
+            return new Activation(TANH, transfer.getDouble("slope", 2d), transfer.getDouble("amplitude", 1.7159d));
+        } else if (name.equals(Step.class.getName())) {
+            return new Activation(STEP, transfer.getDouble("yHigh", 1d), transfer.getDouble("yLow", 0d));
+        } else if (name.equals(Sgn.class.getName())) {
+            return new Activation(SGN);
+        } else if (name.equals(RectifiedLinear.class.getName())) {
+            return new Activation(RELU);
+        } else if (name.equals(Ramp.class.getName())) {
+            return new Activation(RAMP, transfer.getDouble("slope", 1d), transfer.getDouble("xLow", 0d),
+                    transfer.getDouble("xHigh", 1d), transfer.getDouble("yLow", 0d), transfer.getDouble("yHigh", 1d));
+        } else if (name.equals(Gaussian.class.getName())) {
+            return new Activation(GAUSSIAN, transfer.getDouble("sigma", 0.5d));
+        } else if (name.equals(Trapezoid.class.getName())) {
+            return new Activation(TRAPEZOID, transfer.getDouble("leftLow", 0d), transfer.getDouble("leftHigh", 1d),
+                    transfer.getDouble("rightLow", 3d), transfer.getDouble("rightHigh", 2d));
+        } else if (name.equals(Sin.class.getName())) {
+            return new Activation(SIN);
+        } else if (name.equals(Log.class.getName())) {
+            return new Activation(LOG);
+        }
+        throw new NeurophException("Transfer function " + name + " is not supported by compiled network!");
+    }
+
+    /**
+     * Applies function to values at positions from (inclusive) to (exclusive)
+     */
+    void apply(double[] values, int from, int to) {
+        switch (type) {
+            case LINEAR:
+                for (int i = from; i < to; i++) values[i] = p0 * values[i];
+                break;
+            case SIGMOID:
+                for (int i = from; i < to; i++) {
+                    double net = values[i];
+                    values[i] = net > 100 ? 1.0 : net < -100 ? 0.0 : 1d / (1d + Math.exp(-p0 * net));
+                }
+                break;
+            case TANH:
+                for (int i = from; i < to; i++) {
+                    double net = values[i];
+                    if (net > 100) {
+                        values[i] = 1.0;
+                    } else if (net < -100) {
+                        values[i] = -1.0;
+                    } else {
+                        double e = Math.exp(p0 * net);
+                        values[i] = p1 * ((e - 1d) / (e + 1d));
+                    }
+                }
+                break;
+            case RELU:
+                for (int i = from; i < to; i++) values[i] = Math.max(0, values[i]);
+                break;
+            default:
+                for (int i = from; i < to; i++) values[i] = apply(values[i]);
+        }
+    }
+
+    /**
+     * Returns function value for specified net input
+     */
+    double apply(double net) {
+        switch (type) {
+            case LINEAR:
+                return p0 * net;
+            case SIGMOID:
+                return net > 100 ? 1.0 : net < -100 ? 0.0 : 1d / (1d + Math.exp(-p0 * net));
+            case TANH:
+                if (net > 100) return 1.0;
+                if (net < -100) return -1.0;
+                double e = Math.exp(p0 * net);
+                return p1 * ((e - 1d) / (e + 1d));
+            case STEP:
+                return net > 0d ? p0 : p1;
+            case SGN:
+                return net > 0d ? 1d : -1d;
+            case RELU:
+                return Math.max(0, net);
+            case RAMP:
+                if (net < p1) return p3;
+                if (net > p2) return p4;
+                return p0 * net;
+            case GAUSSIAN:
+                return Math.exp(-Math.pow(net, 2) / (2 * Math.pow(p0, 2)));
+            case TRAPEZOID:
+                if (net >= p1 && net <= p3) return 1d;
+                if (net > p0 && net < p1) return (net - p0) / (p1 - p0);
+                if (net > p3 && net < p2) return (p2 - net) / (p2 - p3);
+                return 0d;
+            case SIN:
+                return Math.sin(net);
+            default:
+                return Math.log(net);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Activation)) {
+            return false;
+        }
+        Activation other = (Activation) obj;
+        return type == other.type && Double.compare(p0, other.p0) == 0 && Double.compare(p1, other.p1) == 0
+                && Double.compare(p2, other.p2) == 0 && Double.compare(p3, other.p3) == 0 && Double.compare(p4, other.p4) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new double[]{type, p0, p1, p2, p3, p4});
+    }
+}
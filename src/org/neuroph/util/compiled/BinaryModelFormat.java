@@ -0,0 +1,652 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Compact binary file format for neural networks. Instead of serializing each
+ * neuron, connection and weight object, file contains network topology
+ * (layers with groups of equal neurons, their types and function parameters,
+ * and connections between neurons) followed by all weights as one array, so
+ * networks are saved and loaded much faster and files are much smaller than
+ * with java serialization. Compiled network can be loaded directly from file,
+ * without creating network objects, and its weights can be memory mapped
+ * from file (see {@link #mapCompiled(String)}).
+ * <p/>
+ * File layout, all numbers are little endian:
+ * <pre>
+ *  0  magic bytes "NNMF"
+ *  4  format version (major 16 bits, minor 16 bits)
+ *  8  flags (bit 0: connections share weights)
+ * 12  topology section length in bytes
+ * 16  weights section offset (long, multiple of 8)
+ * 24  number of weights
+ * 28  number of connections
+ * 32  topology section
+ *     weights section: weights as 64 bit doubles
+ * </pre>
+ * Readers reject files with greater major version; data added in minor
+ * versions is appended to topology section, and older readers skip it.
+ * Component fields are stored by name, so files saved with different versions
+ * of network component classes can be read.
+ * <p/>
+ * Learning rule is restored with its simple settings (such as learning rate
+ * and max error) but without learning state and listeners; plugins are not
+ * stored. Convolutional networks are not supported.
+ * <p/>
+ * Model file names the classes of network components, and loading creates
+ * them with their no argument constructors and sets their stored fields. To
+ * keep untrusted files from creating arbitrary objects, only classes from
+ * org.neuroph packages and packages registered with
+ * {@link #allowPackage(String)} are loaded, and each class must extend the
+ * component type it is stored as; classes are checked before they are
+ * initialized. Files should still be loaded only from trusted sources, since
+ * allowed components run their constructors and field values are not
+ * validated.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class BinaryModelFormat {
+
+    /**
+     * Magic bytes at the start of binary model file
+     */
+    static final byte[] MAGIC = {'N', 'N', 'M', 'F'};
+
+    public static final int MAJOR_VERSION = 1;
+
+    public static final int MINOR_VERSION = 0;
+
+    /**
+     * Packages of component classes which can be loaded from model files
+     */
+    private static final Set<String> ALLOWED_PACKAGES = new CopyOnWriteArraySet<>(Arrays.asList("org.neuroph"));
+
+    static final int HEADER_SIZE = 32;
+
+    static final int FLAG_SHARED_WEIGHTS = 1;
+
+    /**
+     * Connection patterns of a neuron
+     */
+    private static final int NO_CONNECTIONS = 0, RANGE = 1, SAME_AS_PREVIOUS = 2, LIST = 3;
+
+    private BinaryModelFormat() {
+    }
+
+    /**
+     * Allows loading of network component classes from the specified package
+     * and its subpackages. Needed for networks with custom neurons, layers or
+     * functions from packages outside of org.neuroph.
+     *
+     * @param packageName package name, for example com.example.nnet
+     */
+    public static void allowPackage(String packageName) {
+        if (packageName == null || packageName.isEmpty()) {
+            throw new IllegalArgumentException("Package name cannot be empty!");
+        }
+        ALLOWED_PACKAGES.add(packageName);
+    }
+
+    /**
+     * Returns true if class with specified name belongs to allowed package
+     */
+    static boolean isAllowedClass(String className) {
+        for (String packageName : ALLOWED_PACKAGES) {
+            if (className.startsWith(packageName) && className.length() > packageName.length()
+                    && className.charAt(packageName.length()) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Saves neural network into the specified file
+     *
+     * @param network  network to save
+     * @param filePath file path to save network into
+     */
+    public static void save(NeuralNetwork<?> network, String filePath) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16)) {
+            write(ModelTopology.of(network), out);
+        } catch (IOException ex) {
+            throw new NeurophException("Could not write neural network to file!", ex);
+        }
+    }
+
+    /**
+     * Writes neural network to the specified stream. Stream is not closed.
+     *
+     * @param network network to save
+     * @param out     stream to write network to
+     */
+    public static void save(NeuralNetwork<?> network, OutputStream out) {
+        try {
+            write(ModelTopology.of(network), out);
+            out.flush();
+        } catch (IOException ex) {
+            throw new NeurophException("Could not write neural network!", ex);
+        }
+    }
+
+    /**
+     * Loads neural network from the specified binary model file. Only
+     * component classes from allowed packages are created, see
+     * {@link #allowPackage(String)}.
+     *
+     * @param filePath file path to load network from
+     * @return loaded neural network
+     */
+    public static NeuralNetwork<?> load(String filePath) {
+        return read(filePath).toNetwork();
+    }
+
+    /**
+     * Loads neural network from the specified stream. Only component classes
+     * from allowed packages are created, see {@link #allowPackage(String)}.
+     *
+     * @param in stream to read network from
+     * @return loaded neural network
+     */
+    public static NeuralNetwork<?> load(InputStream in) {
+        try {
+            return read(Channels.newChannel(in)).toNetwork();
+        } catch (IOException ex) {
+            throw new NeurophException("Could not read neural network file!", ex);
+        }
+    }
+
+    /**
+     * Loads compiled network from the specified binary model file, without
+     * creating neuron, connection and weight objects.
+     *
+     * @param filePath file path to load network from
+     * @return compiled network
+     */
+    public static CompiledNetwork loadCompiled(String filePath) {
+        return new CompiledNetwork(read(filePath));
+    }
+
+    /**
+     * Loads compiled network from the specified stream
+     *
+     * @param in stream to read network from
+     * @return compiled network
+     */
+    public static CompiledNetwork loadCompiled(InputStream in) {
+        try {
+            return new CompiledNetwork(read(Channels.newChannel(in)));
+        } catch (IOException ex) {
+            throw new NeurophException("Could not read neural network file!", ex);
+        }
+    }
+
+    /**
+     * Loads compiled network with weights mapped read only from the specified
+     * binary model file, instead of reading them into memory. Weights are read
+     * from operating system page cache, so processes which map the same model
+     * file share one copy of weights in memory, and loading takes about the same
+     * time regardless of network size. Model file should not be changed while
+     * it is mapped; to update model write new file and load it again.
+     * <p/>
+     * Networks with shared weights are loaded into memory, since compiled
+     * network keeps one weight for each connection.
+     *
+     * @param filePath file path to load network from
+     * @return compiled network with mapped weights
+     */
+    public static CompiledNetwork mapCompiled(String filePath) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            throw new NeurophException("Cannot find file: " + filePath, new FileNotFoundException(filePath));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            ModelTopology topology = readTopology(channel, header);
+            if (topology.weightIndex != null) {
+                topology.weights = readWeights(channel, header);
+                return new CompiledNetwork(topology);
+            }
+
+            long length = 8L * header.weightCount;
+            if (length > Integer.MAX_VALUE) {
+                throw new NeurophException("Network weights are too large to be mapped: " + filePath);
+            }
+            if (header.weightsOffset + length > channel.size()) {
+                throw new NeurophException("Corrupted binary model file!");
+            }
+            DoubleBuffer weights = channel.map(FileChannel.MapMode.READ_ONLY, header.weightsOffset, length)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            return new CompiledNetwork(topology, weights);
+        } catch (IOException ex) {
+            throw new NeurophException("Could not read neural network file!", ex);
+        }
+    }
+
+    /**
+     * Returns true if specified file starts with binary model magic bytes
+     *
+     * @param file file to check
+     * @return true if file is binary model
+     */
+    public static boolean isBinaryModel(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < magic.length) {
+                int count = in.read(magic, read, magic.length - read);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    private static ModelTopology read(String filePath) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            throw new NeurophException("Cannot find file: " + filePath, new FileNotFoundException(filePath));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel);
+        } catch (IOException ex) {
+            throw new NeurophException("Could not read neural network file!", ex);
+        }
+    }
+
+    static void write(ModelTopology topology, OutputStream out) throws IOException {
+        ModelOutput body = new ModelOutput();
+        writeTopology(topology, body);
+
+        int topologyLength = body.size();
+        long weightsOffset = align(HEADER_SIZE + (long) topologyLength);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(MAJOR_VERSION << 16 | MINOR_VERSION);
+        header.putInt(topology.weightIndex != null ? FLAG_SHARED_WEIGHTS : 0);
+        header.putInt(topologyLength);
+        header.putLong(weightsOffset);
+        header.putInt(topology.weights.length);
+        header.putInt(topology.getConnectionCount());
+
+        WritableByteChannel channel = Channels.newChannel(out);
+        header.flip();
+        writeFully(channel, header);
+        writeFully(channel, body.toByteBuffer());
+        writeFully(channel, ByteBuffer.allocate((int) (weightsOffset - HEADER_SIZE - topologyLength)));
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (double weight : topology.weights) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+            }
+            buffer.putDouble(weight);
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of binary model file!");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeTopology(ModelTopology topology, ModelOutput out) {
+        topology.network.write(out);
+        out.putString(topology.label);
+        out.putString(topology.networkType);
+        out.putByte(topology.learningRule != null ? 1 : 0);
+        if (topology.learningRule != null) {
+            topology.learningRule.write(out);
+        }
+
+        out.putInt(topology.layers.size());
+        for (ModelTopology.LayerSpec layer : topology.layers) {
+            layer.layer.write(out);
+            out.putString(layer.label);
+            out.putInt(layer.neuronCount);
+            out.putInt(layer.groups.size());
+            for (ModelTopology.NeuronGroup group : layer.groups) {
+                out.putInt(group.count);
+                group.neuron.write(out);
+                writeOptional(group.inputFunction, out);
+                writeOptional(group.transferFunction, out);
+            }
+            out.putInt(layer.neuronLabels.size());
+            for (Map.Entry<Integer, String> entry : layer.neuronLabels.entrySet()) {
+                out.putInt(entry.getKey());
+                out.putString(entry.getValue());
+            }
+        }
+
+        int[] start = topology.connectionStart;
+        int[] sources = topology.sources;
+        for (int i = 0; i < topology.neuronCount; i++) {
+            int from = start[i], to = start[i + 1], count = to - from;
+            if (count == 0) {
+                out.putByte(NO_CONNECTIONS);
+            } else if (i > 0 && sameSources(sources, start[i - 1], start[i], from, to)) {
+                out.putByte(SAME_AS_PREVIOUS);
+            } else if (isRange(sources, from, to)) {
+                out.putByte(RANGE);
+                out.putInt(sources[from]);
+                out.putInt(count);
+            } else {
+                out.putByte(LIST);
+                out.putInt(count);
+                out.putInts(sources, from, to);
+            }
+        }
+
+        out.putInt(topology.inputs.length);
+        out.putInts(topology.inputs, 0, topology.inputs.length);
+        out.putInt(topology.outputs.length);
+        out.putInts(topology.outputs, 0, topology.outputs.length);
+
+        if (topology.weightIndex != null) {
+            out.putInts(topology.weightIndex, 0, topology.weightIndex.length);
+        }
+    }
+
+    private static void writeOptional(ModelRecord record, ModelOutput out) {
+        out.putByte(record != null ? 1 : 0);
+        if (record != null) {
+            record.write(out);
+        }
+    }
+
+    private static boolean sameSources(int[] sources, int prevFrom, int prevTo, int from, int to) {
+        if (prevTo - prevFrom != to - from) {
+            return false;
+        }
+        for (int i = 0; i < to - from; i++) {
+            if (sources[prevFrom + i] != sources[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRange(int[] sources, int from, int to) {
+        for (int c = from + 1; c < to; c++) {
+            if (sources[c] != sources[c - 1] + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static ModelTopology read(ReadableByteChannel channel) throws IOException {
+        Header header = readHeader(channel);
+        ModelTopology topology = readTopology(channel, header);
+        topology.weights = readWeights(channel, header);
+        return topology;
+    }
+
+    private static Header readHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer);
+        return Header.read(buffer);
+    }
+
+    private static ModelTopology readTopology(ReadableByteChannel channel, Header header) throws IOException {
+        ByteBuffer body = ByteBuffer.allocate(header.topologyLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, body);
+        return readTopology(body, header);
+    }
+
+    /**
+     * Reads weights section, channel must be positioned after topology section
+     */
+    private static double[] readWeights(ReadableByteChannel channel, Header header) throws IOException {
+        readFully(channel, ByteBuffer.allocate((int) (header.weightsOffset - HEADER_SIZE - header.topologyLength)));
+        double[] weights = new double[header.weightCount];
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int w = 0; w < weights.length; ) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), 8 * (weights.length - w)));
+            readFully(channel, buffer);
+            int count = buffer.remaining() / 8;
+            buffer.asDoubleBuffer().get(weights, w, count);
+            w += count;
+        }
+        return weights;
+    }
+
+    /**
+     * Fixed size header at the start of binary model file
+     */
+    static final class Header {
+        int flags;
+        int topologyLength;
+        long weightsOffset;
+        int weightCount;
+        int connectionCount;
+
+        static Header read(ByteBuffer buffer) {
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw new NeurophException("Not a binary model file!");
+                }
+            }
+            int version = buffer.getInt();
+            if (version >>> 16 > MAJOR_VERSION) {
+                throw new NeurophException("Unsupported binary model version " + (version >>> 16) + "." + (version & 0xffff));
+            }
+            Header header = new Header();
+            header.flags = buffer.getInt();
+            header.topologyLength = buffer.getInt();
+            header.weightsOffset = buffer.getLong();
+            header.weightCount = buffer.getInt();
+            header.connectionCount = buffer.getInt();
+            if (header.topologyLength < 0 || header.weightsOffset < HEADER_SIZE + (long) header.topologyLength
+                    || header.weightCount < 0 || header.connectionCount < 0) {
+                throw new NeurophException("Corrupted binary model file!");
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Reads topology section, throws exception if it does not describe valid
+     * topology with the number of connections given in header
+     */
+    static ModelTopology readTopology(ByteBuffer in, Header header) {
+        try {
+            return parseTopology(in, header);
+        } catch (BufferUnderflowException ex) {
+            throw new NeurophException("Corrupted binary model file!", ex);
+        }
+    }
+
+    private static ModelTopology parseTopology(ByteBuffer in, Header header) {
+        ModelTopology topology = new ModelTopology();
+        topology.network = ModelRecord.read(in);
+        topology.label = ModelOutput.getString(in);
+        topology.networkType = ModelOutput.getString(in);
+        topology.learningRule = in.get() != 0 ? ModelRecord.read(in) : null;
+
+        int layerCount = in.getInt();
+        checkFormat(layerCount >= 0 && layerCount <= in.remaining());
+        int neuronCount = 0;
+        for (int l = 0; l < layerCount; l++) {
+            ModelRecord layer = ModelRecord.read(in);
+            String label = ModelOutput.getString(in);
+            int layerNeurons = in.getInt();
+            int groupCount = in.getInt();
+            checkFormat(layerNeurons >= 0 && groupCount >= 0 && groupCount <= in.remaining());
+            List<ModelTopology.NeuronGroup> groups = new ArrayList<>(groupCount);
+            int groupNeurons = 0;
+            for (int g = 0; g < groupCount; g++) {
+                int count = in.getInt();
+                checkFormat(count >= 0 && count <= layerNeurons - groupNeurons);
+                groupNeurons += count;
+                ModelRecord neuron = ModelRecord.read(in);
+                ModelRecord inputFunction = in.get() != 0 ? ModelRecord.read(in) : null;
+                ModelRecord transferFunction = in.get() != 0 ? ModelRecord.read(in) : null;
+                groups.add(new ModelTopology.NeuronGroup(count, neuron, inputFunction, transferFunction));
+            }
+            checkFormat(groupNeurons == layerNeurons);
+            int labelCount = in.getInt();
+            Map<Integer, String> labels = new LinkedHashMap<>();
+            for (int i = 0; i < labelCount; i++) {
+                int neuron = in.getInt();
+                checkFormat(neuron >= 0 && neuron < layerNeurons);
+                labels.put(neuron, ModelOutput.getString(in));
+            }
+            topology.layers.add(new ModelTopology.LayerSpec(layer, label, layerNeurons, groups, labels));
+            checkFormat(layerNeurons < Integer.MAX_VALUE - neuronCount);
+            neuronCount += layerNeurons;
+        }
+        topology.neuronCount = neuronCount;
+        // connection kind of each neuron takes at least one byte
+        checkFormat(neuronCount <= in.remaining());
+
+        int[] start = new int[neuronCount + 1];
+        int[] sources = new int[header.connectionCount];
+        int c = 0;
+        for (int i = 0; i < neuronCount; i++) {
+            start[i] = c;
+            int kind = in.get();
+            if (kind == RANGE) {
+                int first = in.getInt();
+                int count = in.getInt();
+                checkFormat(count >= 0 && count <= header.connectionCount - c);
+                for (int k = 0; k < count; k++) {
+                    sources[c++] = first + k;
+                }
+            } else if (kind == SAME_AS_PREVIOUS) {
+                checkFormat(i > 0);
+                int prevFrom = start[i - 1];
+                int count = start[i] - prevFrom;
+                checkFormat(count <= header.connectionCount - c);
+                System.arraycopy(sources, prevFrom, sources, c, count);
+                c += count;
+            } else if (kind == LIST) {
+                int count = in.getInt();
+                checkFormat(count >= 0 && count <= header.connectionCount - c);
+                for (int k = 0; k < count; k++) {
+                    sources[c++] = in.getInt();
+                }
+            } else if (kind != NO_CONNECTIONS) {
+                throw new NeurophException("Corrupted binary model file!");
+            }
+        }
+        start[neuronCount] = c;
+        if (c != header.connectionCount) {
+            throw new NeurophException("Corrupted binary model file!");
+        }
+        for (int source : sources) {
+            if (source < 0 || source >= neuronCount) {
+                throw new NeurophException("Corrupted binary model file!");
+            }
+        }
+        topology.connectionStart = start;
+        topology.sources = sources;
+
+        topology.inputs = readNeuronIndexes(in, neuronCount);
+        topology.outputs = readNeuronIndexes(in, neuronCount);
+
+        if ((header.flags & FLAG_SHARED_WEIGHTS) != 0) {
+            topology.weightIndex = readInts(in, header.connectionCount);
+            for (int idx : topology.weightIndex) {
+                if (idx < 0 || idx >= header.weightCount) {
+                    throw new NeurophException("Corrupted binary model file!");
+                }
+            }
+        } else if (header.weightCount != header.connectionCount) {
+            throw new NeurophException("Corrupted binary model file!");
+        }
+        return topology;
+    }
+
+    /**
+     * Reads count followed by that many neuron indexes
+     */
+    private static int[] readNeuronIndexes(ByteBuffer in, int neuronCount) {
+        int count = in.getInt();
+        checkFormat(count >= 0 && count <= in.remaining() / 4);
+        int[] indexes = readInts(in, count);
+        for (int idx : indexes) {
+            checkFormat(idx >= 0 && idx < neuronCount);
+        }
+        return indexes;
+    }
+
+    private static void checkFormat(boolean valid) {
+        if (!valid) {
+            throw new NeurophException("Corrupted binary model file!");
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+}
@@ -0,0 +1,469 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.input.WeightedSum;
+import org.neuroph.nnet.comp.neuron.BiasNeuron;
+import org.neuroph.nnet.comp.neuron.InputNeuron;
+
+/**
+ * Neural network compiled into flat arrays for fast inference. Neuron outputs
+ * are kept in one array, weights in another, and layers of neurons which are
+ * connected to the same range of neurons are calculated as dense matrix vector
+ * products, without neuron, connection and weight objects.
+ * <p/>
+ * Compiled network is immutable and can be shared between threads; each thread
+ * calculates outputs using its own {@link InferenceSession}. It gives the same
+ * output as the network it was created from, and can be created from network
+ * or loaded directly from binary model file (see {@link BinaryModelFormat}),
+ * optionally with weights memory mapped from the file.
+ * <p/>
+ * Supported are feed forward networks with input, bias and plain neurons with
+ * weighted sum input function and standard transfer functions (such as
+ * multi layer perceptron and adaline). Networks with other neuron types, like
+ * threshold neurons of perceptron, can't be compiled.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class CompiledNetwork {
+
+    /**
+     * Block of consecutive neurons connected to the same range of neurons
+     */
+    private static final int DENSE = 0;
+
+    /**
+     * Block of consecutive neurons with arbitrary connections
+     */
+    private static final int SPARSE = 1;
+
+    private final String label;
+
+    private final int neuronCount;
+
+    private final int[] inputs;
+
+    private final int[] outputs;
+
+    private final String[] outputLabels;
+
+    /**
+     * Indices of bias neurons, which have constant output 1
+     */
+    private final int[] biases;
+
+    /**
+     * Weight of each connection, connections of each neuron are consecutive
+     */
+    private final double[] weights;
+
+    /**
+     * Weights mapped from model file, used instead of weights array
+     */
+    private final DoubleBuffer mappedWeights;
+
+    /**
+     * Start of connections for each neuron (used only by sparse blocks)
+     */
+    private final int[] connectionStart;
+
+    /**
+     * Source neuron of each connection (used only by sparse blocks)
+     */
+    private final int[] sources;
+
+    private final int[] blockType, blockFirst, blockCount, blockSourceStart, blockSourceCount, blockWeightOffset;
+
+    private final Activation[] blockActivation;
+
+    /**
+     * Creates compiled network from topology description
+     */
+    CompiledNetwork(ModelTopology topology) {
+        this(topology, null);
+    }
+
+    /**
+     * Creates compiled network from topology description and weights mapped
+     * from model file
+     *
+     * @param mappedWeights weight of each connection, or null to use weights from topology
+     */
+    CompiledNetwork(ModelTopology topology, DoubleBuffer mappedWeights) {
+        this.label = topology.label;
+        this.neuronCount = topology.neuronCount;
+        this.inputs = topology.inputs;
+        this.outputs = topology.outputs;
+
+        int connectionCount = topology.getConnectionCount();
+        this.mappedWeights = mappedWeights;
+        if (mappedWeights != null) {
+            if (mappedWeights.capacity() != connectionCount) {
+                throw new NeurophException("Number of weights does not match number of connections!");
+            }
+            weights = null;
+        } else if (topology.weightIndex == null) {
+            weights = topology.weights;
+        } else {
+            weights = new double[connectionCount];
+            for (int c = 0; c < connectionCount; c++) {
+                weights[c] = topology.weights[topology.weightIndex[c]];
+            }
+        }
+
+        // kind of each neuron: input, bias or calculated with activation; like in
+        // network, outputs of calculated neurons replace the values set as input
+        Activation[] activations = new Activation[neuronCount];
+        List<Integer> biasList = new ArrayList<>();
+        String[] labels = new String[neuronCount];
+        int n = 0;
+        for (ModelTopology.LayerSpec layer : topology.layers) {
+            int first = n;
+            for (ModelTopology.NeuronGroup group : layer.groups) {
+                String neuronClass = group.neuron.getClassName();
+                Activation activation = null;
+                if (neuronClass.equals(Neuron.class.getName())) {
+                    if (group.inputFunction == null || !group.inputFunction.getClassName().equals(WeightedSum.class.getName())) {
+                        throw new NeurophException("Only weighted sum input function is supported by compiled network!");
+                    }
+                    activation = Activation.of(group.transferFunction);
+                } else if (!neuronClass.equals(InputNeuron.class.getName()) && !neuronClass.equals(BiasNeuron.class.getName())) {
+                    throw new NeurophException("Neuron type " + neuronClass + " is not supported by compiled network!");
+                }
+                for (int g = 0; g < group.count; g++, n++) {
+                    activations[n] = activation;
+                    if (neuronClass.equals(BiasNeuron.class.getName())) {
+                        biasList.add(n);
+                    }
+                }
+            }
+            for (Map.Entry<Integer, String> entry : layer.neuronLabels.entrySet()) {
+                labels[first + entry.getKey()] = entry.getValue();
+            }
+        }
+
+        biases = new int[biasList.size()];
+        for (int i = 0; i < biases.length; i++) {
+            biases[i] = biasList.get(i);
+        }
+
+        outputLabels = new String[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            outputLabels[i] = labels[outputs[i]];
+        }
+
+        // group calculated neurons into blocks
+        int[] start = topology.connectionStart;
+        int[] src = topology.sources;
+        List<int[]> blocks = new ArrayList<>();
+        List<Activation> blockActivations = new ArrayList<>();
+        boolean sparse = false;
+        int[] current = null;
+        for (int i = 0; i < neuronCount; i++) {
+            Activation activation = activations[i];
+            if (activation == null) {
+                current = null;
+                continue;
+            }
+
+            int count = start[i + 1] - start[i];
+            int sourceStart = count > 0 ? src[start[i]] : 0;
+            int maxSource = -1;
+            boolean range = true;
+            for (int c = start[i]; c < start[i + 1]; c++) {
+                if (src[c] >= i) {
+                    throw new NeurophException("Recurrent connections are not supported by compiled network!");
+                }
+                maxSource = Math.max(maxSource, src[c]);
+                range &= src[c] == sourceStart + (c - start[i]);
+            }
+            int type = range ? DENSE : SPARSE;
+            sparse |= !range;
+
+            // activation is applied to whole block, so neurons in block cannot be connected to each other
+            if (current != null && current[0] == type && current[1] + current[2] == i && maxSource < current[1]
+                    && blockActivations.get(blockActivations.size() - 1).equals(activation)
+                    && (type == SPARSE || (current[3] == sourceStart && current[4] == count))) {
+                current[2]++;
+            } else {
+                current = new int[]{type, i, 1, sourceStart, count, start[i]};
+                blocks.add(current);
+                blockActivations.add(activation);
+            }
+        }
+
+        int blockTotal = blocks.size();
+        blockType = new int[blockTotal];
+        blockFirst = new int[blockTotal];
+        blockCount = new int[blockTotal];
+        blockSourceStart = new int[blockTotal];
+        blockSourceCount = new int[blockTotal];
+        blockWeightOffset = new int[blockTotal];
+        blockActivation = blockActivations.toArray(new Activation[blockTotal]);
+        for (int b = 0; b < blockTotal; b++) {
+            int[] block = blocks.get(b);
+            blockType[b] = block[0];
+            blockFirst[b] = block[1];
+            blockCount[b] = block[2];
+            blockSourceStart[b] = block[3];
+            blockSourceCount[b] = block[4];
+            blockWeightOffset[b] = block[5];
+        }
+
+        connectionStart = sparse ? start : null;
+        sources = sparse ? src : null;
+    }
+
+    /**
+     * Compiles specified network
+     *
+     * @param network network to compile
+     * @return compiled network
+     * @throws NeurophException if network contains neurons, functions or
+     * connections which are not supported
+     */
+    public static CompiledNetwork compile(NeuralNetwork<?> network) {
+        return new CompiledNetwork(ModelTopology.of(network));
+    }
+
+    /**
+     * Creates new inference session for calculating outputs of this network.
+     * Sessions are not thread safe, each thread should use its own session.
+     *
+     * @return new inference session
+     */
+    public InferenceSession newSession() {
+        return new InferenceSession(this);
+    }
+
+    /**
+     * Calculates network output for specified input. This method creates new
+     * buffers on each call, use {@link InferenceSession} for repeated calls.
+     *
+     * @param input network input
+     * @return network output
+     */
+    public double[] predict(double... input) {
+        return newSession().predict(input).clone();
+    }
+
+    /**
+     * Calculates outputs of all neurons. Inputs and bias outputs must already
+     * be set in activations array.
+     */
+    void calculate(double[] activations) {
+        for (int b = 0; b < blockType.length; b++) {
+            int first = blockFirst[b];
+            int end = first + blockCount[b];
+            if (weights == null) {
+                calculateMapped(b, activations);
+            } else if (blockType[b] == DENSE) {
+                int sourceStart = blockSourceStart[b];
+                int sourceCount = blockSourceCount[b];
+                int w = blockWeightOffset[b];
+                for (int i = first; i < end; i++) {
+                    double sum = 0d;
+                    for (int s = sourceStart, s1 = sourceStart + sourceCount; s < s1; s++) {
+                        sum += activations[s] * weights[w++];
+                    }
+                    activations[i] = sum;
+                }
+            } else {
+                for (int i = first; i < end; i++) {
+                    double sum = 0d;
+                    for (int c = connectionStart[i]; c < connectionStart[i + 1]; c++) {
+                        sum += activations[sources[c]] * weights[c];
+                    }
+                    activations[i] = sum;
+                }
+            }
+            blockActivation[b].apply(activations, first, end);
+        }
+    }
+
+    /**
+     * Calculates outputs of all neurons for batch of samples, one activations
+     * array per sample. Each row of dense block weights is read once for the
+     * whole batch, while it is in cache, instead of once per sample.
+     *
+     * @param count number of samples in activations to calculate
+     */
+    void calculate(double[][] activations, int count) {
+        if (weights == null) {
+            for (int k = 0; k < count; k++) {
+                calculate(activations[k]);
+            }
+            return;
+        }
+        for (int b = 0; b < blockType.length; b++) {
+            int first = blockFirst[b];
+            int end = first + blockCount[b];
+            if (blockType[b] == DENSE) {
+                int sourceStart = blockSourceStart[b];
+                int sourceEnd = sourceStart + blockSourceCount[b];
+                int w = blockWeightOffset[b];
+                for (int i = first; i < end; i++, w += sourceEnd - sourceStart) {
+                    int k = 0;
+                    // four samples at a time, each weight is loaded once for all four
+                    for (; k + 4 <= count; k += 4) {
+                        double[] a0 = activations[k], a1 = activations[k + 1], a2 = activations[k + 2], a3 = activations[k + 3];
+                        double sum0 = 0d, sum1 = 0d, sum2 = 0d, sum3 = 0d;
+                        for (int s = sourceStart, c = w; s < sourceEnd; s++, c++) {
+                            double weight = weights[c];
+                            sum0 += a0[s] * weight;
+                            sum1 += a1[s] * weight;
+                            sum2 += a2[s] * weight;
+                            sum3 += a3[s] * weight;
+                        }
+                        a0[i] = sum0;
+                        a1[i] = sum1;
+                        a2[i] = sum2;
+                        a3[i] = sum3;
+                    }
+                    for (; k < count; k++) {
+                        double[] a = activations[k];
+                        double sum = 0d;
+                        for (int s = sourceStart, c = w; s < sourceEnd; s++) {
+                            sum += a[s] * weights[c++];
+                        }
+                        a[i] = sum;
+                    }
+                }
+            } else {
+                for (int k = 0; k < count; k++) {
+                    double[] a = activations[k];
+                    for (int i = first; i < end; i++) {
+                        double sum = 0d;
+                        for (int c = connectionStart[i]; c < connectionStart[i + 1]; c++) {
+                            sum += a[sources[c]] * weights[c];
+                        }
+                        a[i] = sum;
+                    }
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                blockActivation[b].apply(activations[k], first, end);
+            }
+        }
+    }
+
+    /**
+     * Calculates weighted sums of neurons in block using mapped weights
+     */
+    private void calculateMapped(int b, double[] activations) {
+        DoubleBuffer weights = mappedWeights;
+        int first = blockFirst[b];
+        int end = first + blockCount[b];
+        if (blockType[b] == DENSE) {
+            int sourceStart = blockSourceStart[b];
+            int sourceCount = blockSourceCount[b];
+            int w = blockWeightOffset[b];
+            for (int i = first; i < end; i++) {
+                double sum = 0d;
+                for (int s = sourceStart, s1 = sourceStart + sourceCount; s < s1; s++) {
+                    sum += activations[s] * weights.get(w++);
+                }
+                activations[i] = sum;
+            }
+        } else {
+            for (int i = first; i < end; i++) {
+                double sum = 0d;
+                for (int c = connectionStart[i]; c < connectionStart[i + 1]; c++) {
+                    sum += activations[sources[c]] * weights.get(c);
+                }
+                activations[i] = sum;
+            }
+        }
+    }
+
+    int getNeuronCount() {
+        return neuronCount;
+    }
+
+    int[] getInputIndices() {
+        return inputs;
+    }
+
+    int[] getOutputIndices() {
+        return outputs;
+    }
+
+    int[] getBiasIndices() {
+        return biases;
+    }
+
+    public int getInputsCount() {
+        return inputs.length;
+    }
+
+    public int getOutputsCount() {
+        return outputs.length;
+    }
+
+    /**
+     * Returns number of connection weights
+     *
+     * @return number of weights
+     */
+    public int getWeightsCount() {
+        return weights != null ? weights.length : mappedWeights.capacity();
+    }
+
+    /**
+     * Returns estimated heap memory used by this network in bytes. Mapped
+     * weights are not counted, since they are kept in page cache.
+     *
+     * @return estimated memory size in bytes
+     */
+    public long getMemorySize() {
+        long size = 256; // object headers and fields
+        size += weights != null ? 8L * weights.length : 0;
+        size += 4L * (inputs.length + outputs.length + biases.length);
+        size += connectionStart != null ? 4L * (connectionStart.length + sources.length) : 0;
+        size += 6L * 4 * blockType.length + 8L * blockActivation.length;
+        size += 8L * outputLabels.length;
+        return size;
+    }
+
+    /**
+     * Returns true if weights of this network are memory mapped from model file
+     *
+     * @return true if weights are mapped
+     */
+    public boolean isMapped() {
+        return mappedWeights != null;
+    }
+
+    /**
+     * Returns labels of output neurons (null for neurons without label)
+     *
+     * @return output labels
+     */
+    public String[] getOutputLabels() {
+        return outputLabels.clone();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.util.Arrays;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * Calculates outputs of compiled network using its own buffers, so repeated
+ * calculations do not create any objects. Session is not thread safe; threads
+ * which use the same compiled network should each create their own session.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class InferenceSession {
+
+    private final CompiledNetwork network;
+
+    /**
+     * Outputs of all neurons
+     */
+    private final double[] activations;
+
+    private final double[] output;
+
+    /**
+     * Outputs of all neurons for each sample of a batch, created on first
+     * batch and grown for larger batches
+     */
+    private double[][] batchActivations = new double[0][];
+
+    InferenceSession(CompiledNetwork network) {
+        this.network = network;
+        this.activations = new double[network.getNeuronCount()];
+        this.output = new double[network.getOutputsCount()];
+        for (int idx : network.getBiasIndices()) {
+            activations[idx] = 1d;
+        }
+    }
+
+    public CompiledNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Calculates network output for specified input. Returned array is reused
+     * by this session, and is overwritten by the next call.
+     *
+     * @param input network input
+     * @return network output
+     */
+    public double[] predict(double... input) {
+        predict(input, output);
+        return output;
+    }
+
+    /**
+     * Calculates network output for specified input into given array
+     *
+     * @param input  network input
+     * @param output array for network output
+     */
+    public void predict(double[] input, double[] output) {
+        int[] inputs = network.getInputIndices();
+        if (input.length != inputs.length) {
+            throw new VectorSizeMismatchException("Input vector size does not match network input dimension!");
+        }
+        int[] outputs = network.getOutputIndices();
+        if (output.length != outputs.length) {
+            throw new VectorSizeMismatchException("Output vector size does not match network output dimension!");
+        }
+
+        for (int i = 0; i < inputs.length; i++) {
+            activations[inputs[i]] = input[i];
+        }
+        network.calculate(activations);
+        for (int i = 0; i < outputs.length; i++) {
+            output[i] = activations[outputs[i]];
+        }
+    }
+
+    /**
+     * Calculates network outputs for batch of inputs in one pass through the
+     * network, which is faster than calculating inputs one by one
+     *
+     * @param inputs  network inputs
+     * @param outputs arrays for network outputs, one for each input
+     * @param count   number of inputs to calculate
+     */
+    public void predict(double[][] inputs, double[][] outputs, int count) {
+        int[] inputIdx = network.getInputIndices();
+        int[] outputIdx = network.getOutputIndices();
+        for (int k = 0; k < count; k++) {
+            if (inputs[k].length != inputIdx.length) {
+                throw new VectorSizeMismatchException("Input vector size does not match network input dimension!");
+            }
+            if (outputs[k].length != outputIdx.length) {
+                throw new VectorSizeMismatchException("Output vector size does not match network output dimension!");
+            }
+        }
+
+        if (batchActivations.length < count) {
+            double[][] grown = Arrays.copyOf(batchActivations, count);
+            for (int k = batchActivations.length; k < count; k++) {
+                grown[k] = new double[activations.length];
+                for (int idx : network.getBiasIndices()) {
+                    grown[k][idx] = 1d;
+                }
+            }
+            batchActivations = grown;
+        }
+
+        for (int k = 0; k < count; k++) {
+            for (int i = 0; i < inputIdx.length; i++) {
+                batchActivations[k][inputIdx[i]] = inputs[k][i];
+            }
+        }
+        network.calculate(batchActivations, count);
+        for (int k = 0; k < count; k++) {
+            for (int i = 0; i < outputIdx.length; i++) {
+                outputs[k][i] = batchActivations[k][outputIdx[i]];
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Growable little endian buffer used to encode model topology.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+final class ModelOutput {
+
+    private ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    void putByte(int value) {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    void putShort(int value) {
+        ensure(2);
+        buffer.putShort((short) value);
+    }
+
+    void putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void putFloat(float value) {
+        ensure(4);
+        buffer.putFloat(value);
+    }
+
+    void putDouble(double value) {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    void putInts(int[] values, int from, int to) {
+        ensure(4 * (to - from));
+        for (int i = from; i < to; i++) {
+            buffer.putInt(values[i]);
+        }
+    }
+
+    /**
+     * Writes string as length followed by UTF-8 bytes, null is written as length -1
+     */
+    void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads string written by {@link #putString(String)}
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Returns buffer with written bytes, ready for reading
+     */
+    ByteBuffer toByteBuffer() {
+        ByteBuffer result = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        result.flip();
+        return result;
+    }
+}
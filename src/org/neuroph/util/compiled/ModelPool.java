@@ -0,0 +1,314 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.exceptions.NeurophException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves many models from disk, keeping only recently used ones in memory.
+ * Model is loaded on first use and compiled (see {@link CompiledNetwork}), so
+ * only its compact form stays in memory, without neuron, connection and
+ * weight objects. When estimated memory of loaded models (see
+ * {@link CompiledNetwork#getMemorySize()}) exceeds the memory budget, least
+ * recently used models are evicted, and loaded again on next use.
+ * <p/>
+ * Threads which request the same model while it is being loaded wait for that
+ * load, so each model is loaded once. Requests which already got evicted
+ * model finish on it.
+ * <pre>
+ * ModelPool pool = new ModelPool(new File("models"), ".nnet", 512 * 1024 * 1024);
+ * double[] output = pool.predict("customer-42", input);
+ * </pre>
+ * Model files can be binary model files (see {@link BinaryModelFormat}),
+ * which are loaded without creating network objects, or serialized networks.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class ModelPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelPool.class);
+
+    /**
+     * Finds model file for model name
+     */
+    private final Function<String, File> locator;
+
+    private final long maxMemory;
+
+    private boolean mapWeights;
+
+    /**
+     * Loaded and loading models in access order
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Estimated memory of loaded models
+     */
+    private long memory;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Model in pool
+     */
+    private static class Entry {
+
+        final CompletableFuture<ModelVersion> model = new CompletableFuture<>();
+
+        /**
+         * Estimated memory, or -1 while model is loading
+         */
+        long size = -1;
+    }
+
+    /**
+     * Creates pool of models stored in specified directory, each in file
+     * named as model with specified extension
+     *
+     * @param directory model directory
+     * @param extension model file extension, for example ".nnet"
+     * @param maxMemory memory budget for loaded models in bytes
+     */
+    public ModelPool(File directory, String extension, long maxMemory) {
+        this(name -> new File(directory, name + extension), maxMemory);
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+    }
+
+    /**
+     * Creates pool of models stored in files found by specified locator
+     *
+     * @param locator   returns model file for model name
+     * @param maxMemory memory budget for loaded models in bytes
+     */
+    public ModelPool(Function<String, File> locator, long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive!");
+        }
+        this.locator = locator;
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Sets whether weights of binary model files are memory mapped (see
+     * {@link BinaryModelFormat#mapCompiled(String)}) instead of read into
+     * memory. Mapped weights are not counted in memory budget.
+     *
+     * @param mapWeights true to map weights
+     */
+    public void setMapWeights(boolean mapWeights) {
+        this.mapWeights = mapWeights;
+    }
+
+    public boolean isMapWeights() {
+        return mapWeights;
+    }
+
+    /**
+     * Returns the model, loading it if it is not in memory
+     *
+     * @param name model name
+     * @return loaded model
+     * @throws NeurophException if model can't be loaded
+     */
+    public ModelVersion get(String name) {
+        if (name == null || name.isEmpty() || name.contains("/") || name.contains("\\") || name.contains("..")) {
+            throw new IllegalArgumentException("Invalid model name: " + name);
+        }
+
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(name);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(name, entry);
+                load = true;
+            }
+        }
+
+        if (!load) {
+            hits.increment();
+            try {
+                return entry.model.join();
+            } catch (CompletionException ex) {
+                // failure is shared by all waiters, so each one gets its own stack trace
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                throw new NeurophException("Could not load model " + name + ": " + cause.getMessage(), cause);
+            }
+        }
+
+        loads.increment();
+        ModelVersion model;
+        try {
+            model = load(name);
+            synchronized (this) {
+                entry.size = model.getNetwork().getMemorySize();
+                memory += entry.size;
+                evict(entry);
+            }
+        } catch (Throwable ex) { // also errors, waiters must not block forever
+            synchronized (this) {
+                if (entries.remove(name, entry) && entry.size >= 0) { // next request tries again
+                    memory -= entry.size;
+                }
+            }
+            entry.model.completeExceptionally(ex);
+            throw ex;
+        }
+        entry.model.complete(model);
+        return model;
+    }
+
+    private ModelVersion load(String name) {
+        File file = locator.apply(name);
+        if (file == null || !file.isFile()) {
+            throw new NeurophException("Model file not found for model " + name);
+        }
+        CompiledNetwork network;
+        if (BinaryModelFormat.isBinaryModel(file)) {
+            network = mapWeights ? BinaryModelFormat.mapCompiled(file.getPath()) : BinaryModelFormat.loadCompiled(file.getPath());
+        } else {
+            network = CompiledNetwork.compile(NeuralNetwork.createFromFile(file));
+        }
+        LOGGER.debug("Loaded model " + name + " from " + file);
+        return new ModelVersion(name, 1, network, file);
+    }
+
+    /**
+     * Evicts least recently used models until loaded models fit in memory
+     * budget. Models which are loading and the specified model are kept.
+     */
+    private void evict(Entry keep) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (memory > maxMemory && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry != keep && entry.size >= 0) {
+                it.remove();
+                memory -= entry.size;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Calculates output of the model, using pooled inference session
+     *
+     * @param name  model name
+     * @param input model input
+     * @return model output
+     */
+    public double[] predict(String name, double... input) {
+        return get(name).getSessionPool().predict(input);
+    }
+
+    /**
+     * Removes the model from memory, so it is loaded from file again on next
+     * use
+     *
+     * @param name model name
+     */
+    public synchronized void remove(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null && entry.size >= 0) {
+            entries.remove(name);
+            memory -= entry.size;
+        }
+    }
+
+    /**
+     * Returns true if model is loaded in memory
+     *
+     * @param name model name
+     * @return true if model is loaded
+     */
+    public synchronized boolean isLoaded(String name) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) { // get would change access order
+            if (entry.getKey().equals(name)) {
+                return entry.getValue().size >= 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns number of models in memory, including models being loaded
+     *
+     * @return number of loaded models
+     */
+    public synchronized int getLoadedCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns estimated memory of loaded models in bytes
+     *
+     * @return memory of loaded models
+     */
+    public synchronized long getMemoryUsage() {
+        return memory;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Returns number of requests for models which were already loaded or
+     * loading
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of model loads
+     *
+     * @return number of loads
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Returns number of models evicted to fit in memory budget
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.neuroph.core.Connection;
+import org.neuroph.core.Layer;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.input.InputFunction;
+import org.neuroph.core.transfer.TransferFunction;
+
+/**
+ * Class name and values of simple fields (primitives, strings and enums) of a
+ * network component. Fields are stored by name, so records remain readable when
+ * fields are added to or removed from component classes: unknown fields are
+ * ignored and missing fields keep the values set by the constructor.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+final class ModelRecord {
+
+    private static final byte DOUBLE = 'D', FLOAT = 'F', LONG = 'J', INT = 'I', SHORT = 'S', BYTE = 'B',
+            CHAR = 'C', BOOLEAN = 'Z', STRING = 'T', ENUM = 'E';
+
+    private static final Map<Class<?>, Byte> TYPE_CODES = new HashMap<>();
+
+    static {
+        TYPE_CODES.put(double.class, DOUBLE);
+        TYPE_CODES.put(float.class, FLOAT);
+        TYPE_CODES.put(long.class, LONG);
+        TYPE_CODES.put(int.class, INT);
+        TYPE_CODES.put(short.class, SHORT);
+        TYPE_CODES.put(byte.class, BYTE);
+        TYPE_CODES.put(char.class, CHAR);
+        TYPE_CODES.put(boolean.class, BOOLEAN);
+        TYPE_CODES.put(String.class, STRING);
+    }
+
+    /**
+     * Base classes of network components, their fields are stored by the graph itself
+     */
+    private static final Class<?>[] BASE_CLASSES = {Neuron.class, Layer.class, NeuralNetwork.class,
+        InputFunction.class, TransferFunction.class, Object.class};
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> result = new ArrayList<>();
+            for (Class<?> c = type; c != null && !isBaseClass(c); c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    result.add(field);
+                }
+            }
+            return result.toArray(new Field[result.size()]);
+        }
+    };
+
+    private static boolean isBaseClass(Class<?> type) {
+        for (Class<?> base : BASE_CLASSES) {
+            if (type == base) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final String className;
+
+    private final Map<String, Object> fields;
+
+    ModelRecord(String className, Map<String, Object> fields) {
+        this.className = className;
+        this.fields = fields;
+    }
+
+    boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns value of numeric field, or default value if record does not have it
+     */
+    double getDouble(String name, double defaultValue) {
+        Object value = fields.get(name);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    /**
+     * Creates record for the specified object with fields declared in its class
+     * and superclasses below the base component class. Fields which refer to other parts of the
+     * network graph (neurons, connections, layers and collections of them) are
+     * not stored since they are restored with the graph.
+     *
+     * @param object  object to describe
+     * @param lenient if true fields of unsupported types are skipped, otherwise
+     *                  exception is thrown
+     */
+    static ModelRecord of(Object object, boolean lenient) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Field field : FIELDS.get(object.getClass())) {
+            Object value;
+            try {
+                value = field.get(object);
+            } catch (IllegalAccessException ex) {
+                throw new NeurophException("Cannot read field " + field.getName() + " of " + object.getClass().getName(), ex);
+            }
+
+            if (value == null || TYPE_CODES.containsKey(field.getType()) || value instanceof Enum) {
+                if (value != null) {
+                    values.put(field.getName(), value);
+                }
+            } else if (!lenient && !isGraphReference(value)) {
+                throw new NeurophException("Field " + field.getName() + " of " + object.getClass().getName()
+                        + " cannot be stored in binary model format!");
+            }
+        }
+        return new ModelRecord(object.getClass().getName(), values);
+    }
+
+    private static boolean isGraphReference(Object value) {
+        return value instanceof Neuron || value instanceof Connection || value instanceof Layer
+                || value instanceof NeuralNetwork || value instanceof Collection || value instanceof Map;
+    }
+
+    /**
+     * Sets stored field values to the specified object
+     */
+    void applyTo(Object object) {
+        if (fields.isEmpty()) {
+            return;
+        }
+        for (Field field : FIELDS.get(object.getClass())) {
+            Object value = fields.get(field.getName());
+            if (value == null) {
+                continue;
+            }
+            try {
+                if (field.getType().isEnum()) {
+                    Object constant = value instanceof String ? enumValue(field.getType(), (String) value) : null;
+                    if (constant != null) {
+                        field.set(object, constant);
+                    } else if (field.getType().isInstance(value)) {
+                        field.set(object, value);
+                    }
+                } else if (field.getType().isPrimitive() ? TYPE_CODES.get(field.getType()) == typeCode(value) : field.getType().isInstance(value)) {
+                    field.set(object, value);
+                }
+            } catch (IllegalAccessException | IllegalArgumentException ex) {
+                // field has changed type, keep the value set by constructor
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+        try {
+            return Enum.valueOf((Class<? extends Enum>) type, name);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates new instance of the recorded class with stored field values,
+     * using no argument constructor of the class.
+     *
+     * @param baseClass base class of the recorded class
+     */
+    <T> T newInstance(Class<T> baseClass) {
+        T instance = instantiate(loadClass(baseClass));
+        applyTo(instance);
+        return instance;
+    }
+
+    /**
+     * Loads the recorded class without initializing it. Only classes from
+     * packages allowed by {@link BinaryModelFormat#isAllowedClass(String)}
+     * which extend the specified base class are loaded, so model file cannot
+     * run static initializer of any other class.
+     *
+     * @param baseClass base class of the recorded class
+     */
+    <T> Class<? extends T> loadClass(Class<T> baseClass) {
+        if (!BinaryModelFormat.isAllowedClass(className)) {
+            throw new NeurophException("Class " + className + " is not allowed in binary model!");
+        }
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, baseClass.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            throw new NeurophException("Cannot load class " + className + " from binary model!", ex);
+        }
+        if (!baseClass.isAssignableFrom(type)) {
+            throw new NeurophException("Class " + className + " is not " + baseClass.getName() + "!");
+        }
+        return type.asSubclass(baseClass);
+    }
+
+    /**
+     * Creates instance of the specified class with its no argument constructor
+     */
+    static <T> T instantiate(Class<? extends T> type) {
+        try {
+            Constructor<? extends T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (NoSuchMethodException ex) {
+            throw new NeurophException("Cannot create instance of " + type.getName()
+                    + ", class has no default constructor!", ex);
+        } catch (ReflectiveOperationException ex) {
+            throw new NeurophException("Cannot create instance of " + type.getName(), ex);
+        }
+    }
+
+    private static byte typeCode(Object value) {
+        if (value instanceof Enum) {
+            return ENUM;
+        }
+        Byte code = TYPE_CODES.get(primitiveType(value.getClass()));
+        if (code == null) {
+            throw new NeurophException("Unsupported field type: " + value.getClass().getName());
+        }
+        return code;
+    }
+
+    private static Class<?> primitiveType(Class<?> type) {
+        if (type == Double.class) return double.class;
+        if (type == Float.class) return float.class;
+        if (type == Long.class) return long.class;
+        if (type == Integer.class) return int.class;
+        if (type == Short.class) return short.class;
+        if (type == Byte.class) return byte.class;
+        if (type == Character.class) return char.class;
+        if (type == Boolean.class) return boolean.class;
+        return type;
+    }
+
+    void write(ModelOutput out) {
+        out.putString(className);
+        out.putShort(fields.size());
+        for (Map.Entry<String, Object> entry : fields.entrySet()) {
+            Object value = entry.getValue();
+            byte code = typeCode(value);
+            out.putString(entry.getKey());
+            out.putByte(code);
+            switch (code) {
+                case DOUBLE: out.putDouble((Double) value); break;
+                case FLOAT: out.putFloat((Float) value); break;
+                case LONG: out.putLong((Long) value); break;
+                case INT: out.putInt((Integer) value); break;
+                case SHORT: out.putShort((Short) value); break;
+                case BYTE: out.putByte((Byte) value); break;
+                case CHAR: out.putShort((Character) value); break;
+                case BOOLEAN: out.putByte((Boolean) value ? 1 : 0); break;
+                case ENUM: out.putString(((Enum<?>) value).name()); break;
+                default: out.putString((String) value);
+            }
+        }
+    }
+
+    static ModelRecord read(ByteBuffer in) {
+        String className = ModelOutput.getString(in);
+        if (className == null) {
+            throw new NeurophException("Corrupted binary model file!");
+        }
+        int fieldCount = in.getShort() & 0xffff;
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            String name = ModelOutput.getString(in);
+            byte code = in.get();
+            Object value;
+            switch (code) {
+                case DOUBLE: value = in.getDouble(); break;
+                case FLOAT: value = in.getFloat(); break;
+                case LONG: value = in.getLong(); break;
+                case INT: value = in.getInt(); break;
+                case SHORT: value = in.getShort(); break;
+                case BYTE: value = in.get(); break;
+                case CHAR: value = (char) in.getShort(); break;
+                case BOOLEAN: value = in.get() != 0; break;
+                case ENUM:
+                case STRING: value = ModelOutput.getString(in); break;
+                default: throw new NeurophException("Unknown field type in binary model: " + code);
+            }
+            fields.put(name, value);
+        }
+        return new ModelRecord(className, fields);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ModelRecord)) {
+            return false;
+        }
+        ModelRecord other = (ModelRecord) obj;
+        return className.equals(other.className) && fields.equals(other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * className.hashCode() + fields.hashCode();
+    }
+}
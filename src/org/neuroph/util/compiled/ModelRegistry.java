@@ -0,0 +1,272 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.exceptions.NeurophException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds named compiled networks for live serving, and lets new versions of
+ * models be published while the process keeps serving predictions.
+ * <p/>
+ * Publishing replaces the current version of the model atomically. Reading
+ * the current version takes no locks, and requests which already got the old
+ * version finish on it; old version is garbage collected when no request uses
+ * it anymore. Each request should get the version once and use its network for
+ * the whole request:
+ * <pre>
+ * ModelVersion model = registry.get("iris");
+ * double[] output = model.getNetwork().predict(input);
+ * </pre>
+ * Registry can also watch a model directory (see {@link #watch(File, long)}).
+ * Each binary model file (see {@link BinaryModelFormat}) or serialized network
+ * file (.nnet) in the directory is published under the file name without
+ * extension, and published again when the file changes. Files which can't be
+ * loaded (for example while they are being written) are skipped, and the
+ * current version keeps being served until the file loads. Model files should
+ * be replaced by writing new file and renaming it over the old one.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class ModelRegistry implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelRegistry.class);
+
+    /**
+     * Current version of each model
+     */
+    private final ConcurrentHashMap<String, ModelVersion> models = new ConcurrentHashMap<>();
+
+    /**
+     * If true weights of model files are memory mapped
+     */
+    private final boolean mapWeights;
+
+    /**
+     * Watched model directory
+     */
+    private File directory;
+
+    /**
+     * Last modification time and size of each loaded model file
+     */
+    private final Map<File, long[]> loadedFiles = new HashMap<>();
+
+    private Thread watcher;
+
+    /**
+     * Creates empty registry which reads weights of model files into memory
+     */
+    public ModelRegistry() {
+        this(false);
+    }
+
+    /**
+     * Creates empty registry
+     *
+     * @param mapWeights if true weights of binary model files are memory mapped
+     * (see {@link BinaryModelFormat#mapCompiled(String)}) instead of read into
+     * memory. Mapped model files must never be overwritten in place.
+     */
+    public ModelRegistry(boolean mapWeights) {
+        this.mapWeights = mapWeights;
+    }
+
+    /**
+     * Compiles and publishes specified network as new version of the model
+     *
+     * @param name    model name
+     * @param network trained network
+     * @return published version
+     */
+    public ModelVersion publish(String name, NeuralNetwork<?> network) {
+        return publish(name, CompiledNetwork.compile(network));
+    }
+
+    /**
+     * Publishes specified network as new version of the model. Requests which
+     * already got the previous version finish on it.
+     *
+     * @param name    model name
+     * @param network compiled network
+     * @return published version
+     */
+    public ModelVersion publish(String name, CompiledNetwork network) {
+        return publish(name, network, null);
+    }
+
+    private ModelVersion publish(String name, CompiledNetwork network, File source) {
+        if (name == null || network == null) {
+            throw new IllegalArgumentException("Model name and network can't be null!");
+        }
+        ModelVersion published = models.compute(name,
+                (key, current) -> new ModelVersion(key, current == null ? 1 : current.getVersion() + 1, network, source));
+        LOGGER.info("Published model " + published);
+        return published;
+    }
+
+    /**
+     * Returns current version of the model, or null if model is not published
+     *
+     * @param name model name
+     * @return current model version or null
+     */
+    public ModelVersion get(String name) {
+        return models.get(name);
+    }
+
+    /**
+     * Calculates output of the current version of the model, using pooled
+     * inference session of the version (see {@link ModelVersion#getSessionPool()}).
+     *
+     * @param name  model name
+     * @param input network input
+     * @return network output
+     * @throws NeurophException if model is not published
+     */
+    public double[] predict(String name, double... input) {
+        ModelVersion model = models.get(name);
+        if (model == null) {
+            throw new NeurophException("Model is not published: " + name);
+        }
+        return model.getSessionPool().predict(input);
+    }
+
+    /**
+     * Removes the model from registry. Requests which already got the model
+     * finish on it.
+     *
+     * @param name model name
+     * @return removed version, or null if model was not published
+     */
+    public ModelVersion remove(String name) {
+        return models.remove(name);
+    }
+
+    /**
+     * Returns names of all published models
+     *
+     * @return model names
+     */
+    public Set<String> getNames() {
+        return models.keySet();
+    }
+
+    /**
+     * Publishes all models from specified directory and starts background
+     * thread which checks the directory every intervalMillis milliseconds, and
+     * publishes new version of each model whose file has changed. Models whose
+     * files are deleted keep being served.
+     *
+     * @param directory      model directory
+     * @param intervalMillis time between directory checks in milliseconds
+     */
+    public synchronized void watch(File directory, long intervalMillis) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive!");
+        }
+        if (watcher != null) {
+            throw new IllegalStateException("Registry already watches directory " + this.directory);
+        }
+
+        this.directory = directory;
+        scan();
+
+        watcher = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(intervalMillis);
+                    scan();
+                }
+            } catch (InterruptedException ex) {
+                // registry was closed
+            }
+        }, "ModelRegistry watcher: " + directory.getName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Checks watched directory now, and publishes models whose files have
+     * changed since the last check
+     */
+    public synchronized void scan() {
+        if (directory == null) {
+            throw new IllegalStateException("Registry does not watch any directory!");
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            LOGGER.warn("Could not list model directory " + directory);
+            return;
+        }
+
+        for (File file : files) {
+            boolean binary = BinaryModelFormat.isBinaryModel(file);
+            if (!binary && !(file.isFile() && file.getName().endsWith(".nnet"))) {
+                continue;
+            }
+
+            long[] state = {file.lastModified(), file.length()};
+            long[] loaded = loadedFiles.get(file);
+            if (loaded != null && loaded[0] == state[0] && loaded[1] == state[1]) {
+                continue;
+            }
+
+            try {
+                CompiledNetwork network;
+                if (binary) {
+                    network = mapWeights ? BinaryModelFormat.mapCompiled(file.getPath()) : BinaryModelFormat.loadCompiled(file.getPath());
+                } else {
+                    network = CompiledNetwork.compile(NeuralNetwork.createFromFile(file));
+                }
+                loadedFiles.put(file, state);
+                publish(modelName(file), network, file);
+            } catch (RuntimeException ex) {
+                // file may be still being written, try again on next check
+                LOGGER.warn("Could not load model file " + file + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops watching model directory. Published models stay available.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private static String modelName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+}
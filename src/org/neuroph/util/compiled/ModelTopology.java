@@ -0,0 +1,368 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.neuroph.core.Connection;
+import org.neuroph.core.Layer;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.input.InputFunction;
+import org.neuroph.core.learning.LearningRule;
+import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.nnet.comp.layer.FeatureMapsLayer;
+import org.neuroph.util.NeuralNetworkType;
+
+/**
+ * Flat description of neural network structure: layers with groups of equal
+ * neurons, connections as arrays of neuron indices and weights as one array.
+ * It is created from network or read from binary model file, and used to
+ * write binary models, rebuild networks and create compiled networks.
+ * Neurons are indexed in order of layers and neurons within layers.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+final class ModelTopology {
+
+    /**
+     * Consecutive neurons in layer with the same type and functions
+     */
+    static final class NeuronGroup {
+        final int count;
+        final ModelRecord neuron;
+        final ModelRecord inputFunction;
+        final ModelRecord transferFunction;
+
+        NeuronGroup(int count, ModelRecord neuron, ModelRecord inputFunction, ModelRecord transferFunction) {
+            this.count = count;
+            this.neuron = neuron;
+            this.inputFunction = inputFunction;
+            this.transferFunction = transferFunction;
+        }
+    }
+
+    static final class LayerSpec {
+        final ModelRecord layer;
+        final String label;
+        final int neuronCount;
+        final List<NeuronGroup> groups;
+        /**
+         * Neuron labels by index of neuron in layer
+         */
+        final Map<Integer, String> neuronLabels;
+
+        LayerSpec(ModelRecord layer, String label, int neuronCount, List<NeuronGroup> groups, Map<Integer, String> neuronLabels) {
+            this.layer = layer;
+            this.label = label;
+            this.neuronCount = neuronCount;
+            this.groups = groups;
+            this.neuronLabels = neuronLabels;
+        }
+    }
+
+    ModelRecord network;
+    ModelRecord learningRule;
+    String label;
+    String networkType;
+    List<LayerSpec> layers = new ArrayList<>();
+    int neuronCount;
+
+    /**
+     * Connections of neuron i are at positions connectionStart[i] to connectionStart[i+1]
+     */
+    int[] connectionStart;
+
+    /**
+     * Index of neuron which each connection comes from
+     */
+    int[] sources;
+
+    /**
+     * Weight values, one for each connection or one for each shared weight
+     */
+    double[] weights;
+
+    /**
+     * Index of weight for each connection when weights are shared, otherwise null
+     */
+    int[] weightIndex;
+
+    int[] inputs;
+    int[] outputs;
+
+    int getConnectionCount() {
+        return connectionStart[neuronCount];
+    }
+
+    /**
+     * Creates topology description of the specified network
+     */
+    static ModelTopology of(NeuralNetwork<?> network) {
+        ModelTopology topology = new ModelTopology();
+        topology.network = ModelRecord.of(network, false);
+        topology.label = network.getLabel();
+        topology.networkType = network.getNetworkType() != null ? network.getNetworkType().name() : null;
+        LearningRule rule = network.getLearningRule();
+        topology.learningRule = rule != null ? ModelRecord.of(rule, true) : null;
+
+        Map<Neuron, Integer> neuronIndex = new IdentityHashMap<>();
+        int connectionCount = 0;
+        for (Layer layer : network.getLayers()) {
+            if (layer instanceof FeatureMapsLayer) {
+                throw new NeurophException("Layers with feature maps cannot be stored in binary model format!");
+            }
+            for (Neuron neuron : layer.getNeurons()) {
+                neuronIndex.put(neuron, neuronIndex.size());
+                connectionCount += neuron.getInputConnections().size();
+            }
+        }
+        topology.neuronCount = neuronIndex.size();
+
+        // group equal neurons in each layer, records of functions are cached since networks usually share few kinds
+        Map<Class<?>, ModelRecord> stateless = new HashMap<>();
+        for (Layer layer : network.getLayers()) {
+            List<NeuronGroup> groups = new ArrayList<>();
+            Map<Integer, String> labels = new LinkedHashMap<>();
+            NeuronGroup last = null;
+            int count = 0;
+            for (int i = 0; i < layer.getNeuronsCount(); i++) {
+                Neuron neuron = layer.getNeuronAt(i);
+                ModelRecord neuronRecord = record(neuron, stateless);
+                ModelRecord inputRecord = record(neuron.getInputFunction(), stateless);
+                ModelRecord transferRecord = record(neuron.getTransferFunction(), stateless);
+                if (last != null && last.neuron.equals(neuronRecord) && equal(last.inputFunction, inputRecord)
+                        && equal(last.transferFunction, transferRecord)) {
+                    count++;
+                } else {
+                    if (last != null) {
+                        groups.add(new NeuronGroup(count, last.neuron, last.inputFunction, last.transferFunction));
+                    }
+                    last = new NeuronGroup(0, neuronRecord, inputRecord, transferRecord);
+                    count = 1;
+                }
+                if (neuron.getLabel() != null) {
+                    labels.put(i, neuron.getLabel());
+                }
+            }
+            if (last != null) {
+                groups.add(new NeuronGroup(count, last.neuron, last.inputFunction, last.transferFunction));
+            }
+            topology.layers.add(new LayerSpec(ModelRecord.of(layer, false), layer.getLabel(),
+                    layer.getNeuronsCount(), groups, labels));
+        }
+
+        // connections and weights, shared weight objects are stored once
+        int[] connectionStart = new int[topology.neuronCount + 1];
+        int[] sources = new int[connectionCount];
+        int[] weightIndex = new int[connectionCount];
+        double[] weights = new double[connectionCount];
+        Map<Weight, Integer> weightIds = new IdentityHashMap<>();
+        int c = 0, n = 0;
+        for (Layer layer : network.getLayers()) {
+            for (Neuron neuron : layer.getNeurons()) {
+                connectionStart[n++] = c;
+                for (Connection connection : neuron.getInputConnections()) {
+                    if (connection.getClass() != Connection.class) {
+                        throw new NeurophException(connection.getClass().getName() + " cannot be stored in binary model format!");
+                    }
+                    Integer source = neuronIndex.get(connection.getFromNeuron());
+                    if (source == null) {
+                        throw new NeurophException("Connection from neuron which is not in network layers!");
+                    }
+                    sources[c] = source;
+                    Weight weight = connection.getWeight();
+                    Integer id = weightIds.get(weight);
+                    if (id == null) {
+                        id = weightIds.size();
+                        weightIds.put(weight, id);
+                        weights[id] = weight.getValue();
+                    }
+                    weightIndex[c++] = id;
+                }
+            }
+        }
+        connectionStart[n] = c;
+
+        topology.connectionStart = connectionStart;
+        topology.sources = sources;
+        if (weightIds.size() < connectionCount) {
+            double[] shared = new double[weightIds.size()];
+            System.arraycopy(weights, 0, shared, 0, shared.length);
+            topology.weights = shared;
+            topology.weightIndex = weightIndex;
+        } else {
+            topology.weights = weights;
+        }
+
+        topology.inputs = indices(network.getInputNeurons(), neuronIndex);
+        topology.outputs = indices(network.getOutputNeurons(), neuronIndex);
+        return topology;
+    }
+
+    private static ModelRecord record(Object component, Map<Class<?>, ModelRecord> stateless) {
+        if (component == null) {
+            return null;
+        }
+        ModelRecord record = stateless.get(component.getClass());
+        if (record == null) {
+            record = ModelRecord.of(component, false);
+            if (record.isEmpty()) {
+                stateless.put(component.getClass(), record);
+            }
+        }
+        return record;
+    }
+
+    private static boolean equal(ModelRecord a, ModelRecord b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static int[] indices(List<Neuron> neurons, Map<Neuron, Integer> neuronIndex) {
+        int[] result = new int[neurons.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer idx = neuronIndex.get(neurons.get(i));
+            if (idx == null) {
+                throw new NeurophException("Network input or output neuron is not in network layers!");
+            }
+            result[i] = idx;
+        }
+        return result;
+    }
+
+    /**
+     * Returns value of weight for specified connection
+     */
+    double getWeight(int connection) {
+        return weights[weightIndex != null ? weightIndex[connection] : connection];
+    }
+
+    /**
+     * Creates network with this topology
+     */
+    NeuralNetwork<?> toNetwork() {
+        // learning rule class is known only from the model file
+        @SuppressWarnings("unchecked")
+        NeuralNetwork<LearningRule> network = this.network.newInstance(NeuralNetwork.class);
+        network.setLabel(label);
+        if (networkType != null) {
+            try {
+                network.setNetworkType(NeuralNetworkType.valueOf(networkType));
+            } catch (IllegalArgumentException ex) {
+                // network type removed in this version
+            }
+        }
+
+        Neuron[] neurons = new Neuron[neuronCount];
+        int n = 0;
+        for (LayerSpec spec : layers) {
+            Layer layer = spec.layer.newInstance(Layer.class);
+            layer.setLabel(spec.label);
+            int i = 0;
+            for (NeuronGroup group : spec.groups) {
+                Class<? extends Neuron> neuronClass = group.neuron.loadClass(Neuron.class);
+                for (int g = 0; g < group.count; g++, i++) {
+                    Neuron neuron = ModelRecord.instantiate(neuronClass);
+                    group.neuron.applyTo(neuron);
+                    if (group.inputFunction != null) {
+                        neuron.setInputFunction(group.inputFunction.newInstance(InputFunction.class));
+                    }
+                    if (group.transferFunction != null) {
+                        neuron.setTransferFunction(group.transferFunction.newInstance(TransferFunction.class));
+                    }
+                    neuron.setLabel(spec.neuronLabels.get(i));
+                    layer.addNeuron(neuron);
+                    neurons[n++] = neuron;
+                }
+            }
+            network.addLayer(layer);
+        }
+
+        Weight[] weightObjects = new Weight[weights.length];
+        for (int w = 0; w < weights.length; w++) {
+            weightObjects[w] = new Weight(weights[w]);
+        }
+
+        Map<Class<?>, Boolean> plainConnecting = new HashMap<>();
+        for (int i = 0; i < neuronCount; i++) {
+            Neuron neuron = neurons[i];
+            boolean plain = isPlainConnecting(neuron.getClass(), plainConnecting);
+            for (int c = connectionStart[i]; c < connectionStart[i + 1]; c++) {
+                Neuron from = neurons[sources[c]];
+                Connection connection = new Connection(from, neuron, weightObjects[weightIndex != null ? weightIndex[c] : c]);
+                if (plain && isPlainConnecting(from.getClass(), plainConnecting)) {
+                    // connections are known to be unique, so skip the linear duplicate checks
+                    neuron.getInputConnections().add(connection);
+                    from.getOutConnections().add(connection);
+                } else {
+                    neuron.addInputConnection(connection);
+                }
+            }
+        }
+
+        List<Neuron> inputNeurons = new ArrayList<>(inputs.length);
+        for (int idx : inputs) {
+            inputNeurons.add(neurons[idx]);
+        }
+        network.setInputNeurons(inputNeurons);
+        List<Neuron> outputNeurons = new ArrayList<>(outputs.length);
+        for (int idx : outputs) {
+            outputNeurons.add(neurons[idx]);
+        }
+        network.setOutputNeurons(outputNeurons);
+
+        if (learningRule != null) {
+            try {
+                Class<? extends LearningRule> ruleClass = learningRule.loadClass(LearningRule.class);
+                LearningRule rule = ModelRecord.instantiate(ruleClass);
+                learningRule.applyTo(rule);
+                network.setLearningRule(rule);
+            } catch (NeurophException ex) {
+                // learning rule is not needed for using the network, it can be set later
+            }
+        }
+
+        return network;
+    }
+
+    /**
+     * Returns true if neuron class does not override methods for adding connections
+     */
+    private static boolean isPlainConnecting(Class<?> neuronClass, Map<Class<?>, Boolean> cache) {
+        Boolean plain = cache.get(neuronClass);
+        if (plain == null) {
+            plain = true;
+            for (Class<?> c = neuronClass; c != Neuron.class; c = c.getSuperclass()) {
+                for (String method : new String[]{"addInputConnection", "addOutputConnection"}) {
+                    try {
+                        c.getDeclaredMethod(method, Connection.class);
+                        plain = false;
+                    } catch (NoSuchMethodException ex) {
+                        // not overridden in this class
+                    }
+                }
+            }
+            cache.put(neuronClass, plain);
+        }
+        return plain;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.io.File;
+
+/**
+ * Published version of a model in {@link ModelRegistry}. Version is immutable:
+ * when new version of the model is published, requests which already got this
+ * version keep using its network until they finish.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public final class ModelVersion {
+
+    private final String name;
+
+    private final long version;
+
+    private final CompiledNetwork network;
+
+    private final File source;
+
+    private final long publishedAt;
+
+    /**
+     * Sessions for serving requests of this version
+     */
+    private final SessionPool sessions;
+
+    ModelVersion(String name, long version, CompiledNetwork network, File source) {
+        this.name = name;
+        this.version = version;
+        this.network = network;
+        this.source = source;
+        this.publishedAt = System.currentTimeMillis();
+        this.sessions = new SessionPool(network);
+    }
+
+    /**
+     * Returns model name
+     *
+     * @return model name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns version number, which starts at 1 and grows with each publish
+     * of the model
+     *
+     * @return version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns compiled network of this version
+     *
+     * @return compiled network
+     */
+    public CompiledNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Returns file this version was loaded from, or null if network was
+     * published directly
+     *
+     * @return model file or null
+     */
+    public File getSource() {
+        return source;
+    }
+
+    /**
+     * Returns time when this version was published, in milliseconds
+     *
+     * @return publish time
+     */
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Creates new inference session for the network of this version
+     *
+     * @return new inference session
+     */
+    public InferenceSession newSession() {
+        return network.newSession();
+    }
+
+    /**
+     * Returns pool of inference sessions of this version. Pooled sessions go
+     * away with the version when newer version replaces it.
+     *
+     * @return session pool
+     */
+    public SessionPool getSessionPool() {
+        return sessions;
+    }
+
+    @Override
+    public String toString() {
+        return name + " v" + version;
+    }
+
+}
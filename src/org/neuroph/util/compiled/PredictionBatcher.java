@@ -0,0 +1,312 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * Collects predictions requested concurrently by many threads into batches,
+ * and calculates each batch in one pass through the network (see
+ * {@link InferenceSession#predict(double[][], double[][], int)}). Under load
+ * this gives several times the throughput of calculating requests one by one,
+ * for a small added latency.
+ * <p/>
+ * Worker threads take waiting requests and wait for more until the batch is
+ * full or the batch window passes, counted from the arrival of the oldest
+ * request. The window adapts to the load: it is zero when requests arrive too
+ * rarely to expect another one within the maximum delay, so single requests
+ * are not delayed, and grows up to the maximum delay as arrival rate grows.
+ * <pre>
+ * PredictionBatcher batcher = new PredictionBatcher(network, 64, 1000);
+ * double[] output = batcher.predict(input).join();
+ * </pre>
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class PredictionBatcher implements Closeable {
+
+    /**
+     * Default maximum number of requests in batch
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Default maximum time request waits for batch to fill, in microseconds
+     */
+    public static final long DEFAULT_MAX_DELAY_MICROS = 1000;
+
+    /**
+     * Time between arrival rate measurements, in nanoseconds
+     */
+    private static final long RATE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final CompiledNetwork network;
+
+    private final int maxBatchSize;
+
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    private final Thread[] workers;
+
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder processed = new LongAdder();
+
+    /**
+     * Measured arrival rate of requests, per nanosecond
+     */
+    private double arrivalRate;
+
+    private long rateTime = System.nanoTime();
+
+    private long rateCount;
+
+    private volatile long windowNanos;
+
+    /**
+     * Requested prediction
+     */
+    private static class Request {
+
+        final double[] input;
+
+        final long arrival;
+
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(double[] input) {
+            this.input = input;
+            this.arrival = System.nanoTime();
+        }
+    }
+
+    /**
+     * Creates batcher with default maximum batch size and delay, and one
+     * worker thread
+     *
+     * @param network compiled network
+     */
+    public PredictionBatcher(CompiledNetwork network) {
+        this(network, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS);
+    }
+
+    /**
+     * Creates batcher with one worker thread
+     *
+     * @param network          compiled network
+     * @param maxBatchSize     maximum number of requests in batch
+     * @param maxDelayMicros   maximum time request waits for batch to fill,
+     *                         in microseconds
+     */
+    public PredictionBatcher(CompiledNetwork network, int maxBatchSize, long maxDelayMicros) {
+        this(network, maxBatchSize, maxDelayMicros, 1);
+    }
+
+    /**
+     * Creates batcher
+     *
+     * @param network        compiled network
+     * @param maxBatchSize   maximum number of requests in batch
+     * @param maxDelayMicros maximum time request waits for batch to fill, in
+     *                       microseconds
+     * @param threads        number of worker threads, each calculates its own
+     *                       batches
+     */
+    public PredictionBatcher(CompiledNetwork network, int maxBatchSize, long maxDelayMicros, int threads) {
+        if (maxBatchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Batch size and number of threads must be positive!");
+        }
+        if (maxDelayMicros < 0) {
+            throw new IllegalArgumentException("Delay can't be negative!");
+        }
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "PredictionBatcher worker " + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Requests prediction for specified input. Output is calculated with
+     * other requests in the same batch.
+     *
+     * @param input network input
+     * @return future network output
+     * @throws VectorSizeMismatchException if input size does not match network
+     * @throws IllegalStateException       if batcher is closed
+     */
+    public CompletableFuture<double[]> predict(double... input) {
+        if (input.length != network.getInputsCount()) {
+            throw new VectorSizeMismatchException("Input vector size does not match network input dimension!");
+        }
+        if (closed) {
+            throw new IllegalStateException("Batcher is closed!");
+        }
+        Request request = new Request(input);
+        submitted.increment();
+        queue.add(request);
+        if (closed && queue.remove(request)) { // closed while adding
+            request.result.completeExceptionally(new IllegalStateException("Batcher is closed!"));
+        }
+        return request.result;
+    }
+
+    /**
+     * Collects and calculates batches, runs on worker thread
+     */
+    private void work() {
+        InferenceSession session = network.newSession();
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        double[][] inputs = new double[maxBatchSize][];
+        double[][] outputs = new double[maxBatchSize][];
+        boolean running = true;
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = batch.get(0).arrival + window(System.nanoTime());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    Request request = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (request == null) {
+                        break;
+                    }
+                    batch.add(request);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException ex) {
+                running = false; // closed, calculate already collected requests
+            }
+
+            if (batch.isEmpty()) {
+                continue;
+            }
+            int count = batch.size();
+            for (int k = 0; k < count; k++) {
+                inputs[k] = batch.get(k).input;
+                outputs[k] = new double[network.getOutputsCount()];
+            }
+            try {
+                session.predict(inputs, outputs, count);
+                for (int k = 0; k < count; k++) {
+                    batch.get(k).result.complete(outputs[k]);
+                }
+            } catch (RuntimeException ex) {
+                for (Request request : batch) {
+                    request.result.completeExceptionally(ex);
+                }
+            }
+            batches.increment();
+            processed.add(count);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Returns batch window for current arrival rate, measured every
+     * RATE_INTERVAL nanoseconds
+     */
+    private synchronized long window(long now) {
+        long elapsed = now - rateTime;
+        if (elapsed >= RATE_INTERVAL) {
+            long count = submitted.sum();
+            double rate = (count - rateCount) / (double) elapsed;
+            arrivalRate = arrivalRate == 0 ? rate : 0.7 * arrivalRate + 0.3 * rate;
+            rateCount = count;
+            rateTime = now;
+
+            // wait only if at least one more request is expected within max delay
+            if (arrivalRate * maxDelayNanos < 1) {
+                windowNanos = 0;
+            } else {
+                windowNanos = (long) Math.min(maxDelayNanos, (maxBatchSize - 1) / arrivalRate);
+            }
+        }
+        return windowNanos;
+    }
+
+    /**
+     * Returns current batch window in microseconds
+     *
+     * @return batch window
+     */
+    public long getWindowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(windowNanos);
+    }
+
+    /**
+     * Returns average number of requests per calculated batch
+     *
+     * @return average batch size
+     */
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : processed.sum() / (double) count;
+    }
+
+    public CompiledNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Stops worker threads after they calculate collected requests. Requests
+     * which are still waiting fail with IllegalStateException.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NeurophException("Interrupted while closing batcher!", ex);
+        } finally {
+            Request request;
+            while ((request = queue.poll()) != null) {
+                request.result.completeExceptionally(new IllegalStateException("Batcher is closed!"));
+            }
+        }
+    }
+
+}
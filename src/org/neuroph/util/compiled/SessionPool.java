@@ -0,0 +1,142 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.compiled;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of inference sessions of one compiled network, for serving requests
+ * from many threads. Each request borrows a session, uses it on its own thread
+ * and returns it, so sessions (and their buffers) are reused between requests
+ * instead of created for each request, and no request waits for another.
+ * <pre>
+ * InferenceSession session = pool.acquire();
+ * try {
+ *     session.predict(input, output);
+ * } finally {
+ *     pool.release(session);
+ * }
+ * </pre>
+ * Pool creates new session when all idle sessions are in use, and keeps at
+ * most maxIdle returned sessions.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class SessionPool {
+
+    /**
+     * Default maximum number of idle sessions
+     */
+    public static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final CompiledNetwork network;
+
+    private final int maxIdle;
+
+    private final ConcurrentLinkedQueue<InferenceSession> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of sessions in idle queue; ConcurrentLinkedQueue.size is not
+     * constant time
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Creates pool which keeps at most DEFAULT_MAX_IDLE idle sessions
+     *
+     * @param network compiled network
+     */
+    public SessionPool(CompiledNetwork network) {
+        this(network, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Creates pool for specified network
+     *
+     * @param network compiled network
+     * @param maxIdle maximum number of idle sessions kept in pool
+     */
+    public SessionPool(CompiledNetwork network, int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Maximum number of idle sessions can't be negative!");
+        }
+        this.network = network;
+        this.maxIdle = maxIdle;
+    }
+
+    public CompiledNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Borrows idle session, or creates new one if there is no idle session
+     *
+     * @return session for exclusive use until it is released
+     */
+    public InferenceSession acquire() {
+        InferenceSession session = idle.poll();
+        if (session == null) {
+            return network.newSession();
+        }
+        idleCount.decrementAndGet();
+        return session;
+    }
+
+    /**
+     * Returns borrowed session to the pool. Session must not be used after it
+     * is released.
+     *
+     * @param session session borrowed from this pool
+     */
+    public void release(InferenceSession session) {
+        if (session.getNetwork() != network) {
+            throw new IllegalArgumentException("Session does not belong to this pool!");
+        }
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(session);
+        } else {
+            idleCount.decrementAndGet(); // pool is full, session is dropped
+        }
+    }
+
+    /**
+     * Calculates network output using pooled session
+     *
+     * @param input network input
+     * @return network output, new array which is not reused by the pool
+     */
+    public double[] predict(double... input) {
+        double[] output = new double[network.getOutputsCount()];
+        InferenceSession session = acquire();
+        try {
+            session.predict(input, output);
+        } finally {
+            release(session);
+        }
+        return output;
+    }
+
+    /**
+     * Returns number of idle sessions in the pool
+     *
+     * @return number of idle sessions
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+}
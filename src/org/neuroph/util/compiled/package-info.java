@@ -0,0 +1,4 @@
+/**
+ * Provides compiled networks for fast inference and compact binary model format
+ */
+package org.neuroph.util.compiled;
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.data.norm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.DataSetView;
+import org.neuroph.core.data.MappedDataSet;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.util.io.InputAdapter;
+
+/**
+ * Base class for normalizers which transform each column with linear function
+ * normalized = value * scale + offset.
+ * <p/>
+ * Statistics are computed once with fit(), and the same transformation can
+ * then be applied to training data, test data and live network inputs with
+ * transform(). Vectors are transformed in place. Fitted normalizer is
+ * serializable, so it can be saved next to the trained network.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public abstract class AffineNormalizer implements Normalizer, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private double[] inputScale, inputOffset;
+    private double[] outputScale, outputOffset;
+
+    /**
+     * Computes scale and offset for all columns from column statistics
+     *
+     * @param stats  statistics of columns
+     * @param scale  array to fill with column scales
+     * @param offset array to fill with column offsets
+     */
+    protected abstract void fit(ColumnStatistics stats, double[] scale, double[] offset);
+
+    /**
+     * Computes normalization parameters from specified data set
+     *
+     * @param dataSet data set used to compute statistics
+     */
+    public void fit(DataSet dataSet) {
+        int inputSize = dataSet.getInputSize();
+        ColumnStatistics stats = ColumnStatistics.compute(dataSet); // one pass for inputs and outputs
+        inputScale = new double[inputSize];
+        inputOffset = new double[inputSize];
+        fit(stats.getColumns(0, inputSize), inputScale, inputOffset);
+
+        if (dataSet.isSupervised() && dataSet.getOutputSize() > 0) {
+            ColumnStatistics outputStats = stats.getColumns(inputSize, stats.getColumnCount());
+            outputScale = new double[dataSet.getOutputSize()];
+            outputOffset = new double[dataSet.getOutputSize()];
+            fit(outputStats, outputScale, outputOffset);
+        } else {
+            outputScale = null;
+            outputOffset = null;
+        }
+    }
+
+    /**
+     * Normalizes data set in place, using parameters from the last fit()
+     *
+     * @param dataSet data set to normalize
+     */
+    public void transform(DataSet dataSet) {
+        checkFitted();
+        if (dataSet instanceof DataSetView) {
+            // view rows are shared with source (and may repeat), so transform the source instead
+            throw new UnsupportedOperationException("Data set views cannot be transformed in place, transform source data set instead!");
+        }
+        List<DataSetRow> rows = dataSet.getRows();
+        if (rows.size() != dataSet.size() || dataSet instanceof MappedDataSet) {
+            throw new UnsupportedOperationException("Only data sets with rows in memory can be transformed in place, use transform(InputAdapter) for streams!");
+        }
+
+        final boolean outputs = dataSet.isSupervised() && outputScale != null;
+        rows.parallelStream().forEach(row -> {
+            transformInput(row.getInput());
+            if (outputs) {
+                transformOutput(row.getDesiredOutput());
+            }
+        });
+    }
+
+    /**
+     * Computes normalization parameters from specified data set and normalizes it
+     *
+     * @param dataSet data set to normalize
+     */
+    @Override
+    public void normalize(DataSet dataSet) {
+        fit(dataSet);
+        transform(dataSet);
+    }
+
+    /**
+     * Normalizes input vector in place
+     *
+     * @param input network input vector
+     * @return the same array, for convenience
+     */
+    public double[] transformInput(double[] input) {
+        checkFitted();
+        return apply(input, inputScale, inputOffset);
+    }
+
+    /**
+     * Normalizes desired output vector in place
+     *
+     * @param output desired output vector
+     * @return the same array, for convenience
+     */
+    public double[] transformOutput(double[] output) {
+        checkFitted();
+        if (outputScale == null) {
+            throw new IllegalStateException("Normalizer was fitted on unsupervised data set!");
+        }
+        return apply(output, outputScale, outputOffset);
+    }
+
+    /**
+     * Converts normalized network output back to original scale, in place
+     *
+     * @param output normalized output vector
+     * @return the same array, for convenience
+     */
+    public double[] inverseTransformOutput(double[] output) {
+        checkFitted();
+        if (outputScale == null) {
+            throw new IllegalStateException("Normalizer was fitted on unsupervised data set!");
+        }
+        if (output.length != outputScale.length) {
+            throw new VectorSizeMismatchException("Vector size " + output.length + " does not match normalizer size " + outputScale.length);
+        }
+        for (int i = 0; i < output.length; i++) {
+            output[i] = (output[i] - outputOffset[i]) / outputScale[i];
+        }
+        return output;
+    }
+
+    /**
+     * Returns input adapter which normalizes vectors read from specified adapter
+     *
+     * @param adapter source of network inputs
+     * @return input adapter with normalized inputs
+     */
+    public InputAdapter transform(final InputAdapter adapter) {
+        checkFitted();
+        return new InputAdapter() {
+            @Override
+            public double[] readInput() {
+                double[] input = adapter.readInput();
+                return input != null ? transformInput(input) : null;
+            }
+
+            @Override
+            public void close() {
+                adapter.close();
+            }
+        };
+    }
+
+    private static double[] apply(double[] vector, double[] scale, double[] offset) {
+        if (vector.length != scale.length) {
+            throw new VectorSizeMismatchException("Vector size " + vector.length + " does not match normalizer size " + scale.length);
+        }
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = vector[i] * scale[i] + offset[i];
+        }
+        return vector;
+    }
+
+    private void checkFitted() {
+        if (!isFitted()) {
+            throw new IllegalStateException("Normalizer must be fitted before transform!");
+        }
+    }
+
+    /**
+     * Returns true if normalization parameters have been computed
+     */
+    public boolean isFitted() {
+        return inputScale != null;
+    }
+
+    /**
+     * Returns scale for each input column
+     */
+    public double[] getInputScale() {
+        return inputScale;
+    }
+
+    /**
+     * Returns offset for each input column
+     */
+    public double[] getInputOffset() {
+        return inputOffset;
+    }
+
+    /**
+     * Returns scale for each output column, or null if normalizer was fitted on unsupervised data set
+     */
+    public double[] getOutputScale() {
+        return outputScale;
+    }
+
+    /**
+     * Returns offset for each output column, or null if normalizer was fitted on unsupervised data set
+     */
+    public double[] getOutputOffset() {
+        return outputOffset;
+    }
+
+    /**
+     * Saves fitted normalizer to specified file
+     *
+     * @param filePath file path
+     */
+    public void save(String filePath) {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeObject(this);
+        } catch (IOException ex) {
+            throw new NeurophException("Could not save normalizer to file " + filePath, ex);
+        }
+    }
+
+    /**
+     * Loads normalizer from specified file
+     *
+     * @param filePath file path
+     * @return loaded normalizer
+     */
+    public static AffineNormalizer load(String filePath) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            return (AffineNormalizer) in.readObject();
+        } catch (IOException ex) {
+            throw new NeurophException("Could not read normalizer from file " + filePath, ex);
+        } catch (ClassNotFoundException ex) {
+            throw new NeurophException("Class not found while trying to read normalizer from file " + filePath, ex);
+        }
+    }
+}
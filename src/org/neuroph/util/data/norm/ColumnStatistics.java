@@ -0,0 +1,186 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.data.norm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+
+/**
+ * Statistics of data set columns (min, max, mean and variance) computed in a
+ * single pass. Mean and variance are updated with Welford's algorithm, and
+ * partial statistics can be merged, so columns of in memory data sets are
+ * reduced in parallel.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class ColumnStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+    private final double[] min, max, mean, m2;
+
+    /**
+     * Creates empty statistics for specified number of columns
+     *
+     * @param columns number of columns
+     */
+    public ColumnStatistics(int columns) {
+        min = new double[columns];
+        max = new double[columns];
+        mean = new double[columns];
+        m2 = new double[columns];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Computes statistics of input columns followed by output columns of
+     * specified data set, reading the data set only once. Unsupervised data
+     * sets have only input columns. Use {@link #getColumns(int, int)} to
+     * split the result.
+     *
+     * @param dataSet data set
+     * @return statistics of input and output columns
+     */
+    public static ColumnStatistics compute(DataSet dataSet) {
+        final int inputSize = dataSet.getInputSize();
+        final int columns = inputSize + (dataSet.isSupervised() ? dataSet.getOutputSize() : 0);
+        List<DataSetRow> rows = dataSet.getRows();
+
+        if (!rows.isEmpty() && rows.size() == dataSet.size()) {
+            return rows.parallelStream().collect(
+                    () -> new ColumnStatistics(columns),
+                    (stats, row) -> stats.add(row.getInput(), row.getDesiredOutput()),
+                    ColumnStatistics::merge);
+        }
+
+        ColumnStatistics stats = new ColumnStatistics(columns);
+        Iterator<DataSetRow> iterator = dataSet.iterator();
+        while (iterator.hasNext()) {
+            DataSetRow row = iterator.next();
+            stats.add(row.getInput(), row.getDesiredOutput());
+        }
+        return stats;
+    }
+
+    /**
+     * Adds vector values to statistics
+     *
+     * @param vector vector with value for each column
+     */
+    public void add(double[] vector) {
+        add(vector, null);
+    }
+
+    /**
+     * Adds values of two vectors to statistics, columns of the second vector
+     * follow columns of the first one
+     */
+    private void add(double[] first, double[] second) {
+        count++;
+        for (int i = 0; i < mean.length; i++) {
+            double value = i < first.length ? first[i] : second[i - first.length];
+            if (value < min[i]) min[i] = value;
+            if (value > max[i]) max[i] = value;
+
+            double delta = value - mean[i];
+            mean[i] += delta / count;
+            m2[i] += delta * (value - mean[i]);
+        }
+    }
+
+    /**
+     * Merges other statistics into this one (Chan et al. parallel variance)
+     *
+     * @param other statistics to merge
+     */
+    public void merge(ColumnStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        for (int i = 0; i < mean.length; i++) {
+            min[i] = Math.min(min[i], other.min[i]);
+            max[i] = Math.max(max[i], other.max[i]);
+
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * other.count / total;
+            m2[i] += other.m2[i] + delta * delta * ((double) count * other.count / total);
+        }
+        count = total;
+    }
+
+    /**
+     * Returns statistics of columns from index from to index to (exclusive)
+     *
+     * @param from first column
+     * @param to   column after the last column
+     * @return statistics of specified columns
+     */
+    public ColumnStatistics getColumns(int from, int to) {
+        ColumnStatistics columns = new ColumnStatistics(to - from);
+        columns.count = count;
+        System.arraycopy(min, from, columns.min, 0, to - from);
+        System.arraycopy(max, from, columns.max, 0, to - from);
+        System.arraycopy(mean, from, columns.mean, 0, to - from);
+        System.arraycopy(m2, from, columns.m2, 0, to - from);
+        return columns;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getColumnCount() {
+        return mean.length;
+    }
+
+    public double getMin(int column) {
+        return min[column];
+    }
+
+    public double getMax(int column) {
+        return max[column];
+    }
+
+    /**
+     * Returns max absolute value in column
+     */
+    public double getMaxAbs(int column) {
+        return Math.max(Math.abs(min[column]), Math.abs(max[column]));
+    }
+
+    public double getMean(int column) {
+        return mean[column];
+    }
+
+    /**
+     * Returns population variance of column values
+     */
+    public double getVariance(int column) {
+        return count > 0 ? m2[column] / count : 0;
+    }
+
+    public double getStandardDeviation(int column) {
+        return Math.sqrt(getVariance(column));
+    }
+}
@@ -16,81 +16,23 @@
 
 package org.neuroph.util.data.norm;
 
-import org.neuroph.core.data.DataSet;
-import org.neuroph.core.data.DataSetRow;
-
 /**
  * Max normalization method, which normalize data in regard to max element in training set (by columns)
  * Normalization is done according to formula:
- * normalizedVector[i] = vector[i] / abs(max[i])
+ * normalizedVector[i] = vector[i] / max(abs(vector[i]))
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
-public class MaxNormalizer implements Normalizer {
-    double[] maxIn, maxOut; // these contain max values for in and out columns
-    
-    
-    @Override
-   public void normalize(DataSet dataSet) {
+public class MaxNormalizer extends AffineNormalizer {
 
-        findMaxVectors(dataSet);
+    private static final long serialVersionUID = 1L;
 
-        for (DataSetRow row : dataSet.getRows()) {
-            double[] normalizedInput = normalizeMax(row.getInput(), maxIn);
-            row.setInput(normalizedInput);
-            
-            if (dataSet.isSupervised()) {
-                double[] normalizedOutput = normalizeMax(row.getDesiredOutput(), maxOut);
-                row.setDesiredOutput(normalizedOutput);
-            }
+    @Override
+    protected void fit(ColumnStatistics stats, double[] scale, double[] offset) {
+        for (int i = 0; i < scale.length; i++) {
+            double max = stats.getMaxAbs(i);
+            scale[i] = max != 0 ? 1 / max : 1;
+            offset[i] = 0;
         }
+    }
 
-    }    
-   
-   
-   /**
-    * Finds max values for columns in input and output vector for given data set
-    * @param dataSet  
-    */
-    private void findMaxVectors(DataSet dataSet) {
-        int inputSize = dataSet.getInputSize();
-        int outputSize = dataSet.getOutputSize();
-        
-        maxIn = new double[inputSize];    
-        for(int i=0; i<inputSize; i++) {
-            maxIn[i] = Double.MIN_VALUE;
-        }
-        
-        maxOut = new double[outputSize];
-        for(int i=0; i<outputSize; i++)
-            maxOut[i] = Double.MIN_VALUE;        
-    
-        for (DataSetRow dataSetRow : dataSet.getRows()) {
-            double[] input = dataSetRow.getInput();
-            for (int i = 0; i < inputSize; i++) {
-                if (input[i] > maxIn[i]) {
-                    maxIn[i] = input[i];
-                }
-             }
-            
-            double[] output = dataSetRow.getDesiredOutput();
-            for (int i = 0; i < outputSize; i++) {
-                if (output[i] > maxOut[i]) {
-                    maxOut[i] = output[i];
-                }
-            }            
-                                    
-        }         
-    }   
-    
-    
-    public double[] normalizeMax(double[] vector, double[] max) {
-        double[] normalizedVector = new double[vector.length];
-        
-        for(int i = 0; i < vector.length; i++) {
-                normalizedVector[i] = vector[i] / max[i];
-        }
-        
-        return normalizedVector;
-    }     
-   
 }
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.data.norm;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.neuroph.core.Connection;
+import org.neuroph.core.Layer;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.core.input.WeightedSum;
+import org.neuroph.nnet.comp.neuron.BiasNeuron;
+import org.neuroph.nnet.comp.neuron.InputNeuron;
+import org.neuroph.util.ConnectionFactory;
+
+/**
+ * Folds input normalization into the weights of the network, so the network
+ * accepts raw (not normalized) inputs. Since each normalized input is
+ * x * scale + offset, for every neuron connected to input neurons
+ * <pre>
+ * sum(w[i] * (x[i] * scale[i] + offset[i])) + bias = sum((w[i] * scale[i]) * x[i]) + (bias + sum(w[i] * offset[i]))
+ * </pre>
+ * so weights from inputs are multiplied by scale, and bias weight is adjusted
+ * by the offsets. If neuron has no bias, bias neuron is added to input layer.
+ * <p/>
+ * Output normalization (if normalizer was fitted on supervised data) is not
+ * folded, use {@link AffineNormalizer#inverseTransformOutput(double[])} for outputs.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class NormalizerFolding {
+
+    private NormalizerFolding() {
+    }
+
+    /**
+     * Returns copy of specified network which accepts raw inputs, and gives
+     * the same outputs as original network with normalized inputs.
+     *
+     * @param normalizer fitted normalizer
+     * @param network    network trained with normalized inputs
+     * @param <N>        type of network
+     * @return copy of network with normalization folded into weights
+     */
+    public static <N extends NeuralNetwork<?>> N fold(AffineNormalizer normalizer, N network) {
+        @SuppressWarnings("unchecked") // clone has the class of network
+        N copy = (N) network.clone();
+        foldInPlace(normalizer, copy);
+        return copy;
+    }
+
+    /**
+     * Folds normalization into weights of specified network. After this call
+     * the network accepts raw inputs.
+     *
+     * @param normalizer fitted normalizer
+     * @param network    network trained with normalized inputs
+     */
+    public static void foldInPlace(AffineNormalizer normalizer, NeuralNetwork<?> network) {
+        if (!normalizer.isFitted()) {
+            throw new IllegalStateException("Normalizer must be fitted before folding!");
+        }
+
+        List<Neuron> inputNeurons = network.getInputNeurons();
+        double[] scale = normalizer.getInputScale();
+        double[] offset = normalizer.getInputOffset();
+
+        if (inputNeurons.size() != scale.length) {
+            throw new VectorSizeMismatchException("Network has " + inputNeurons.size() + " inputs, normalizer has " + scale.length);
+        }
+
+        // check everything first, so network is not left half folded
+        Map<Weight, Neuron> foldedWeights = new IdentityHashMap<>();
+        Map<Weight, Neuron> biasWeights = new IdentityHashMap<>();
+        for (Neuron input : inputNeurons) {
+            if (!(input instanceof InputNeuron)) {
+                throw new IllegalArgumentException("Input neurons must pass inputs unchanged, found " + input.getClass().getName());
+            }
+            for (Connection connection : input.getOutConnections()) {
+                Neuron target = connection.getToNeuron();
+                if (!(target.getInputFunction() instanceof WeightedSum)) {
+                    throw new IllegalArgumentException("Normalization can be folded only into neurons with WeightedSum input function!");
+                }
+                if (foldedWeights.put(connection.getWeight(), input) != null) {
+                    throw new IllegalArgumentException("Normalization cannot be folded into weights shared between inputs!");
+                }
+                Connection biasConnection = findBiasConnection(target);
+                if (biasConnection != null) {
+                    Neuron owner = biasWeights.put(biasConnection.getWeight(), target);
+                    if (owner != null && owner != target) {
+                        throw new IllegalArgumentException("Normalization cannot be folded into bias weights shared between neurons!");
+                    }
+                }
+            }
+        }
+
+        // bias change for each neuron connected to inputs
+        Map<Neuron, double[]> biasDeltas = new IdentityHashMap<>();
+        for (int i = 0; i < inputNeurons.size(); i++) {
+            for (Connection connection : inputNeurons.get(i).getOutConnections()) {
+                Weight weight = connection.getWeight();
+                double value = weight.getValue();
+
+                double[] delta = biasDeltas.get(connection.getToNeuron());
+                if (delta == null) {
+                    delta = new double[1];
+                    biasDeltas.put(connection.getToNeuron(), delta);
+                }
+                delta[0] += value * offset[i];
+                weight.setValue(value * scale[i]);
+            }
+        }
+
+        BiasNeuron addedBias = null;
+        for (Map.Entry<Neuron, double[]> entry : biasDeltas.entrySet()) {
+            Neuron neuron = entry.getKey();
+            double delta = entry.getValue()[0];
+
+            Connection biasConnection = findBiasConnection(neuron);
+            if (biasConnection != null) {
+                Weight bias = biasConnection.getWeight();
+                bias.setValue(bias.getValue() + delta);
+            } else if (delta != 0) {
+                if (addedBias == null) {
+                    addedBias = new BiasNeuron();
+                    Layer inputLayer = inputNeurons.get(0).getParentLayer();
+                    inputLayer.addNeuron(addedBias);
+                }
+                ConnectionFactory.createConnection(addedBias, neuron, delta);
+            }
+        }
+    }
+
+    private static Connection findBiasConnection(Neuron neuron) {
+        for (Connection connection : neuron.getInputConnections()) {
+            if (connection.getFromNeuron() instanceof BiasNeuron) {
+                return connection;
+            }
+        }
+        return null;
+    }
+}
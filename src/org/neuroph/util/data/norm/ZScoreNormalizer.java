@@ -0,0 +1,40 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.data.norm;
+
+/**
+ * Z-score normalization method, which normalize data to zero mean and unit
+ * standard deviation (by columns). Normalization is done according to formula:
+ * normalizedVector[i] = (vector[i] - mean[i]) / stdDev[i]
+ * Mean and standard deviation are computed in a single pass using Welford's algorithm.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class ZScoreNormalizer extends AffineNormalizer {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void fit(ColumnStatistics stats, double[] scale, double[] offset) {
+        for (int i = 0; i < scale.length; i++) {
+            double stdDev = stats.getStandardDeviation(i);
+            scale[i] = stdDev != 0 ? 1 / stdDev : 1;
+            offset[i] = -stats.getMean(i) * scale[i];
+        }
+    }
+
+}
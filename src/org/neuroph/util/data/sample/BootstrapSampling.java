@@ -0,0 +1,112 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.data.sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetView;
+
+/**
+ * Bootstrap sampling creates specified number of samples, each with the same
+ * number of rows as the given data set, drawn randomly with repetition.
+ * Rows which were not drawn into a sample (out of bag rows) can be used for
+ * validation, see {@link #getOutOfBag(DataSetView)}.
+ * <p/>
+ * Samples are returned as views of the given data set, so rows are not copied and
+ * given data set is not changed.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class BootstrapSampling implements Sampling {
+
+    /**
+     * Number of bootstrap samples
+     */
+    private final int sampleCount;
+
+    /**
+     * Seed for random generator, null for random seed
+     */
+    private Long seed;
+
+    /**
+     * Sampling will produce specified number of bootstrap samples
+     *
+     * @param sampleCount number of samples to produce
+     */
+    public BootstrapSampling(int sampleCount) {
+        if (sampleCount <= 0) throw new IllegalArgumentException("Number of samples cannot be <= 0 : " + sampleCount);
+        this.sampleCount = sampleCount;
+    }
+
+    @Override
+    public List<DataSet> sample(DataSet dataSet) {
+        Random random = SubSampling.createRandom(seed);
+        int rowCount = dataSet.size();
+
+        List<DataSet> samples = new ArrayList<>(sampleCount);
+        for (int s = 0; s < sampleCount; s++) {
+            int[] indices = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                indices[i] = random.nextInt(rowCount);
+            }
+            samples.add(new DataSetView(dataSet, indices));
+        }
+
+        return samples;
+    }
+
+    /**
+     * Returns rows of the source data set which are not in specified bootstrap sample
+     *
+     * @param sample bootstrap sample
+     * @return view of out of bag rows
+     */
+    public static DataSetView getOutOfBag(DataSetView sample) {
+        DataSet source = sample.getSource();
+        boolean[] inBag = new boolean[source.size()];
+        for (int i = 0; i < sample.size(); i++) {
+            inBag[sample.getSourceIndex(i)] = true;
+        }
+
+        int count = 0;
+        for (boolean b : inBag) {
+            if (!b) count++;
+        }
+
+        int[] indices = new int[count];
+        int idx = 0;
+        for (int i = 0; i < inBag.length; i++) {
+            if (!inBag[i]) {
+                indices[idx++] = i;
+            }
+        }
+
+        return new DataSetView(source, indices);
+    }
+
+    /**
+     * Sets seed for random generator, so sampling gives the same samples each time
+     * @param seed random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
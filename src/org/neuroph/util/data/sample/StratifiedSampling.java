@@ -0,0 +1,147 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.data.sample;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.DataSetView;
+
+/**
+ * Stratified sampling creates subsets of specified sizes (in percents) in which
+ * each class is represented in the same proportion as in the whole data set.
+ * Class of the row is the index of the max value in desired output (one hot
+ * encoding), or for single output 0 and 1 for values below and above 0.5.
+ * <p/>
+ * Subsets are returned as views of the given data set, so rows are not copied and
+ * given data set is not changed.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class StratifiedSampling implements Sampling {
+
+    /**
+     * Sizes of each subset in percents
+     */
+    private final int[] subSetSizes;
+
+    /**
+     * Seed for random generator, null for random seed
+     */
+    private Long seed;
+
+    /**
+     * Sampling will produce subsets of specified sizes (in percents)
+     *
+     * @param subSetSizes size of subsets in percents
+     */
+    public StratifiedSampling(int... subSetSizes) {
+        int sum = 0;
+        for (int size : subSetSizes) {
+            sum += size;
+        }
+        if (sum > 100) {
+            throw new IllegalArgumentException("Sum of subset sizes cannot be more than 100% : " + sum);
+        }
+        this.subSetSizes = subSetSizes;
+    }
+
+    @Override
+    public List<DataSet> sample(DataSet dataSet) {
+        if (!dataSet.isSupervised() || dataSet.getOutputSize() == 0) {
+            throw new IllegalArgumentException("Stratified sampling requires supervised data set!");
+        }
+
+        Random random = SubSampling.createRandom(seed);
+
+        // group row indices by class, in order of class appearance
+        Map<Integer, List<Integer>> classRows = new LinkedHashMap<>();
+        for (int i = 0; i < dataSet.size(); i++) {
+            int rowClass = getClass(dataSet.getRowAt(i));
+            List<Integer> rows = classRows.get(rowClass);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                classRows.put(rowClass, rows);
+            }
+            rows.add(i);
+        }
+
+        List<List<Integer>> subSetRows = new ArrayList<>();
+        for (int s = 0; s < subSetSizes.length; s++) {
+            subSetRows.add(new ArrayList<Integer>());
+        }
+
+        // split each class using cumulative bounds, so rounding errors do not add up
+        for (List<Integer> rows : classRows.values()) {
+            int[] order = SubSampling.permutation(rows.size(), random);
+            int cumulativePercent = 0;
+            int from = 0;
+            for (int s = 0; s < subSetSizes.length; s++) {
+                cumulativePercent += subSetSizes[s];
+                int to = (int) Math.round((double) cumulativePercent / 100 * rows.size());
+                for (int i = from; i < to; i++) {
+                    subSetRows.get(s).add(rows.get(order[i]));
+                }
+                from = to;
+            }
+        }
+
+        List<DataSet> subSets = new ArrayList<>();
+        for (List<Integer> rows : subSetRows) {
+            int[] indices = new int[rows.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = rows.get(i);
+            }
+            DataSetView subSet = new DataSetView(dataSet, indices);
+            subSet.shuffle(random); // mix classes
+            subSets.add(subSet);
+        }
+
+        return subSets;
+    }
+
+    /**
+     * Returns class of the data set row
+     */
+    private static int getClass(DataSetRow row) {
+        double[] output = row.getDesiredOutput();
+        if (output.length == 1) {
+            return output[0] >= 0.5 ? 1 : 0;
+        }
+
+        int maxIdx = 0;
+        for (int i = 1; i < output.length; i++) {
+            if (output[i] > output[maxIdx]) {
+                maxIdx = i;
+            }
+        }
+        return maxIdx;
+    }
+
+    /**
+     * Sets seed for random generator, so sampling gives the same subsets each time
+     * @param seed random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -17,14 +17,19 @@
 package org.neuroph.util.data.sample;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
 import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetView;
 
 /**
  * This class provides subsampling of a data set, and creates a specified number of subsets of a
  * specified number of samples form given data set.
+ * Subsets are returned as views of the given data set, so rows are not copied and
+ * given data set is not changed (shuffled). For the same seed sampling always gives
+ * the same subsets.
  * 
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
@@ -37,7 +42,7 @@ public class SubSampling implements Sampling {
     private int subSetCount;
         
     /**
-     * Sizes of each subset
+     * Sizes of each subset in percents, null for subsets of equal size
      */
     private int[] subSetSizes;
     
@@ -45,6 +50,11 @@ public class SubSampling implements Sampling {
      * True if samples are allowed to repeat in different subsets
      */
     private boolean allowRepetition = false;
+
+    /**
+     * Seed for random generator, null for random seed
+     */
+    private Long seed;
     
        
     /**
@@ -65,55 +75,81 @@ public class SubSampling implements Sampling {
      * @param subSetSizes size of subsets in percents
      */
     public SubSampling(int ... subSetSizes) { // without repetition
-        // sum of these must be 100%???
-         this.subSetSizes = subSetSizes;
-         this.subSetCount = subSetSizes.length;
+        int sum = 0;
+        for (int size : subSetSizes) {
+            sum += size;
+        }
+        if (sum > 100) {
+            throw new IllegalArgumentException("Sum of subset sizes cannot be more than 100% : " + sum);
+        }
+        this.subSetSizes = subSetSizes;
+        this.subSetCount = subSetSizes.length;
     }       
     
 
     @Override
     public List<DataSet> sample(DataSet dataSet) {
-        if (subSetSizes == null) { // if number of subSetSizes is null calculate it based on subSetSount
-            int  singleSubSetSize = dataSet.size() / subSetCount;
-            subSetSizes = new int[subSetCount];
-            for(int i=0; i< subSetCount; i++)
-               subSetSizes[i] = singleSubSetSize;
-        }
+        Random random = createRandom(seed);
+        int rowCount = dataSet.size();
+        int[] itemCounts = getItemCounts(rowCount);
                 
         List<DataSet> subSets = new ArrayList<>();
 
-        // shuffle dataset in order to randomize rows that will be used to fill subsets
-        dataSet.shuffle();
+        if (!allowRepetition) {
+            // shuffle indices (not the data set) in order to randomize rows that will be used to fill subsets
+            int[] order = permutation(rowCount, random);
+            int idxCounter = 0;
+            for (int s = 0; s < subSetCount; s++) {
+                subSets.add(new DataSetView(dataSet, Arrays.copyOfRange(order, idxCounter, idxCounter + itemCounts[s])));
+                idxCounter += itemCounts[s];
+            }
+        } else {
+            for (int s = 0; s < subSetCount; s++) {
+                int[] indices = new int[itemCounts[s]];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = random.nextInt(rowCount);
+                }
+                subSets.add(new DataSetView(dataSet, indices));
+            }
+        }
 
-        int inputSize = dataSet.getInputSize();
-        int outputSize = dataSet.getOutputSize();
+        return subSets;
+    }
 
-        int idxCounter = 0;
-        for(int s=0; s < subSetSizes.length; s++) {
-            // create new sample subset
-            DataSet newSubSet = new DataSet(inputSize, outputSize);
-            // fill subset with rows
-            
-            if (!allowRepetition) {
-                int itemCount =  (int)((double)subSetSizes[s] / 100 * dataSet.size());
-                for (int i = 0; i < itemCount; i++) {
-                    newSubSet.addRow(dataSet.getRowAt(idxCounter));
-                    idxCounter++;
-                }
+    /**
+     * Returns number of rows in each subset
+     */
+    private int[] getItemCounts(int rowCount) {
+        int[] itemCounts = new int[subSetCount];
+        for (int s = 0; s < subSetCount; s++) {
+            if (subSetSizes == null) {
+                itemCounts[s] = rowCount / subSetCount;
             } else {
-                int randomIdx;
-                Random rand = new Random();
-                for (int i = 0; i < subSetSizes[s] /100 * dataSet.size(); i++) {
-                    randomIdx = rand.nextInt(dataSet.size());
-                    newSubSet.addRow(dataSet.getRowAt(randomIdx));
-                    idxCounter++;
-                }
+                itemCounts[s] = (int) ((double) subSetSizes[s] / 100 * rowCount);
             }
-            // add subset to th elist of subsets to return
-            subSets.add(newSubSet);
         }
+        return itemCounts;
+    }
 
-        return subSets;
+    /**
+     * Returns random permutation of indices 0..count-1
+     */
+    static int[] permutation(int count, Random random) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    static Random createRandom(Long seed) {
+        return seed != null ? new Random(seed) : new Random();
     }
 
     /**
@@ -132,6 +168,14 @@ public class SubSampling implements Sampling {
         this.allowRepetition = allowRepetition;
     }
     
+    /**
+     * Sets seed for random generator, so sampling gives the same subsets each time
+     * @param seed random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
  
     
 }
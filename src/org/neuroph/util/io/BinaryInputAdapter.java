@@ -0,0 +1,133 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implementation of InputAdapter interface for reading neural network inputs
+ * in binary format written by {@link BinaryOutputAdapter}: each input is
+ * inputSize doubles in little endian byte order, one input after another,
+ * without headers or separators. Meant for scoring data exchanged between
+ * programs, where parsing and formatting text is not needed.
+ *
+ * @see InputAdapter
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class BinaryInputAdapter implements InputAdapter {
+
+    private final ReadableByteChannel channel;
+
+    private final int inputSize;
+
+    /**
+     * Read buffer, bytes between position and limit are not read yet
+     */
+    private final ByteBuffer buffer;
+
+    private boolean endOfInput;
+
+    /**
+     * Creates adapter which reads inputs of specified size from channel
+     *
+     * @param channel   channel to read from
+     * @param inputSize number of values in each input
+     */
+    public BinaryInputAdapter(ReadableByteChannel channel, int inputSize) {
+        if (inputSize < 1) {
+            throw new IllegalArgumentException("Input size must be positive!");
+        }
+        this.channel = channel;
+        this.inputSize = inputSize;
+        int vectorBytes = inputSize * Double.BYTES;
+        int capacity = Math.max(1, ChannelInputAdapter.DEFAULT_BUFFER_SIZE / vectorBytes) * vectorBytes;
+        this.buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip(); // buffer starts empty
+    }
+
+    /**
+     * Creates adapter which reads inputs of specified size from stream
+     *
+     * @param inputStream stream to read from
+     * @param inputSize   number of values in each input
+     */
+    public BinaryInputAdapter(InputStream inputStream, int inputSize) {
+        this(Channels.newChannel(inputStream), inputSize);
+    }
+
+    /**
+     * Creates adapter which reads inputs of specified size from file
+     *
+     * @param file      file to read from
+     * @param inputSize number of values in each input
+     * @throws IOException if file can't be opened
+     */
+    public BinaryInputAdapter(File file, int inputSize) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), inputSize);
+    }
+
+    /**
+     * Reads next input
+     *
+     * @return next input, or null at the end of input
+     */
+    @Override
+    public double[] readInput() {
+        int vectorBytes = inputSize * Double.BYTES;
+        try {
+            while (buffer.remaining() < vectorBytes && !endOfInput) {
+                buffer.compact();
+                if (channel.read(buffer) < 0) {
+                    endOfInput = true;
+                }
+                buffer.flip();
+            }
+        } catch (IOException ex) {
+            throw new NeurophInputException("Error reading input from channel!", ex);
+        }
+
+        if (buffer.remaining() < vectorBytes) {
+            if (buffer.hasRemaining()) {
+                throw new NeurophInputException("Input ends with incomplete vector of " + buffer.remaining() + " bytes");
+            }
+            return null;
+        }
+
+        double[] input = new double[inputSize];
+        buffer.asDoubleBuffer().get(input);
+        buffer.position(buffer.position() + vectorBytes);
+        return input;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new NeurophInputException("Error closing channel!", ex);
+        }
+    }
+
+}
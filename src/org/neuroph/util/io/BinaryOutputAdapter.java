@@ -0,0 +1,135 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implementation of OutputAdapter interface for writing neural network outputs
+ * in binary format: each output is written as doubles in little endian byte
+ * order, one output after another, without headers or separators. Output can
+ * be read with {@link BinaryInputAdapter}, or by any program which reads
+ * little endian doubles.
+ *
+ * @see OutputAdapter
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class BinaryOutputAdapter implements OutputAdapter {
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates adapter which writes outputs to channel
+     *
+     * @param channel channel to write to
+     */
+    public BinaryOutputAdapter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(ChannelOutputAdapter.DEFAULT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Creates adapter which writes outputs to stream
+     *
+     * @param outputStream stream to write to
+     */
+    public BinaryOutputAdapter(OutputStream outputStream) {
+        this(Channels.newChannel(outputStream));
+    }
+
+    /**
+     * Creates adapter which writes outputs to file
+     *
+     * @param file file to write to
+     * @throws IOException if file can't be created
+     */
+    public BinaryOutputAdapter(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes specified output
+     *
+     * @param output output vector to write
+     */
+    @Override
+    public void writeOutput(double[] output) {
+        try {
+            int from = 0;
+            while (from < output.length) {
+                if (buffer.remaining() < Double.BYTES) {
+                    drain();
+                }
+                int count = Math.min(output.length - from, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(output, from, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                from += count;
+            }
+        } catch (IOException ex) {
+            throw new NeurophOutputException("Error writing output to channel!", ex);
+        }
+    }
+
+    /**
+     * Writes buffered bytes to channel
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes buffered outputs to channel
+     */
+    public void flush() {
+        try {
+            drain();
+        } catch (IOException ex) {
+            throw new NeurophOutputException("Error writing output to channel!", ex);
+        }
+    }
+
+    /**
+     * Writes buffered outputs and closes channel
+     */
+    @Override
+    public void close() {
+        try {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        } catch (IOException ex) {
+            throw new NeurophOutputException("Error closing channel!", ex);
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import org.neuroph.core.data.CsvParser;
+
+/**
+ * Implementation of InputAdapter interface for reading neural network inputs
+ * from text lines, with values separated by whitespace or single character
+ * delimiter. Unlike {@link InputStreamAdapter}, this adapter reads bytes from
+ * channel into one reusable buffer and parses values directly from bytes (see
+ * {@link CsvParser}), so no strings are created while reading. Only the
+ * returned input arrays are allocated.
+ *
+ * @see InputAdapter
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class ChannelInputAdapter implements InputAdapter {
+
+    /**
+     * Default size of read buffer in bytes
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final CsvParser parser;
+
+    private final int inputSize;
+
+    /**
+     * Read buffer, bytes between position and limit are not parsed yet
+     */
+    private ByteBuffer buffer;
+
+    private boolean endOfInput;
+
+    private long lineNumber;
+
+    /**
+     * Creates adapter which reads whitespace delimited inputs from specified
+     * channel
+     *
+     * @param channel   channel to read from
+     * @param inputSize number of values in each input
+     */
+    public ChannelInputAdapter(ReadableByteChannel channel, int inputSize) {
+        this(channel, inputSize, " ");
+    }
+
+    /**
+     * Creates adapter which reads delimited inputs from specified channel
+     *
+     * @param channel   channel to read from
+     * @param inputSize number of values in each input
+     * @param delimiter value delimiter, see {@link CsvParser} for supported
+     *                  delimiters
+     */
+    public ChannelInputAdapter(ReadableByteChannel channel, int inputSize, String delimiter) {
+        if (inputSize < 1) {
+            throw new IllegalArgumentException("Input size must be positive!");
+        }
+        this.channel = channel;
+        this.inputSize = inputSize;
+        this.parser = new CsvParser(inputSize, delimiter);
+        this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        buffer.flip(); // buffer starts empty
+    }
+
+    /**
+     * Creates adapter which reads whitespace delimited inputs from specified
+     * input stream
+     *
+     * @param inputStream stream to read from
+     * @param inputSize   number of values in each input
+     */
+    public ChannelInputAdapter(InputStream inputStream, int inputSize) {
+        this(Channels.newChannel(inputStream), inputSize);
+    }
+
+    /**
+     * Creates adapter which reads delimited inputs from specified file
+     *
+     * @param file      file to read from
+     * @param inputSize number of values in each input
+     * @param delimiter value delimiter
+     * @throws IOException if file can't be opened
+     */
+    public ChannelInputAdapter(File file, int inputSize, String delimiter) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), inputSize, delimiter);
+    }
+
+    /**
+     * Reads next input. Empty lines are skipped.
+     *
+     * @return next input, or null at the end of input
+     */
+    @Override
+    public double[] readInput() {
+        try {
+            while (true) {
+                int lineEnd = findLineEnd();
+                while (lineEnd < 0 && !endOfInput) {
+                    fill();
+                    lineEnd = findLineEnd();
+                }
+                if (lineEnd < 0) {
+                    if (!buffer.hasRemaining()) {
+                        return null;
+                    }
+                    lineEnd = buffer.limit(); // last line without line separator
+                }
+
+                int lineStart = buffer.position();
+                buffer.position(lineEnd < buffer.limit() ? lineEnd + 1 : lineEnd);
+                lineNumber++;
+
+                double[] input = new double[inputSize];
+                int count;
+                try {
+                    count = parser.parseLine(buffer.array(), lineStart, lineEnd, input, 0);
+                } catch (NumberFormatException ex) {
+                    throw new NeurophInputException("Invalid value in line " + lineNumber + ": " + ex.getMessage(), ex);
+                }
+                if (count == inputSize) {
+                    return input;
+                }
+                if (count > 0) {
+                    throw new NeurophInputException("Line " + lineNumber + " has " + count + " values, expected " + inputSize);
+                }
+            }
+        } catch (IOException ex) {
+            throw new NeurophInputException("Error reading input from channel!", ex);
+        }
+    }
+
+    /**
+     * Returns index of the next line separator in buffer, or -1 if buffer
+     * does not contain whole line
+     */
+    private int findLineEnd() {
+        byte[] bytes = buffer.array();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves unparsed bytes to the start of buffer and reads more bytes.
+     * Buffer grows if it is full of one long line.
+     */
+    private void fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        int read = channel.read(buffer);
+        while (read == 0) { // non blocking channel
+            Thread.yield();
+            read = channel.read(buffer);
+        }
+        if (read < 0) {
+            endOfInput = true;
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new NeurophInputException("Error closing channel!", ex);
+        }
+    }
+
+}
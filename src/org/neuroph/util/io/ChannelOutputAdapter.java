@@ -0,0 +1,240 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implementation of OutputAdapter interface for writing neural network outputs
+ * as text lines to channel. Values are formatted straight into one reusable
+ * byte buffer, which is written to channel when it fills up.
+ * <p/>
+ * By default values are written with full precision, as
+ * {@link Double#toString(double)} writes them. When number of fraction digits
+ * is set, values are written with that many digits after decimal point,
+ * without creating any objects.
+ *
+ * @see OutputAdapter
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class ChannelOutputAdapter implements OutputAdapter {
+
+    /**
+     * Default size of write buffer in bytes
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Longest formatted value: sign, 17 integer digits, point and 12 fraction digits
+     */
+    private static final int MAX_VALUE_LENGTH = 32;
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+        1000000000L, 10000000000L, 100000000000L, 1000000000000L
+    };
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final byte delimiter;
+
+    /**
+     * Number of digits after decimal point, or -1 for full precision
+     */
+    private int fractionDigits = -1;
+
+    /**
+     * Creates adapter which writes space delimited outputs to specified channel
+     *
+     * @param channel channel to write to
+     */
+    public ChannelOutputAdapter(WritableByteChannel channel) {
+        this(channel, ' ');
+    }
+
+    /**
+     * Creates adapter which writes delimited outputs to specified channel
+     *
+     * @param channel   channel to write to
+     * @param delimiter value delimiter
+     */
+    public ChannelOutputAdapter(WritableByteChannel channel, char delimiter) {
+        if (delimiter > 127) {
+            throw new IllegalArgumentException("Delimiter must be ASCII character!");
+        }
+        this.channel = channel;
+        this.delimiter = (byte) delimiter;
+        this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates adapter which writes space delimited outputs to specified stream
+     *
+     * @param outputStream stream to write to
+     */
+    public ChannelOutputAdapter(OutputStream outputStream) {
+        this(Channels.newChannel(outputStream));
+    }
+
+    /**
+     * Creates adapter which writes delimited outputs to specified file
+     *
+     * @param file      file to write to
+     * @param delimiter value delimiter
+     * @throws IOException if file can't be created
+     */
+    public ChannelOutputAdapter(File file, char delimiter) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), delimiter);
+    }
+
+    /**
+     * Sets number of digits written after decimal point. Values too large for
+     * fixed point format are written with full precision.
+     *
+     * @param fractionDigits number of fraction digits (0-12), or -1 for full
+     *                       precision
+     */
+    public void setFractionDigits(int fractionDigits) {
+        if (fractionDigits < -1 || fractionDigits >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Fraction digits must be between -1 and " + (POWERS_OF_TEN.length - 1));
+        }
+        this.fractionDigits = fractionDigits;
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    /**
+     * Writes specified output as one line
+     *
+     * @param output output vector to write
+     */
+    @Override
+    public void writeOutput(double[] output) {
+        try {
+            for (int i = 0; i < output.length; i++) {
+                if (buffer.remaining() < MAX_VALUE_LENGTH + 1) {
+                    drain();
+                }
+                if (i > 0) {
+                    buffer.put(delimiter);
+                }
+                putValue(output[i]);
+            }
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) '\n');
+        } catch (IOException ex) {
+            throw new NeurophOutputException("Error writing output to channel!", ex);
+        }
+    }
+
+    private void putValue(double value) {
+        if (fractionDigits >= 0) {
+            long scale = POWERS_OF_TEN[fractionDigits];
+            // fixed point only if scaled value fits in long with all its digits
+            if (Math.abs(value) < 1e17 / scale) {
+                long scaled = Math.round(value * scale);
+                if (scaled < 0) {
+                    buffer.put((byte) '-');
+                    scaled = -scaled;
+                }
+                putDigits(scaled / scale, 1);
+                if (fractionDigits > 0) {
+                    buffer.put((byte) '.');
+                    putDigits(scaled % scale, fractionDigits);
+                }
+                return;
+            }
+        }
+
+        String text = Double.toString(value);
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes decimal digits of non negative number, padded with leading zeros
+     * to specified number of digits
+     */
+    private void putDigits(long number, int digits) {
+        int count = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10) {
+            count++;
+        }
+        for (int i = count; i < digits; i++) {
+            buffer.put((byte) '0');
+        }
+        int end = buffer.position() + count;
+        for (int i = end - 1; i >= end - count; i--) {
+            buffer.put(i, (byte) ('0' + number % 10));
+            number /= 10;
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * Writes buffered bytes to channel
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes buffered outputs to channel
+     */
+    public void flush() {
+        try {
+            drain();
+        } catch (IOException ex) {
+            throw new NeurophOutputException("Error writing output to channel!", ex);
+        }
+    }
+
+    /**
+     * Writes buffered outputs and closes channel
+     */
+    @Override
+    public void close() {
+        try {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        } catch (IOException ex) {
+            throw new NeurophOutputException("Error closing channel!", ex);
+        }
+    }
+
+}
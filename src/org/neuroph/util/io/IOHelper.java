@@ -17,6 +17,9 @@
 package org.neuroph.util.io;
 
 import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.util.compiled.CompiledNetwork;
+import org.neuroph.util.compiled.InferenceSession;
 
 /**
  * <pre>
@@ -28,6 +31,11 @@ import org.neuroph.core.NeuralNetwork;
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
 public class IOHelper {
+
+    /**
+     * Default number of rows passed between pipeline stages at once
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
     
     /**
      * Feeds specified neural network with data from InputAdapter and writes
@@ -49,5 +57,79 @@ public class IOHelper {
         in.close();
         out.close();         
     }
+
+    /**
+     * Feeds specified neural network with data from InputAdapter and writes
+     * output using OutputAdapter, calculating outputs on specified number of
+     * threads. See {@link #process(CompiledNetwork, InputAdapter, OutputAdapter, int, int)}.
+     * Network is compiled if possible, otherwise each thread uses its own copy
+     * of the network.
+     *
+     * @param neuralNet neural network
+     * @param in input data source
+     * @param out output data target
+     * @param threads number of threads which calculate outputs
+     */
+    public static void process(NeuralNetwork<?> neuralNet, InputAdapter in, OutputAdapter out, int threads) {
+        process(neuralNet, in, out, threads, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Feeds specified neural network with data from InputAdapter and writes
+     * output using OutputAdapter, calculating outputs on specified number of
+     * threads.
+     *
+     * @param neuralNet neural network
+     * @param in input data source
+     * @param out output data target
+     * @param threads number of threads which calculate outputs
+     * @param batchSize number of rows passed between stages at once
+     */
+    public static void process(NeuralNetwork<?> neuralNet, InputAdapter in, OutputAdapter out, int threads, int batchSize) {
+        CompiledNetwork compiled;
+        try {
+            compiled = CompiledNetwork.compile(neuralNet);
+        } catch (NeurophException ex) {
+            // network is not supported by compiled network, calculate with network copies
+            NeuralNetwork<?> shared = neuralNet.clone();
+            new ScoringPipeline(in, out, () -> {
+                NeuralNetwork<?> replica = shared.copy(true);
+                return input -> {
+                    replica.setInput(input);
+                    replica.calculate();
+                    return replica.getOutput().clone();
+                };
+            }, threads, batchSize).run();
+            return;
+        }
+        process(compiled, in, out, threads, batchSize);
+    }
+
+    /**
+     * Feeds specified compiled network with data from InputAdapter and writes
+     * output using OutputAdapter. Reader thread reads batches of inputs,
+     * specified number of worker threads calculate outputs, each with its own
+     * inference session, and the calling thread writes outputs in the same
+     * order as inputs were read. Stages are connected with bounded queues, so
+     * reading is paused when outputs are not calculated or written fast enough.
+     * Input adapter must return new array for each input. Adapters are closed
+     * when processing finishes or fails.
+     *
+     * @param network compiled network
+     * @param in input data source
+     * @param out output data target
+     * @param threads number of threads which calculate outputs
+     * @param batchSize number of rows passed between stages at once
+     */
+    public static void process(CompiledNetwork network, InputAdapter in, OutputAdapter out, int threads, int batchSize) {
+        new ScoringPipeline(in, out, () -> {
+            InferenceSession session = network.newSession();
+            return input -> {
+                double[] output = new double[network.getOutputsCount()];
+                session.predict(input, output);
+                return output;
+            };
+        }, threads, batchSize).run();
+    }
     
 }
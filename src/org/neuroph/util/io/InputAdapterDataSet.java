@@ -0,0 +1,100 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.StreamingDataSet;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * Data set which streams training rows from any input adapter. Since adapters
+ * can be read only once, new adapter is created by specified factory for each
+ * pass through the data set. Each vector read from adapter contains input
+ * values followed by output values.
+ *
+ * @see InputAdapter
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class InputAdapterDataSet extends StreamingDataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient Supplier<? extends InputAdapter> adapterFactory;
+
+    /**
+     * Creates unsupervised data set which reads rows from adapters created by
+     * specified factory
+     *
+     * @param adapterFactory creates new input adapter for each pass
+     * @param inputSize      number of inputs
+     */
+    public InputAdapterDataSet(Supplier<? extends InputAdapter> adapterFactory, int inputSize) {
+        super(inputSize);
+        if (adapterFactory == null) throw new IllegalArgumentException("Adapter factory cannot be null!");
+        this.adapterFactory = adapterFactory;
+    }
+
+    /**
+     * Creates supervised data set which reads rows from adapters created by
+     * specified factory
+     *
+     * @param adapterFactory creates new input adapter for each pass
+     * @param inputSize      number of inputs
+     * @param outputSize     number of outputs
+     */
+    public InputAdapterDataSet(Supplier<? extends InputAdapter> adapterFactory, int inputSize, int outputSize) {
+        super(inputSize, outputSize);
+        if (adapterFactory == null) throw new IllegalArgumentException("Adapter factory cannot be null!");
+        if (outputSize < 1) throw new IllegalArgumentException("Supervised data set needs at least one output : " + outputSize);
+        this.adapterFactory = adapterFactory;
+    }
+
+    @Override
+    protected RowSource openSource() {
+        if (adapterFactory == null) {
+            throw new NeurophInputException("Input adapter factory is not available!");
+        }
+
+        final InputAdapter adapter = adapterFactory.get();
+        final int inputSize = getInputSize();
+        final int outputSize = getOutputSize();
+
+        return new RowSource() {
+            @Override
+            public DataSetRow nextRow() {
+                double[] values = adapter.readInput();
+                if (values == null) {
+                    return null;
+                }
+                if (values.length != inputSize + outputSize) {
+                    throw new VectorSizeMismatchException("Input adapter returned " + values.length + " values, expected " + (inputSize + outputSize));
+                }
+                if (outputSize == 0) {
+                    return new DataSetRow(Arrays.copyOf(values, inputSize));
+                }
+                return new DataSetRow(Arrays.copyOf(values, inputSize), Arrays.copyOfRange(values, inputSize, values.length));
+            }
+
+            @Override
+            public void close() {
+                adapter.close();
+            }
+        };
+    }
+}
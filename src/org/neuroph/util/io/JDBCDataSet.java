@@ -0,0 +1,232 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.StreamingDataSet;
+
+/**
+ * Data set which streams training rows from database query, without loading
+ * them in memory. Query is executed again for each pass through the data set,
+ * unless cache file is set (see {@link StreamingDataSet#setCacheFile}), in which
+ * case later passes are read from local memory mapped cache.
+ * <p/>
+ * Columns are mapped to inputs and outputs by their (1 based) index in result set.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class JDBCDataSet extends StreamingDataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default number of rows fetched from database at once
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private transient Connection connection;
+
+    private final String sql;
+
+    /**
+     * Result set columns (1 based) used as inputs
+     */
+    private final int[] inputColumns;
+
+    /**
+     * Result set columns (1 based) used as outputs
+     */
+    private final int[] outputColumns;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * Creates unsupervised data set for query whose first inputSize columns
+     * are inputs.
+     *
+     * @param connection database connection
+     * @param sql        query which returns data set rows
+     * @param inputSize  number of inputs
+     */
+    public JDBCDataSet(Connection connection, String sql, int inputSize) {
+        this(connection, sql, columnRange(1, inputSize));
+    }
+
+    /**
+     * Creates supervised data set for query whose first inputSize columns are
+     * inputs, and next outputSize columns are outputs.
+     *
+     * @param connection database connection
+     * @param sql        query which returns data set rows
+     * @param inputSize  number of inputs
+     * @param outputSize number of outputs
+     */
+    public JDBCDataSet(Connection connection, String sql, int inputSize, int outputSize) {
+        this(connection, sql, columnRange(1, inputSize), columnRange(inputSize + 1, outputSize));
+    }
+
+    /**
+     * Creates unsupervised data set for query with specified input columns
+     *
+     * @param connection   database connection
+     * @param sql          query which returns data set rows
+     * @param inputColumns result set columns (1 based) used as inputs
+     */
+    public JDBCDataSet(Connection connection, String sql, int[] inputColumns) {
+        super(inputColumns.length);
+        checkArguments(connection, sql, inputColumns);
+
+        this.connection = connection;
+        this.sql = sql;
+        this.inputColumns = inputColumns.clone();
+        this.outputColumns = new int[0];
+    }
+
+    /**
+     * Creates supervised data set for query with specified mapping of columns
+     * to inputs and outputs
+     *
+     * @param connection    database connection
+     * @param sql           query which returns data set rows
+     * @param inputColumns  result set columns (1 based) used as inputs
+     * @param outputColumns result set columns (1 based) used as outputs
+     */
+    public JDBCDataSet(Connection connection, String sql, int[] inputColumns, int[] outputColumns) {
+        super(inputColumns.length, outputColumns.length);
+        checkArguments(connection, sql, inputColumns);
+        if (outputColumns.length == 0) throw new IllegalArgumentException("At least one output column is required!");
+
+        this.connection = connection;
+        this.sql = sql;
+        this.inputColumns = inputColumns.clone();
+        this.outputColumns = outputColumns.clone();
+    }
+
+    private static void checkArguments(Connection connection, String sql, int[] inputColumns) {
+        if (connection == null) throw new IllegalArgumentException("Connection cannot be null!");
+        if (sql == null) throw new IllegalArgumentException("Query cannot be null!");
+        if (inputColumns.length == 0) throw new IllegalArgumentException("At least one input column is required!");
+    }
+
+    private static int[] columnRange(int first, int count) {
+        int[] columns = new int[count];
+        for (int i = 0; i < count; i++) {
+            columns[i] = first + i;
+        }
+        return columns;
+    }
+
+    /**
+     * Returns number of rows fetched from database at once
+     *
+     * @return fetch size
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets number of rows fetched from database at once. Note that some
+     * drivers need additional settings to stream results (for example
+     * PostgreSQL requires auto commit to be disabled).
+     *
+     * @param fetchSize fetch size
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("Fetch size cannot be < 0 : " + fetchSize);
+        this.fetchSize = fetchSize;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    protected RowSource openSource() {
+        if (connection == null) {
+            throw new NeurophInputException("Database connection is not available!");
+        }
+
+        try {
+            Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                statement.setFetchSize(fetchSize);
+                return new ResultSetSource(statement, statement.executeQuery(sql));
+            } catch (SQLException ex) {
+                statement.close();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new NeurophInputException("Error executing query at JDBCDataSet", ex);
+        }
+    }
+
+    /**
+     * Reads data set rows from result set of a single query execution
+     */
+    private class ResultSetSource implements RowSource {
+
+        private final Statement statement;
+
+        private final ResultSet resultSet;
+
+        ResultSetSource(Statement statement, ResultSet resultSet) {
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public DataSetRow nextRow() {
+            try {
+                if (!resultSet.next()) {
+                    return null;
+                }
+
+                double[] input = new double[inputColumns.length];
+                for (int i = 0; i < input.length; i++) {
+                    input[i] = resultSet.getDouble(inputColumns[i]);
+                }
+
+                if (outputColumns.length == 0) {
+                    return new DataSetRow(input);
+                }
+
+                double[] output = new double[outputColumns.length];
+                for (int i = 0; i < output.length; i++) {
+                    output[i] = resultSet.getDouble(outputColumns[i]);
+                }
+                return new DataSetRow(input, output);
+            } catch (SQLException ex) {
+                throw new NeurophInputException("Error reading data set row from the result set!", ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                resultSet.close();
+                statement.close();
+            } catch (SQLException ex) {
+                throw new NeurophInputException("Error closing result set!", ex);
+            }
+        }
+    }
+}
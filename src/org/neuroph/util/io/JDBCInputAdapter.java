@@ -26,21 +26,50 @@ import java.util.logging.Logger;
 
 /**
  * Implementation of InputAdapter interface for reading neural network inputs from database.
+ * Query is executed with forward only, read only cursor which fetches
+ * fetchSize rows from database at once. Note that some drivers need
+ * additional settings to stream results (for example PostgreSQL requires
+ * auto commit to be disabled).
  * @see InputAdapter
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
 public class JDBCInputAdapter implements InputAdapter {
+    Statement statement;
     ResultSet resultSet;
     int inputSize;
 
-    public JDBCInputAdapter(Connection connection, String sql) {   
+    /**
+     * Creates new JDBCInputAdapter which reads inputs from all columns of
+     * specified query, fetching JDBCDataSet.DEFAULT_FETCH_SIZE rows at once
+     * @param connection database connection
+     * @param sql query which returns inputs
+     */
+    public JDBCInputAdapter(Connection connection, String sql) {
+        this(connection, sql, JDBCDataSet.DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Creates new JDBCInputAdapter which reads inputs from all columns of
+     * specified query
+     * @param connection database connection
+     * @param sql query which returns inputs
+     * @param fetchSize number of rows fetched from database at once, 0 for driver default
+     */
+    public JDBCInputAdapter(Connection connection, String sql, int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("Fetch size cannot be < 0 : " + fetchSize);
         try {
-            Statement stmt = connection.createStatement(); // Get a statement from the connection
-            resultSet = stmt.executeQuery(sql);  // Execute the query  
+            statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            resultSet = statement.executeQuery(sql);  // Execute the query  
             ResultSetMetaData rsmd = resultSet.getMetaData();
             inputSize = rsmd.getColumnCount();
         } catch (SQLException ex) {
             Logger.getLogger(JDBCInputAdapter.class.getName()).log(Level.SEVERE, null, ex);
+            try {
+                close();
+            } catch (NeurophInputException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
             throw new NeurophInputException("Error executing query at JdbcInputAdapter", ex);
         }
     }
@@ -52,7 +81,7 @@ public class JDBCInputAdapter implements InputAdapter {
     @Override
     public double[] readInput() {
         try {
-            while (resultSet.next()) {
+            if (resultSet.next()) {
                 double[] inputBuffer = new double[inputSize];
                 for (int i = 1; i <= inputSize; i++) {
                     inputBuffer[i - 1] = resultSet.getDouble(i);
@@ -67,15 +96,20 @@ public class JDBCInputAdapter implements InputAdapter {
     }
 
     /**
-     * Closes result set used as data source.
+     * Closes result set and statement used as data source.
      */
     @Override
     public void close() {
         try {
-             if (resultSet != null)
-                  resultSet.close();
+            if (resultSet != null)
+                resultSet.close();
+            if (statement != null)
+                statement.close();
         } catch (SQLException ex) {
             throw new NeurophInputException("Error closing database connection!", ex);
+        } finally {
+            resultSet = null;
+            statement = null;
         }
     }
-}
\ No newline at end of file
+}
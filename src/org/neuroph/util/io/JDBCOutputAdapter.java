@@ -19,71 +19,183 @@ package org.neuroph.util.io;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Implementation of OutputAdapter interface for writing neural network outputs to database.
+ * Outputs are inserted as table rows with one prepared statement, which sends
+ * rows to database in batches of batchSize rows.
+ * <p/>
+ * If connection is in auto commit mode, adapter turns auto commit off while
+ * writing and commits after each batch, so each batch is one transaction;
+ * auto commit is restored on close. Otherwise adapter writes in the caller's
+ * transaction and leaves commit to the caller.
+ * <p/>
+ * Outputs are written to database when batch is full, on flush and on close,
+ * so close must be called after the last output.
  * @see OutputAdapter
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
 public class JDBCOutputAdapter implements OutputAdapter {
+
+    /**
+     * Default number of rows sent to database at once
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     Connection connection;
     String tableName;
 
+    private final int batchSize;
+
+    /**
+     * Insert statement, prepared when the first output is written
+     */
+    private PreparedStatement statement;
+
+    /**
+     * Number of output values in each row
+     */
+    private int columnCount;
+
+    /**
+     * Number of rows added to batch and not yet sent to database
+     */
+    private int pendingRows;
+
+    /**
+     * True if adapter turned off auto commit and commits batches itself
+     */
+    private boolean commitBatches;
+
     /**
      * Creates new JDBCOutputAdapter with specifed database connection and table
      * @param connection database connection
      * @param tableName  table to put data into
      */
     public JDBCOutputAdapter(Connection connection, String tableName) {
+        this(connection, tableName, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates new JDBCOutputAdapter with specifed database connection, table
+     * and batch size
+     * @param connection database connection
+     * @param tableName  table to put data into
+     * @param batchSize  number of rows sent to database at once
+     */
+    public JDBCOutputAdapter(Connection connection, String tableName, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive : " + batchSize);
         this.connection = connection;
         this.tableName = tableName;
+        this.batchSize = batchSize;
     }
 
     /**
-     * Writes specified output to table in database
-     * @param output 
+     * Adds specified output to batch of rows inserted into table, and sends
+     * the batch to database when it is full
+     * @param output neural network output
      */
     @Override
     public void writeOutput(double[] output) {
         try {
-            String sql = "INSERT " + tableName + " VALUES(";
-            for (int i = 0; i < output.length; i++) {
-                sql += "?";
-                if (i < (output.length - 1)) {  // add coma if not last
-                    sql = ", ";
-                }
+            if (statement == null) {
+                prepare(output.length);
+            } else if (output.length != columnCount) {
+                throw new NeurophOutputException("Output size " + output.length + " does not match table insert size " + columnCount);
             }
-            sql += ")";            
-            
-//            for (int i = 0; i < output.length; i++) {
-//                sql += output[i];
-//                if (i < (output.length - 1)) {
-//                    sql = ", ";
-//                }
-//            }
-
-
-//            Statement stmt = connection.createStatement();
 
-            PreparedStatement stmt = connection.prepareStatement(sql);
             for (int i = 0; i < output.length; i++) {
-                stmt.setDouble(i, output[i]);
+                statement.setDouble(i + 1, output[i]);
             }
+            statement.addBatch();
+            pendingRows++;
 
-            stmt.executeUpdate(sql);
-            stmt.close();
+            if (pendingRows == batchSize) {
+                flush();
+            }
+        } catch (SQLException ex) {
+            throw failure("Error executing query at JDBCOutputAdapter", ex);
+        }
+    }
+
+    private void prepare(int columnCount) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" VALUES(");
+        for (int i = 0; i < columnCount; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+            commitBatches = true;
+        }
+        this.statement = connection.prepareStatement(sql.toString());
+        this.columnCount = columnCount;
+    }
 
+    /**
+     * Sends rows added since the last batch to database
+     */
+    public void flush() {
+        if (pendingRows == 0) {
+            return;
+        }
+        try {
+            statement.executeBatch();
+            if (commitBatches) {
+                connection.commit();
+            }
+            pendingRows = 0;
         } catch (SQLException ex) {
-            Logger.getLogger(JDBCOutputAdapter.class.getName()).log(Level.SEVERE, null, ex);
-            throw new NeurophInputException("Error executing query at JDBCOutputAdapter", ex);
+            // drop failed rows, so that close does not send them again
+            pendingRows = 0;
+            try {
+                statement.clearBatch();
+            } catch (SQLException clearEx) {
+                ex.addSuppressed(clearEx);
+            }
+            throw failure("Error executing batch insert at JDBCOutputAdapter", ex);
         }
+    }
 
+    /**
+     * Rolls back the current batch if adapter commits batches, and returns
+     * exception to throw
+     */
+    private NeurophOutputException failure(String message, SQLException ex) {
+        if (commitBatches) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                ex.addSuppressed(rollbackEx);
+            }
+        }
+        return new NeurophOutputException(message, ex);
     }
 
+    /**
+     * Writes remaining rows, closes the statement and restores auto commit
+     * mode of the connection
+     */
     @Override
     public void close() {
+        if (statement == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            try {
+                statement.close();
+                if (commitBatches) {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                throw new NeurophOutputException("Error closing statement at JDBCOutputAdapter", ex);
+            } finally {
+                statement = null;
+                commitBatches = false;
+            }
+        }
     }
 }
@@ -30,6 +30,11 @@ public class OutputStreamAdapter implements OutputAdapter {
 
     protected BufferedWriter bufferedWriter;
 
+    /**
+     * Line buffer reused for all outputs
+     */
+    private final StringBuilder outputLine = new StringBuilder();
+
     /**
      * Creates a new OutputStreamAdapter for specified output stream.
      */      
@@ -51,13 +56,16 @@ public class OutputStreamAdapter implements OutputAdapter {
     @Override
     public void writeOutput(double[] output) {
         try {
-            StringBuilder outputLine = new StringBuilder();
+            outputLine.setLength(0);
             for (int i = 0; i < output.length; i++) {
-                outputLine.append(output[i]).append(' ').append(outputLine);
+                if (i > 0) {
+                    outputLine.append(' ');
+                }
+                outputLine.append(output[i]);
             }
             outputLine.append(System.lineSeparator());
-            
-            bufferedWriter.write(outputLine.toString());
+
+            bufferedWriter.append(outputLine);
         } catch (IOException ex) {
             throw new NeurophOutputException("Error writing output to stream!", ex);
         }
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Pipeline which reads inputs on reader thread, calculates outputs on worker
+ * threads and writes outputs on the calling thread, in the same order as
+ * inputs were read. Stages pass batches of rows through bounded queues, so
+ * reader blocks when workers or writer fall behind.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+class ScoringPipeline {
+
+    /**
+     * Marks the end of input in queues
+     */
+    private static final Batch END = new Batch(null);
+
+    private final InputAdapter in;
+
+    private final OutputAdapter out;
+
+    private final Supplier<UnaryOperator<double[]>> scorers;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    /**
+     * Batches waiting for a worker
+     */
+    private final BlockingQueue<Batch> work;
+
+    /**
+     * Batches in input order, waiting to be written
+     */
+    private final BlockingQueue<Batch> pending;
+
+    /**
+     * Batch of rows, its outputs are set by worker
+     */
+    private static class Batch {
+
+        final List<double[]> inputs;
+
+        double[][] outputs;
+
+        Throwable error;
+
+        boolean done;
+
+        Batch(List<double[]> inputs) {
+            this.inputs = inputs;
+        }
+
+        synchronized void complete(double[][] outputs, Throwable error) {
+            this.outputs = outputs;
+            this.error = error;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (!done) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * @param scorers creates scoring function for each worker; function
+     * returns output array which is not reused for other rows
+     */
+    ScoringPipeline(InputAdapter in, OutputAdapter out, Supplier<UnaryOperator<double[]>> scorers, int threads, int batchSize) {
+        if (threads < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Number of threads and batch size must be positive!");
+        }
+        this.in = in;
+        this.out = out;
+        this.scorers = scorers;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        // two batches per worker keep workers busy while writer catches up
+        this.work = new ArrayBlockingQueue<>(2 * threads);
+        this.pending = new ArrayBlockingQueue<>(4 * threads);
+    }
+
+    /**
+     * Runs the pipeline until all inputs are written, or one of the stages
+     * fails. Closes input and output adapters.
+     */
+    void run() {
+        List<Thread> stages = new ArrayList<>(threads + 1);
+        Batch readerFailure = new Batch(null);
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                UnaryOperator<double[]> scorer = scorers.get();
+                stages.add(new Thread(() -> score(scorer), "IOHelper worker " + (i + 1)));
+            }
+            stages.add(new Thread(() -> read(readerFailure), "IOHelper reader"));
+            for (Thread stage : stages) {
+                stage.setDaemon(true);
+                stage.start();
+            }
+
+            write();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NeurophException("Processing was interrupted!", ex);
+        } finally {
+            for (Thread stage : stages) {
+                stage.interrupt(); // stops remaining stages after failure
+            }
+            try {
+                in.close();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads batches of inputs, runs on reader thread
+     */
+    private void read(Batch failure) {
+        try {
+            try {
+                List<double[]> inputs = new ArrayList<>(batchSize);
+                double[] input;
+                while ((input = in.readInput()) != null) {
+                    inputs.add(input);
+                    if (inputs.size() == batchSize) {
+                        submit(new Batch(inputs));
+                        inputs = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!inputs.isEmpty()) {
+                    submit(new Batch(inputs));
+                }
+            } catch (RuntimeException | Error ex) {
+                failure.complete(null, ex);
+                pending.put(failure);
+            }
+            pending.put(END);
+            for (int i = 0; i < threads; i++) {
+                work.put(END);
+            }
+        } catch (InterruptedException ex) {
+            // pipeline was stopped
+        }
+    }
+
+    private void submit(Batch batch) throws InterruptedException {
+        pending.put(batch); // keeps input order for writer
+        work.put(batch);
+    }
+
+    /**
+     * Calculates outputs for batches, runs on worker threads
+     */
+    private void score(UnaryOperator<double[]> scorer) {
+        try {
+            Batch batch;
+            while ((batch = work.take()) != END) {
+                try {
+                    double[][] outputs = new double[batch.inputs.size()][];
+                    for (int i = 0; i < outputs.length; i++) {
+                        outputs[i] = scorer.apply(batch.inputs.get(i));
+                    }
+                    batch.complete(outputs, null);
+                } catch (RuntimeException | Error ex) {
+                    batch.complete(null, ex); // writer stops at this batch
+                }
+            }
+        } catch (InterruptedException ex) {
+            // pipeline was stopped
+        }
+    }
+
+    /**
+     * Writes outputs in input order, runs on the calling thread
+     */
+    private void write() throws InterruptedException {
+        Batch batch;
+        while ((batch = pending.take()) != END) {
+            batch.await();
+            if (batch.error instanceof RuntimeException) {
+                throw (RuntimeException) batch.error;
+            } else if (batch.error instanceof Error) {
+                throw (Error) batch.error;
+            }
+            for (double[] output : batch.outputs) {
+                out.writeOutput(output);
+            }
+        }
+    }
+
+}
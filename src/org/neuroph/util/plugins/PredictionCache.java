@@ -0,0 +1,357 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.plugins;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.events.NeuralNetworkEvent;
+import org.neuroph.core.events.NeuralNetworkEventListener;
+import org.neuroph.util.compiled.ModelVersion;
+
+/**
+ * Plugin which caches network outputs by input, for scoring workloads where
+ * the same inputs repeat. Cache holds at most maxSize outputs and evicts the
+ * least recently used one when it is full.
+ * <p/>
+ * Input values can be rounded to multiples of specified precision before
+ * lookup, so inputs which round to the same values share cache entry. Without
+ * precision, inputs must be exactly equal.
+ * <p/>
+ * Cache is cleared when weights of parent network are changed with
+ * setWeights, randomizeWeights or learn (see
+ * {@link NeuralNetworkEvent.Type#WEIGHTS_CHANGED}) or its layers change.
+ * Changes made directly on weight objects, or during learning which runs in
+ * another thread, are not detected; call {@link #invalidate()} after them.
+ * Cache can also be used for hot swapped models of
+ * {@link org.neuroph.util.compiled.ModelRegistry}: it is cleared when
+ * prediction for a different model version is requested.
+ * <pre>
+ * PredictionCache cache = new PredictionCache(10000);
+ * network.addPlugin(cache);
+ * double[] output = cache.predict(input);
+ * </pre>
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class PredictionCache extends PluginBase implements NeuralNetworkEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    /**
+     * Precision of key values, or 0 if inputs are not quantized
+     */
+    private final double keyPrecision;
+
+    /**
+     * Cached outputs in access order
+     */
+    private transient Map<Key, double[]> entries;
+
+    /**
+     * Network or model version whose outputs are cached
+     */
+    private transient Object owner;
+
+    /**
+     * Incremented on each invalidation, outputs calculated before
+     * invalidation are not cached
+     */
+    private transient long generation;
+
+    /**
+     * Network this cache listens to for weight changes
+     */
+    private transient NeuralNetwork<?> listening;
+
+    private transient LongAdder hits, misses, evictions;
+
+    /**
+     * Creates cache for exactly matching inputs
+     *
+     * @param maxSize maximum number of cached outputs
+     */
+    public PredictionCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Creates cache for inputs quantized to specified precision
+     *
+     * @param maxSize      maximum number of cached outputs
+     * @param keyPrecision inputs are rounded to multiples of this value before
+     *                     lookup, 0 for exact matching
+     */
+    public PredictionCache(int maxSize, double keyPrecision) {
+        super("Prediction cache");
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive!");
+        }
+        if (keyPrecision < 0 || Double.isNaN(keyPrecision)) {
+            throw new IllegalArgumentException("Key precision can't be negative!");
+        }
+        this.maxSize = maxSize;
+        this.keyPrecision = keyPrecision;
+        init();
+    }
+
+    private void init() {
+        entries = new LinkedHashMap<Key, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // overrides raw signature of PluginBase
+    public void setParentNetwork(NeuralNetwork parentNetwork) {
+        super.setParentNetwork(parentNetwork);
+        invalidate();
+        listen();
+    }
+
+    /**
+     * Registers this cache as listener of parent network. Called again on
+     * prediction, since copied or deserialized plugin is not registered.
+     */
+    private synchronized void listen() {
+        NeuralNetwork<?> network = getParentNetwork();
+        if (listening != network) {
+            if (listening != null) {
+                listening.removeListener(this);
+            }
+            if (network != null) {
+                network.addListener(this);
+            }
+            listening = network;
+        }
+    }
+
+    /**
+     * Returns output of parent network for specified input, from cache if
+     * the input was already calculated
+     *
+     * @param input network input
+     * @return network output, array which must not be modified
+     */
+    public double[] predict(double... input) {
+        NeuralNetwork<?> network = getParentNetwork();
+        if (network == null) {
+            throw new IllegalStateException("Prediction cache is not added to network!");
+        }
+        listen();
+
+        Key key = new Key(input);
+        long calculated;
+        synchronized (this) {
+            double[] output = lookup(network, key);
+            if (output != null) {
+                return output;
+            }
+            calculated = generation;
+        }
+
+        double[] output;
+        synchronized (network) { // network calculation is not thread safe
+            network.setInput(input);
+            network.calculate();
+            output = network.getOutput().clone();
+        }
+        store(key, output, calculated);
+        return output;
+    }
+
+    /**
+     * Returns output of specified model version for specified input, from
+     * cache if the input was already calculated for this version. Outputs of
+     * other versions are removed from cache.
+     *
+     * @param model model version
+     * @param input model input
+     * @return model output, array which must not be modified
+     */
+    public double[] predict(ModelVersion model, double... input) {
+        Key key = new Key(input);
+        long calculated;
+        synchronized (this) {
+            double[] output = lookup(model, key);
+            if (output != null) {
+                return output;
+            }
+            calculated = generation;
+        }
+
+        double[] output = model.getSessionPool().predict(input);
+        store(key, output, calculated);
+        return output;
+    }
+
+    /**
+     * Returns cached output, clearing the cache if it holds outputs of
+     * another owner. Called while holding lock.
+     */
+    private double[] lookup(Object source, Key key) {
+        if (owner != source) {
+            clear();
+            owner = source;
+        }
+        double[] output = entries.get(key);
+        if (output != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return output;
+    }
+
+    private synchronized void store(Key key, double[] output, long calculated) {
+        if (generation == calculated) {
+            entries.put(key, output);
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        generation++;
+    }
+
+    /**
+     * Removes all cached outputs
+     */
+    public synchronized void invalidate() {
+        clear();
+    }
+
+    /**
+     * Clears the cache when weights or layers of parent network change
+     */
+    @Override
+    public void handleNeuralNetworkEvent(NeuralNetworkEvent event) {
+        if (event.getEventType() != NeuralNetworkEvent.Type.CALCULATED) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns number of cached outputs
+     *
+     * @return number of cached outputs
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public double getKeyPrecision() {
+        return keyPrecision;
+    }
+
+    /**
+     * Returns number of predictions answered from cache
+     *
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of predictions which had to be calculated
+     *
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns number of outputs evicted because cache was full
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns share of predictions answered from cache
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : hitCount / (double) total;
+    }
+
+    /**
+     * Cache key: input values, quantized if key precision is set
+     */
+    private final class Key {
+
+        private final long[] values;
+
+        private final int hash;
+
+        Key(double[] input) {
+            values = new long[input.length];
+            for (int i = 0; i < input.length; i++) {
+                double value = input[i];
+                if (keyPrecision > 0) {
+                    values[i] = Math.round(value / keyPrecision);
+                } else {
+                    values[i] = value == 0 ? 0 : Double.doubleToLongBits(value); // same key for -0.0 and 0.0
+                }
+            }
+            hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(values, ((Key) obj).values);
+        }
+    }
+
+}
@@ -19,6 +19,7 @@ package org.neuroph.util.random;
 import org.neuroph.core.Connection;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
 
 /**
  * This class provides distort randomization technique, which distorts existing 
@@ -70,6 +71,11 @@ public class DistortRandomizer extends WeightsRandomizer {
                     connection.getWeight().setValue(distort(weight));
             }
     }       
+
+    @Override
+    public void randomize(Weight weight) {
+        weight.setValue(distort(weight.getValue()));
+    }
     
     
     /**
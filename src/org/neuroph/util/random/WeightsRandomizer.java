@@ -23,6 +23,7 @@ import org.neuroph.core.Connection;
 import org.neuroph.core.Layer;
 import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
 import org.neuroph.core.learning.LearningRule;
 import org.neuroph.nnet.comp.layer.FeatureMapsLayer;
 import org.neuroph.nnet.comp.layer.FeatureMapLayer;
@@ -83,7 +84,8 @@ public class WeightsRandomizer {
     }
 
     /**
-     * Iterate and randomizes all neurons in specified layer
+     * Iterate and randomizes all neurons in specified layer, and weights of
+     * the layer itself (see {@link Layer#getLayerWeights()})
      *
      * @param layer layer to randomize
      */
@@ -91,6 +93,9 @@ public class WeightsRandomizer {
         for (Neuron neuron : layer.getNeurons()) {
             randomize(neuron);
         }
+        for (Weight weight : layer.getLayerWeights()) {
+            randomize(weight);
+        }
     }
 
     /**
@@ -109,6 +114,15 @@ public class WeightsRandomizer {
         }
     }
 
+    /**
+     * Randomizes specified weight which is not a connection weight
+     *
+     * @param weight weight to randomize
+     */
+    public void randomize(Weight weight) {
+        weight.setValue(nextRandomWeight());
+    }
+
     /**
      * Returns next random value from random generator, that will be used to initialize weight
      *
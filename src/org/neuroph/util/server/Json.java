@@ -0,0 +1,260 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for prediction requests and responses.
+ * Reads objects as maps, arrays as lists, numbers as doubles, and strings,
+ * booleans and nulls as they are.
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+final class Json {
+
+    /**
+     * Maximum nesting depth of arrays and objects, deeper text is rejected
+     * instead of overflowing the stack of server thread
+     */
+    static final int MAX_DEPTH = 64;
+
+    private final String text;
+
+    private int pos;
+
+    /**
+     * Number of arrays and objects currently being read
+     */
+    private int depth;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses JSON text
+     *
+     * @param text JSON text
+     * @return parsed value
+     * @throws IllegalArgumentException if text is not valid JSON, or is nested
+     * deeper than {@link #MAX_DEPTH}
+     */
+    static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if (json.pos < text.length()) {
+            throw json.error("Unexpected text after value");
+        }
+        return value;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (pos >= text.length()) {
+            throw error("Unexpected end of JSON");
+        }
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+            case '[':
+                if (++depth > MAX_DEPTH) {
+                    throw error("JSON is nested deeper than " + MAX_DEPTH + " levels");
+                }
+                Object value = c == '{' ? readObject() : readArray();
+                depth--;
+                return value;
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected member name");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(name, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String readString() {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\') {
+                if (pos >= text.length()) {
+                    break;
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, pos)) {
+            throw error("Unexpected character '" + text.charAt(pos) + "'");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private Double readNumber() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Unexpected character '" + text.charAt(pos) + "'");
+        }
+        try {
+            return Double.valueOf(text.substring(start, pos));
+        } catch (NumberFormatException ex) {
+            throw error("Invalid number " + text.substring(start, pos));
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+
+    /**
+     * Appends string as JSON string literal
+     */
+    static void writeString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Appends vector as JSON array; values which JSON can't represent (NaN
+     * and infinity) are written as null
+     */
+    static void writeVector(StringBuilder sb, double[] vector) {
+        sb.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (Double.isNaN(vector[i]) || Double.isInfinite(vector[i])) {
+                sb.append("null");
+            } else {
+                sb.append(vector[i]);
+            }
+        }
+        sb.append(']');
+    }
+
+}
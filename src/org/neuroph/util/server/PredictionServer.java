@@ -0,0 +1,569 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.util.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.util.compiled.CompiledNetwork;
+import org.neuroph.util.compiled.InferenceSession;
+import org.neuroph.util.compiled.ModelRegistry;
+import org.neuroph.util.compiled.ModelVersion;
+import org.neuroph.util.compiled.SessionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded HTTP server which serves predictions of models from
+ * {@link ModelRegistry}, using the JDK built in HTTP server. Requests are
+ * handled on virtual threads when the JVM supports them (Java 21 and newer),
+ * otherwise on a cached thread pool. Each request borrows an inference
+ * session from the pool of the current model version, so requests run in
+ * parallel without locking the network, and models can be published again
+ * while the server is running.
+ * <p/>
+ * Endpoints:
+ * <ul>
+ * <li>POST /models/{name}/predict - calculates output of the named model</li>
+ * <li>POST /predict - calculates output of the model named "default"</li>
+ * <li>GET /models - lists published models</li>
+ * <li>GET /ready - returns 200 when server is started and has at least one
+ * model, 503 otherwise</li>
+ * <li>GET /metrics - request and prediction counters in Prometheus text
+ * format</li>
+ * </ul>
+ * Predict request body is either JSON: input vector <code>[0.1, 0.5]</code>,
+ * batch of vectors <code>[[0.1, 0.5], [0.2, 0.3]]</code>, or object with
+ * "input" or "inputs" member holding one of those; or, with content type
+ * application/octet-stream, one or more input vectors as little endian
+ * doubles (the format of {@link org.neuroph.util.io.BinaryOutputAdapter}).
+ * Response has the same format as request: JSON object with model name,
+ * version and "output" or "outputs", or output vectors as little endian
+ * doubles.
+ * <pre>
+ * PredictionServer server = new PredictionServer(network, 8080);
+ * server.start();
+ * // curl -d '[5.1, 3.5, 1.4, 0.2]' http://localhost:8080/predict
+ * </pre>
+ *
+ * @author Zoran Sevarac <sevarac@gmail.com>
+ */
+public class PredictionServer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PredictionServer.class);
+
+    /**
+     * Name of the model served at /predict
+     */
+    public static final String DEFAULT_MODEL = "default";
+
+    /**
+     * Content type of binary vectors
+     */
+    public static final String BINARY_TYPE = "application/octet-stream";
+
+    /**
+     * Maximum size of request body in bytes
+     */
+    public static final int MAX_REQUEST_SIZE = 16 * 1024 * 1024;
+
+    private static final String JSON_TYPE = "application/json";
+
+    private final ModelRegistry registry;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private volatile boolean started;
+
+    private volatile boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder failedRequests = new LongAdder();
+
+    private final LongAdder requestNanos = new LongAdder();
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    /**
+     * Number of calculated outputs for each model
+     */
+    private final ConcurrentHashMap<String, LongAdder> predictions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates server which serves specified network as the default model
+     *
+     * @param network network to serve, it is compiled (see
+     *                {@link CompiledNetwork#compile(NeuralNetwork)})
+     * @param port    port to listen on, 0 for any free port
+     * @throws IOException if server can't be created
+     */
+    public PredictionServer(NeuralNetwork<?> network, int port) throws IOException {
+        this(new ModelRegistry(), new InetSocketAddress(port));
+        registry.publish(DEFAULT_MODEL, network);
+    }
+
+    /**
+     * Creates server which serves models from specified registry
+     *
+     * @param registry model registry
+     * @param port     port to listen on, 0 for any free port
+     * @throws IOException if server can't be created
+     */
+    public PredictionServer(ModelRegistry registry, int port) throws IOException {
+        this(registry, new InetSocketAddress(port));
+    }
+
+    /**
+     * Creates server which serves models from specified registry
+     *
+     * @param registry model registry
+     * @param address  address to listen on
+     * @throws IOException if server can't be created
+     */
+    public PredictionServer(ModelRegistry registry, InetSocketAddress address) throws IOException {
+        this.registry = registry;
+        this.server = HttpServer.create(address, 0);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/models", exchange -> handle(exchange, this::handleModels));
+        server.createContext("/predict", exchange -> handle(exchange, this::handlePredict));
+        server.createContext("/ready", exchange -> handle(exchange, this::handleReady));
+        server.createContext("/metrics", exchange -> handle(exchange, this::handleMetrics));
+    }
+
+    /**
+     * Creates executor which runs each request on new virtual thread, or cached
+     * thread pool if virtual threads are not supported
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "PredictionServer worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Server is closed!");
+        }
+        if (!started) {
+            server.start();
+            started = true;
+            LOGGER.info("Prediction server started on port " + getPort());
+        }
+    }
+
+    /**
+     * Stops the server. Requests which are being processed are given one
+     * second to finish.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            if (started) {
+                server.stop(1);
+            }
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the port server listens on
+     *
+     * @return port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ModelRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns true if server is started, not closed, and has at least one
+     * model to serve
+     *
+     * @return true if server is ready
+     */
+    public boolean isReady() {
+        return started && !closed && !registry.getNames().isEmpty();
+    }
+
+    /**
+     * Returns number of handled requests
+     *
+     * @return number of requests
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns number of requests which were answered with error status
+     *
+     * @return number of failed requests
+     */
+    public long getFailedRequestCount() {
+        return failedRequests.sum();
+    }
+
+    /**
+     * Returns number of outputs calculated for specified model
+     *
+     * @param model model name
+     * @return number of predictions
+     */
+    public long getPredictionCount(String model) {
+        LongAdder count = predictions.get(model);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Handler of one endpoint, returns response or throws HttpError
+     */
+    private interface Handler {
+
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static class Response {
+
+        final int status;
+
+        final String contentType;
+
+        final byte[] body;
+
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response text(int status, String contentType, String body) {
+            return new Response(status, contentType, body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Request error which is reported to client with status code
+     */
+    private static class HttpError extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        activeRequests.incrementAndGet();
+        try {
+            Response response;
+            try {
+                response = handler.handle(exchange);
+            } catch (HttpError ex) {
+                response = error(ex.status, ex.getMessage());
+            } catch (IllegalArgumentException | VectorSizeMismatchException ex) {
+                response = error(400, ex.getMessage());
+            } catch (Throwable ex) { // errors must not drop connection without response
+                LOGGER.error("Error serving " + exchange.getRequestURI(), ex);
+                response = error(500, "Internal server error");
+            }
+
+            if (response.status >= 400) {
+                failedRequests.increment();
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+            if (response.body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response.body);
+                }
+            }
+        } finally {
+            exchange.close();
+            activeRequests.decrementAndGet();
+            requests.increment();
+            requestNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private static Response error(int status, String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.writeString(sb, message == null ? "" : message);
+        sb.append('}');
+        return Response.text(status, JSON_TYPE, sb.toString());
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!method.equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new HttpError(405, "Method " + exchange.getRequestMethod() + " is not allowed");
+        }
+    }
+
+    /**
+     * Handles /models and /models/{name}/predict
+     */
+    private Response handleModels(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/models") || path.equals("/models/")) {
+            requireMethod(exchange, "GET");
+            StringBuilder sb = new StringBuilder("[");
+            for (String name : new TreeSet<>(registry.getNames())) {
+                ModelVersion model = registry.get(name);
+                if (model == null) {
+                    continue; // removed meanwhile
+                }
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append("{\"name\":");
+                Json.writeString(sb, name);
+                sb.append(",\"version\":").append(model.getVersion())
+                        .append(",\"inputs\":").append(model.getNetwork().getInputsCount())
+                        .append(",\"outputs\":").append(model.getNetwork().getOutputsCount())
+                        .append('}');
+            }
+            sb.append(']');
+            return Response.text(200, JSON_TYPE, sb.toString());
+        }
+
+        String prefix = "/models/";
+        String suffix = "/predict";
+        if (path.startsWith(prefix) && path.endsWith(suffix) && path.length() > prefix.length() + suffix.length()) {
+            return predict(exchange, path.substring(prefix.length(), path.length() - suffix.length()));
+        }
+        throw new HttpError(404, "Not found: " + path);
+    }
+
+    /**
+     * Handles /predict
+     */
+    private Response handlePredict(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/predict")) {
+            throw new HttpError(404, "Not found: " + path);
+        }
+        return predict(exchange, DEFAULT_MODEL);
+    }
+
+    private Response handleReady(HttpExchange exchange) {
+        requireMethod(exchange, "GET");
+        return isReady() ? Response.text(200, "text/plain", "ready") : Response.text(503, "text/plain", "not ready");
+    }
+
+    private Response handleMetrics(HttpExchange exchange) {
+        requireMethod(exchange, "GET");
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE neuroph_requests_total counter\n");
+        sb.append("neuroph_requests_total ").append(requests.sum()).append('\n');
+        sb.append("# TYPE neuroph_failed_requests_total counter\n");
+        sb.append("neuroph_failed_requests_total ").append(failedRequests.sum()).append('\n');
+        sb.append("# TYPE neuroph_request_seconds_sum counter\n");
+        sb.append("neuroph_request_seconds_sum ").append(requestNanos.sum() / 1e9).append('\n');
+        sb.append("# TYPE neuroph_active_requests gauge\n");
+        sb.append("neuroph_active_requests ").append(activeRequests.get()).append('\n');
+        sb.append("# TYPE neuroph_predictions_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : predictions.entrySet()) {
+            sb.append("neuroph_predictions_total{model=");
+            Json.writeString(sb, entry.getKey());
+            sb.append("} ").append(entry.getValue().sum()).append('\n');
+        }
+        sb.append("# TYPE neuroph_model_version gauge\n");
+        for (String name : registry.getNames()) {
+            ModelVersion model = registry.get(name);
+            if (model != null) {
+                sb.append("neuroph_model_version{model=");
+                Json.writeString(sb, name);
+                sb.append("} ").append(model.getVersion()).append('\n');
+            }
+        }
+        return Response.text(200, "text/plain; version=0.0.4", sb.toString());
+    }
+
+    /**
+     * Calculates outputs of the current version of specified model
+     */
+    private Response predict(HttpExchange exchange, String name) throws IOException {
+        requireMethod(exchange, "POST");
+        ModelVersion model = registry.get(name);
+        if (model == null) {
+            throw new HttpError(404, "Model is not published: " + name);
+        }
+
+        byte[] body = readBody(exchange);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean binary = contentType != null && contentType.startsWith(BINARY_TYPE);
+        CompiledNetwork network = model.getNetwork();
+
+        List<double[]> inputs;
+        boolean batch;
+        if (binary) {
+            inputs = readBinaryInputs(body, network.getInputsCount());
+            batch = true;
+        } else {
+            Object json = Json.parse(new String(body, StandardCharsets.UTF_8));
+            if (json instanceof Map) {
+                Map<?, ?> object = (Map<?, ?>) json;
+                if (object.containsKey("inputs")) {
+                    json = object.get("inputs");
+                    batch = true;
+                } else if (object.containsKey("input")) {
+                    json = object.get("input");
+                    batch = false;
+                } else {
+                    throw new IllegalArgumentException("Request must have \"input\" or \"inputs\" member");
+                }
+            } else {
+                batch = json instanceof List && !((List<?>) json).isEmpty() && ((List<?>) json).get(0) instanceof List;
+            }
+            inputs = batch ? toVectors(json) : Collections.singletonList(toVector(json));
+        }
+
+        double[][] outputs = new double[inputs.size()][network.getOutputsCount()];
+        SessionPool pool = model.getSessionPool();
+        InferenceSession session = pool.acquire();
+        try {
+            for (int i = 0; i < outputs.length; i++) {
+                session.predict(inputs.get(i), outputs[i]);
+            }
+        } finally {
+            pool.release(session);
+        }
+        predictions.computeIfAbsent(name, key -> new LongAdder()).add(outputs.length);
+
+        if (binary) {
+            ByteBuffer buffer = ByteBuffer.allocate(outputs.length * network.getOutputsCount() * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (double[] output : outputs) {
+                for (double value : output) {
+                    buffer.putDouble(value);
+                }
+            }
+            return new Response(200, BINARY_TYPE, buffer.array());
+        }
+
+        StringBuilder sb = new StringBuilder("{\"model\":");
+        Json.writeString(sb, model.getName());
+        sb.append(",\"version\":").append(model.getVersion());
+        if (batch) {
+            sb.append(",\"outputs\":[");
+            for (int i = 0; i < outputs.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                Json.writeVector(sb, outputs[i]);
+            }
+            sb.append(']');
+        } else {
+            sb.append(",\"output\":");
+            Json.writeVector(sb, outputs[0]);
+        }
+        sb.append('}');
+        return Response.text(200, JSON_TYPE, sb.toString());
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_REQUEST_SIZE + 1);
+            if (body.length > MAX_REQUEST_SIZE) {
+                throw new HttpError(413, "Request is larger than " + MAX_REQUEST_SIZE + " bytes");
+            }
+            return body;
+        }
+    }
+
+    private static List<double[]> readBinaryInputs(byte[] body, int inputSize) {
+        int vectorBytes = inputSize * Double.BYTES;
+        if (body.length == 0 || body.length % vectorBytes != 0) {
+            throw new IllegalArgumentException("Binary request size " + body.length + " is not a multiple of input vector size " + vectorBytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        List<double[]> inputs = new ArrayList<>(body.length / vectorBytes);
+        while (buffer.hasRemaining()) {
+            double[] input = new double[inputSize];
+            buffer.asDoubleBuffer().get(input);
+            buffer.position(buffer.position() + vectorBytes);
+            inputs.add(input);
+        }
+        return inputs;
+    }
+
+    private static List<double[]> toVectors(Object json) {
+        if (!(json instanceof List) || ((List<?>) json).isEmpty()) {
+            throw new IllegalArgumentException("Inputs must be non empty array of vectors");
+        }
+        List<double[]> vectors = new ArrayList<>();
+        for (Object vector : (List<?>) json) {
+            vectors.add(toVector(vector));
+        }
+        return vectors;
+    }
+
+    private static double[] toVector(Object json) {
+        if (!(json instanceof List)) {
+            throw new IllegalArgumentException("Input must be array of numbers");
+        }
+        List<?> values = (List<?>) json;
+        double[] vector = new double[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            if (!(values.get(i) instanceof Double)) {
+                throw new IllegalArgumentException("Input must be array of numbers");
+            }
+            vector[i] = (Double) values.get(i);
+        }
+        return vector;
+    }
+
+}